@@ -0,0 +1,56 @@
+package com.tvkdevelopment.diu.catalog;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks looking up games in a catalog index of the size of the downloaded top games.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameIndexBenchmark {
+
+    /** The amount of games in the index */
+    private static final int GAMES = 10000;
+
+    /** The normalised key to look up, which is a game, only the start of one or no game at all */
+    @Param({ "dark souls ii scholar of the first sin", "dark so", "no such game at all" })
+    public String mKey;
+
+    /** The index to look up the key in */
+    private GameIndex mIndex;
+
+    @Setup
+    public void setup() {
+        final Map<String, String> games = new LinkedHashMap<>();
+        for (int i = 0; i < GAMES; ++i) {
+            games.put("game " + i, "Game " + i);
+        }
+        games.put("dark souls", "Dark Souls");
+        games.put("dark souls ii scholar of the first sin", "Dark Souls II: Scholar of the First Sin");
+        mIndex = GameIndex.build(games);
+    }
+
+    @Benchmark
+    public String get() {
+        return mIndex.get(mKey);
+    }
+
+}
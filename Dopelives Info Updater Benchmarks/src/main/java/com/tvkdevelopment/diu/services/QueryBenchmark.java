@@ -0,0 +1,42 @@
+package com.tvkdevelopment.diu.services;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks cleaning up topic games into search queries for Twitch and Hitbox.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryBenchmark {
+
+    /** The game from the topic */
+    @Param({ "Dark Souls", "Dark Souls II: Scholar of the First Sin (filler) - blind http://example.com/run ~ part 3" })
+    public String mGame;
+
+    @Benchmark
+    public List<String> twitchSearchOptions() {
+        return Twitch.getSearchOptions(mGame);
+    }
+
+    @Benchmark
+    public String hitboxCleanupQuery() {
+        return Hitbox.cleanupQuery(mGame);
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.tvkdevelopment.diu.services;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.tvkdevelopment.diu.util.JsonReader;
+
+/**
+ * Benchmarks reading Twitch game search results, comparing the streaming reader to the org.json parsing it replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchResultsBenchmark {
+
+    /** The amount of games in the search results */
+    @Param({ "1", "10" })
+    public int mResultCount;
+
+    /** The position of the exactly matching game in the results or -1 if there is none */
+    @Param({ "0", "-1" })
+    public int mMatchIndex;
+
+    /** The game searched for */
+    private final String mQuery = "Dark Souls";
+    /** The search results as received from Twitch */
+    private byte[] mResults;
+    /** The reader to reuse across invocations */
+    private final JsonReader mReader = new JsonReader();
+
+    @Setup
+    public void setup() {
+        final JSONArray games = new JSONArray();
+        for (int i = 0; i < mResultCount; ++i) {
+            final JSONObject box = new JSONObject();
+            box.put("large", "http://static-cdn.jtvnw.net/ttv-boxart/Game%20" + i + "-272x380.jpg");
+            box.put("small", "http://static-cdn.jtvnw.net/ttv-boxart/Game%20" + i + "-52x72.jpg");
+            final JSONObject game = new JSONObject();
+            game.put("name", (i == mMatchIndex ? mQuery : mQuery + " " + (i + 2)));
+            game.put("box", box);
+            game.put("popularity", 100 - i);
+            game.put("_id", 1000 + i);
+            games.put(game);
+        }
+        mResults = new JSONObject().put("games", games).toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String streaming() throws IOException {
+        return Twitch.findGame(mReader.reset(new ByteArrayInputStream(mResults)), mQuery);
+    }
+
+    @Benchmark
+    public String orgJson() {
+        final JSONArray games = new JSONObject(new String(mResults, StandardCharsets.UTF_8)).getJSONArray("games");
+        if (games.length() > 0) {
+            for (int i = 0; i < games.length(); ++i) {
+                final String name = games.getJSONObject(i).getString("name");
+                if (name.equals(mQuery)) {
+                    return name;
+                }
+            }
+            return games.getJSONObject(0).getString("name");
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,285 @@
+package com.tvkdevelopment.diu.stub;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.tvkdevelopment.diu.Channel;
+import com.tvkdevelopment.diu.InfoUpdater;
+import com.tvkdevelopment.diu.util.HttpHelper;
+
+/**
+ * Replays topic changes against the stub platform server and reports how long it takes from a topic change until
+ * both platforms show the new status. The latency is split into the time until the updater picked up the topic and
+ * the time until each platform was updated, so that the poll intervals, timeouts and retries can be sized with data.
+ * <p>
+ * Options are passed as name=value arguments, for example:
+ * <code>java -cp target/benchmarks.jar com.tvkdevelopment.diu.stub.LoadHarness changes=5000 errorRate=0.05</code>
+ */
+public class LoadHarness {
+
+    /** The percentiles to report */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9, 100 };
+    /** The streamers to pick from for each topic */
+    private static final String[] STREAMERS = { "Vinny", "Joel", "Ben", "Mike" };
+
+    /** The options with their default values */
+    private final Map<String, String> mOptions = new LinkedHashMap<>();
+
+    /** The change that is currently being measured */
+    private volatile Change mCurrentChange;
+
+    /**
+     * Creates a new harness with the default options.
+     */
+    private LoadHarness() {
+        mOptions.put("changes", "2000");
+        mOptions.put("games", "200");
+        mOptions.put("seed", "1");
+        mOptions.put("latency", "20");
+        mOptions.put("jitter", "30");
+        mOptions.put("errorRate", "0.02");
+        mOptions.put("timeoutRate", "0");
+        mOptions.put("httpTimeout", "1000");
+        mOptions.put("pollMin", "20");
+        mOptions.put("pollBase", "50");
+        mOptions.put("pollMax", "200");
+        mOptions.put("deadline", "5000");
+        mOptions.put("rate", "0");
+        mOptions.put("quiet", "true");
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final LoadHarness harness = new LoadHarness();
+        for (final String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 0 || !harness.mOptions.containsKey(arg.substring(0, separator))) {
+                System.out.println("Unknown option " + arg + ", known options with defaults: " + harness.mOptions);
+                return;
+            }
+            harness.mOptions.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        harness.run();
+    }
+
+    /**
+     * Starts the stub server and the updater, replays the topic changes and prints the report.
+     *
+     * @throws Exception
+     *             When the stub server couldn't be started or the harness was interrupted
+     */
+    private void run() throws Exception {
+        final int changes = getInt("changes");
+        final int gameCount = getInt("games");
+        final long deadline = getInt("deadline");
+        final Random random = new Random(Long.parseLong(mOptions.get("seed")));
+
+        // Point the updater at the stub server before any of its classes are loaded
+        final StubPlatformServer server = new StubPlatformServer();
+        server.setPlatformFaults(new StubPlatformServer.Faults(getInt("latency"), getInt("jitter"), getDouble(
+                "errorRate"), getDouble("timeoutRate"), getInt("httpTimeout") * 2L));
+        server.addListener(new ChangeRecorder());
+        server.start();
+        for (final Map.Entry<String, String> property : server.getSystemProperties().entrySet()) {
+            System.setProperty(property.getKey(), property.getValue());
+        }
+        System.setProperty("diu.http.timeout", mOptions.get("httpTimeout"));
+        // All endpoints share the stub's host, so the per-host rate limit is off unless asked for
+        System.setProperty("diu.http.rate", mOptions.get("rate"));
+        System.setProperty("diu.topic.minInterval", mOptions.get("pollMin"));
+        System.setProperty("diu.topic.interval", mOptions.get("pollBase"));
+        System.setProperty("diu.topic.maxInterval", mOptions.get("pollMax"));
+
+        // Games are unique per run so that the game cache of an earlier run doesn't skew the results
+        final String runId = Long.toString(System.currentTimeMillis(), 36);
+        final String[] games = new String[gameCount];
+        for (int i = 0; i < gameCount; ++i) {
+            games[i] = "Stub Game " + runId + " " + i;
+            server.addGame(games[i]);
+        }
+
+        final PrintStream out = System.out;
+        if (Boolean.parseBoolean(mOptions.get("quiet"))) {
+            System.setOut(new PrintStream(new OutputStream() {
+                @Override
+                public void write(final int b) {}
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) {}
+            }));
+        }
+
+        HttpHelper.configureConnectionPool();
+        new InfoUpdater(Channel.fromParams()).start();
+
+        final long[] pickup = new long[changes];
+        final long[] twitch = new long[changes];
+        final long[] hitbox = new long[changes];
+        final long[] total = new long[changes];
+        int completed = 0;
+        int failed = 0;
+        int previousGame = -1;
+        final long startTime = System.nanoTime();
+
+        for (int i = 0; i < changes; ++i) {
+            // Always change the game so that every topic leads to an update, sometimes with noise to filter out
+            int gameIndex;
+            do {
+                gameIndex = random.nextInt(gameCount);
+            } while (gameIndex == previousGame && gameCount > 1);
+            previousGame = gameIndex;
+            final String streamer = STREAMERS[random.nextInt(STREAMERS.length)];
+            final String game = games[gameIndex] + (random.nextBoolean() ? " (blind) - part " + random.nextInt(9) : "");
+
+            final Change change = new Change(streamer + "\nGame: " + game + "\n", "[" + streamer + "] " + game + " | ");
+            mCurrentChange = change;
+            server.setTopic(change.mTopic);
+
+            if (change.mApplied.await(deadline, TimeUnit.MILLISECONDS)) {
+                pickup[completed] = change.mPickupTime - change.mStartTime;
+                twitch[completed] = change.mTwitchTime - change.mStartTime;
+                hitbox[completed] = change.mHitboxTime - change.mStartTime;
+                total[completed] = Math.max(change.mTwitchTime, change.mHitboxTime) - change.mStartTime;
+                ++completed;
+            } else {
+                ++failed;
+            }
+
+            if ((i + 1) % 100 == 0) {
+                out.println("Replayed " + (i + 1) + "/" + changes + " topic changes");
+            }
+        }
+
+        final long duration = System.nanoTime() - startTime;
+        out.println();
+        out.println("Topic changes: " + changes + ", applied: " + completed + ", not applied within " + deadline
+                + " ms: " + failed + ", duration: " + TimeUnit.NANOSECONDS.toSeconds(duration) + " s");
+        out.println("Options: " + mOptions);
+        out.println();
+        out.println(String.format(Locale.ROOT, "%-16s%10s%10s%10s%10s%10s", "Latency (ms)", "p50", "p90", "p99",
+                "p99.9", "max"));
+        printPercentiles(out, "Topic pickup", pickup, completed);
+        printPercentiles(out, "Twitch applied", twitch, completed);
+        printPercentiles(out, "Hitbox applied", hitbox, completed);
+        printPercentiles(out, "Both applied", total, completed);
+
+        server.stop();
+        System.exit(0);
+    }
+
+    /**
+     * Prints a line with the percentiles of a set of latencies.
+     *
+     * @param out
+     *            The stream to print to
+     * @param label
+     *            The label of the line
+     * @param latencies
+     *            The latencies in nanoseconds, which will be sorted
+     * @param count
+     *            The amount of latencies that were recorded
+     */
+    private static void printPercentiles(final PrintStream out, final String label, final long[] latencies,
+            final int count) {
+        if (count == 0) {
+            out.println(label + ": no samples");
+            return;
+        }
+
+        Arrays.sort(latencies, 0, count);
+        final StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%-16s", label));
+        for (final double percentile : PERCENTILES) {
+            final int index = Math.min(count - 1, (int) Math.ceil(percentile / 100 * count) - 1);
+            line.append(String.format(Locale.ROOT, "%10.1f", latencies[Math.max(0, index)] / 1e6));
+        }
+        out.println(line);
+    }
+
+    /**
+     * @param name
+     *            The name of the option
+     *
+     * @return The value of the option as integer
+     */
+    private int getInt(final String name) {
+        return Integer.parseInt(mOptions.get(name));
+    }
+
+    /**
+     * @param name
+     *            The name of the option
+     *
+     * @return The value of the option as double
+     */
+    private double getDouble(final String name) {
+        return Double.parseDouble(mOptions.get(name));
+    }
+
+    /**
+     * A topic change and the times at which its effects were seen, in {@link System#nanoTime()}.
+     */
+    private static class Change {
+
+        /** The topic after the change */
+        private final String mTopic;
+        /** The start of the status that both platforms should show */
+        private final String mStatusPrefix;
+        /** Counted down once for each platform that shows the new status */
+        private final CountDownLatch mApplied = new CountDownLatch(2);
+        /** The time at which the topic was changed */
+        private final long mStartTime = System.nanoTime();
+
+        /** The time at which the updater first retrieved the changed topic */
+        private volatile long mPickupTime;
+        /** The time at which Twitch showed the new status or 0 if it doesn't yet */
+        private volatile long mTwitchTime;
+        /** The time at which Hitbox showed the new status or 0 if it doesn't yet */
+        private volatile long mHitboxTime;
+
+        private Change(final String topic, final String statusPrefix) {
+            mTopic = topic;
+            mStatusPrefix = statusPrefix;
+        }
+
+    }
+
+    /**
+     * Records when the effects of the current change are seen by the stub server.
+     */
+    private class ChangeRecorder implements StubPlatformServer.Listener {
+
+        @Override
+        public void onTopicServed(final String topic) {
+            final Change change = mCurrentChange;
+            if (change != null && change.mTopic.equals(topic) && change.mPickupTime == 0) {
+                change.mPickupTime = System.nanoTime();
+            }
+        }
+
+        @Override
+        public void onTwitchUpdated(final String status, final String game) {
+            final Change change = mCurrentChange;
+            if (change != null && status.startsWith(change.mStatusPrefix) && change.mTwitchTime == 0) {
+                change.mTwitchTime = System.nanoTime();
+                change.mApplied.countDown();
+            }
+        }
+
+        @Override
+        public void onHitboxUpdated(final String status, final String categoryId) {
+            final Change change = mCurrentChange;
+            if (change != null && status.startsWith(change.mStatusPrefix) && change.mHitboxTime == 0) {
+                change.mHitboxTime = System.nanoTime();
+                change.mApplied.countDown();
+            }
+        }
+
+    }
+
+}
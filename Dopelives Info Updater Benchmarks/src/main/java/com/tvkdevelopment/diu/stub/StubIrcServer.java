@@ -0,0 +1,298 @@
+package com.tvkdevelopment.diu.stub;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A local stand-in for an IRC server holding a single channel. It registers clients, lets them join the channel,
+ * sends the topic on join and whenever it changes, and can ping its clients, reject their first nickname or drop
+ * their connections to see how the updater copes.
+ */
+public class StubIrcServer {
+
+    /** The name of the server in the prefix of its messages */
+    private static final String SERVER_NAME = "stub.irc";
+
+    /** The socket accepting connections */
+    private final ServerSocket mServerSocket;
+    /** The channel that clients can join, including the leading # */
+    private final String mChannel;
+
+    /** The connected clients */
+    private final List<Client> mClients = new CopyOnWriteArrayList<>();
+    /** The lines received from all clients, in the order they arrived */
+    private final BlockingQueue<String> mReceived = new LinkedBlockingQueue<>();
+    /** The amount of connections accepted so far */
+    private final AtomicInteger mConnections = new AtomicInteger();
+
+    /** The current topic, empty if none is set */
+    private volatile String mTopic = "";
+    /** Whether or not the first nickname of each connection is rejected as being in use */
+    private volatile boolean mRejectFirstNick = false;
+
+    /**
+     * Creates a new stub server on a random local port. It needs to be started before use.
+     *
+     * @param channel
+     *            The channel that clients can join, including the leading #
+     *
+     * @throws IOException
+     *             When the server couldn't be created
+     */
+    public StubIrcServer(final String channel) throws IOException {
+        mServerSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress());
+        mChannel = channel;
+    }
+
+    /**
+     * Starts accepting connections.
+     */
+    public void start() {
+        final Thread thread = new Thread(this::acceptConnections, "Stub IRC");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops accepting connections and closes the connected ones.
+     */
+    public void stop() {
+        try {
+            mServerSocket.close();
+        } catch (final IOException ex) {
+            // Already closed
+        }
+        dropConnections();
+    }
+
+    /**
+     * @return The port the server listens on
+     */
+    public int getPort() {
+        return mServerSocket.getLocalPort();
+    }
+
+    /**
+     * @return The amount of connections accepted so far
+     */
+    public int getConnectionCount() {
+        return mConnections.get();
+    }
+
+    /**
+     * Sets the topic and sends it to the clients in the channel.
+     *
+     * @param topic
+     *            The new topic
+     */
+    public void setTopic(final String topic) {
+        mTopic = topic;
+        for (final Client client : mClients) {
+            if (client.mJoined) {
+                client.send(":op!op@" + SERVER_NAME + " TOPIC " + mChannel + " :" + topic);
+            }
+        }
+    }
+
+    /**
+     * Sets whether the first nickname of each new connection is rejected as being in use.
+     *
+     * @param rejectFirstNick
+     *            True to reject the first nickname, false to accept any
+     */
+    public void setRejectFirstNick(final boolean rejectFirstNick) {
+        mRejectFirstNick = rejectFirstNick;
+    }
+
+    /**
+     * Pings all connected clients.
+     *
+     * @param token
+     *            The token that the clients should answer with
+     */
+    public void ping(final String token) {
+        for (final Client client : mClients) {
+            client.send("PING :" + token);
+        }
+    }
+
+    /**
+     * Closes all connections without saying goodbye, as if the network dropped them.
+     */
+    public void dropConnections() {
+        for (final Client client : mClients) {
+            client.close();
+        }
+    }
+
+    /**
+     * Waits for a client to send a line starting with a prefix, skipping all other lines.
+     *
+     * @param prefix
+     *            The start of the line, such as "PONG"
+     * @param timeout
+     *            The maximum time to wait in milliseconds
+     *
+     * @return The line or null if it wasn't received in time
+     *
+     * @throws InterruptedException
+     *             When the thread was interrupted while waiting
+     */
+    public String awaitReceived(final String prefix, final long timeout) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        while (true) {
+            final String line = mReceived.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            if (line == null || line.startsWith(prefix)) {
+                return line;
+            }
+        }
+    }
+
+    /**
+     * Accepts connections until the server is stopped.
+     */
+    private void acceptConnections() {
+        while (!mServerSocket.isClosed()) {
+            try {
+                final Socket socket = mServerSocket.accept();
+                mConnections.incrementAndGet();
+                final Client client = new Client(socket);
+                mClients.add(client);
+                final Thread thread = new Thread(client::serve, "Stub IRC client");
+                thread.setDaemon(true);
+                thread.start();
+            } catch (final IOException ex) {
+                // Stopped
+            }
+        }
+    }
+
+    /**
+     * A connected client.
+     */
+    private class Client {
+
+        /** The socket of the connection */
+        private final Socket mSocket;
+        /** The writer of the connection */
+        private final Writer mWriter;
+
+        /** The nickname of the client or null if it hasn't registered yet */
+        private String mNick;
+        /** Whether or not the client has joined the channel */
+        private volatile boolean mJoined = false;
+
+        /**
+         * Creates a new client.
+         *
+         * @param socket
+         *            The socket of the connection
+         *
+         * @throws IOException
+         *             When the connection couldn't be read
+         */
+        private Client(final Socket socket) throws IOException {
+            mSocket = socket;
+            mWriter = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Handles the messages of the client until the connection is closed.
+         */
+        private void serve() {
+            boolean nickRejected = false;
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(mSocket.getInputStream(),
+                    StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    mReceived.add(line);
+                    final String[] parts = line.split(" ", 2);
+                    final String argument = (parts.length > 1 ? parts[1] : "");
+                    switch (parts[0].toUpperCase(Locale.ROOT)) {
+                        case "NICK":
+                            if (mRejectFirstNick && !nickRejected) {
+                                nickRejected = true;
+                                send(":" + SERVER_NAME + " 433 * " + argument + " :Nickname is already in use");
+                            } else {
+                                mNick = argument;
+                                send(":" + SERVER_NAME + " 001 " + mNick + " :Welcome");
+                            }
+                            break;
+
+                        case "JOIN":
+                            if (mNick != null && mChannel.equalsIgnoreCase(argument)) {
+                                mJoined = true;
+                                sendTopic();
+                            }
+                            break;
+
+                        default:
+                            break;
+                    }
+                }
+            } catch (final IOException ex) {
+                // Dropped
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Sends the current topic as a join reply.
+         */
+        private void sendTopic() {
+            final String topic = mTopic;
+            if (topic.isEmpty()) {
+                send(":" + SERVER_NAME + " 331 " + mNick + " " + mChannel + " :No topic is set");
+            } else {
+                send(":" + SERVER_NAME + " 332 " + mNick + " " + mChannel + " :" + topic);
+            }
+        }
+
+        /**
+         * Sends a line to the client, ignoring failures as a broken connection is closed by the reading thread.
+         *
+         * @param line
+         *            The line to send, without line ending
+         */
+        private void send(final String line) {
+            synchronized (mWriter) {
+                try {
+                    mWriter.write(line);
+                    mWriter.write("\r\n");
+                    mWriter.flush();
+                } catch (final IOException ex) {
+                    // Dropped
+                }
+            }
+        }
+
+        /**
+         * Closes the connection.
+         */
+        private void close() {
+            mClients.remove(this);
+            try {
+                mSocket.close();
+            } catch (final IOException ex) {
+                // Already closed
+            }
+        }
+
+    }
+
+}
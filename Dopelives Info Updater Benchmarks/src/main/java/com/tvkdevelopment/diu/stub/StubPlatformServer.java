@@ -0,0 +1,808 @@
+package com.tvkdevelopment.diu.stub;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local stand-in for the topic host, the Twitch kraken API and the Hitbox API. It serves a scriptable topic, answers
+ * game searches from a fixed catalog and keeps the channel state that updates are applied to. Every endpoint can be
+ * made slow, failing or timing out to see how the updater copes.
+ * <p>
+ * The updater is pointed at the server with the system properties returned by {@link #getSystemProperties()}.
+ */
+public class StubPlatformServer {
+
+    /**
+     * The endpoints that faults can be injected into.
+     */
+    public enum Endpoint {
+        /** The topic served by the topic host */
+        TOPIC,
+        /** The Twitch game search */
+        TWITCH_SEARCH,
+        /** The Twitch channel, both reading and updating */
+        TWITCH_CHANNEL,
+        /** The Hitbox game lookup */
+        HITBOX_GAME,
+        /** The Hitbox media, both reading and updating */
+        HITBOX_MEDIA,
+        /** The token requests of both platforms */
+        AUTH,
+        /** The game lists of both platforms that the catalogs are downloaded from */
+        CATALOG
+    }
+
+    /** The maximum amount of games returned by a search */
+    private static final int MAX_SEARCH_RESULTS = 10;
+
+    /** The HTTP server */
+    private final HttpServer mServer;
+    /** The threads handling requests, so that slow responses don't hold up others */
+    private final ExecutorService mExecutor;
+
+    /** The faults per endpoint, without an entry for endpoints that behave */
+    private final Map<Endpoint, Faults> mFaults = Collections.synchronizedMap(new EnumMap<>(Endpoint.class));
+    /** The games known to both platforms, mapped by their Hitbox SEO name */
+    private final Map<String, String> mCatalog = Collections.synchronizedMap(new HashMap<>());
+    /** The listeners to inform of changes to the platforms */
+    private final List<Listener> mListeners = new ArrayList<>();
+
+    /** The current topic */
+    private String mTopic = "";
+    /** The version of the current topic, increased for each change */
+    private long mTopicVersion = 0;
+    /** The version of the topic that was served last */
+    private long mServedTopicVersion = -1;
+
+    /** The current Twitch status */
+    private String mTwitchStatus = "";
+    /** The current Twitch game */
+    private String mTwitchGame = "";
+    /** The current Hitbox status */
+    private String mHitboxStatus = "";
+    /** The current Hitbox category ID */
+    private String mHitboxCategory = "";
+
+    /**
+     * Creates a new stub server on a random local port. It needs to be started before use.
+     *
+     * @throws IOException
+     *             When the server couldn't be created
+     */
+    public StubPlatformServer() throws IOException {
+        this(0);
+    }
+
+    /**
+     * Creates a new stub server on a local port. It needs to be started before use.
+     *
+     * @param port
+     *            The port to listen on or 0 for a random port
+     *
+     * @throws IOException
+     *             When the server couldn't be created
+     */
+    public StubPlatformServer(final int port) throws IOException {
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        mExecutor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "Stub platform");
+            thread.setDaemon(true);
+            return thread;
+        });
+        mServer.setExecutor(mExecutor);
+
+        mServer.createContext("/topic", withFaults(Endpoint.TOPIC, this::handleTopic));
+        mServer.createContext("/kraken/search/games", withFaults(Endpoint.TWITCH_SEARCH, this::handleTwitchSearch));
+        mServer.createContext("/kraken/games/top", withFaults(Endpoint.CATALOG, this::handleTwitchTopGames));
+        mServer.createContext("/kraken/channels/", withFaults(Endpoint.TWITCH_CHANNEL, this::handleTwitchChannel));
+        mServer.createContext("/kraken/oauth2/token", withFaults(Endpoint.AUTH, exchange -> respond(exchange, 200,
+                "{\"access_token\":\"stub\",\"scope\":[\"channel_editor\"]}")));
+        mServer.createContext("/hitbox/game/", withFaults(Endpoint.HITBOX_GAME, this::handleHitboxGame));
+        mServer.createContext("/hitbox/games", withFaults(Endpoint.CATALOG, this::handleHitboxGames));
+        mServer.createContext("/hitbox/media/live/", withFaults(Endpoint.HITBOX_MEDIA, this::handleHitboxMedia));
+        mServer.createContext("/hitbox/auth/token", withFaults(Endpoint.AUTH, exchange -> respond(exchange, 200,
+                "{\"authToken\":\"stub\"}")));
+    }
+
+    /**
+     * Starts handling requests.
+     */
+    public void start() {
+        mServer.start();
+    }
+
+    /**
+     * Stops handling requests and closes all connections.
+     */
+    public void stop() {
+        mServer.stop(0);
+        mExecutor.shutdownNow();
+    }
+
+    /**
+     * @return The base URL of the server
+     */
+    public String getUrl() {
+        return "http://127.0.0.1:" + mServer.getAddress().getPort();
+    }
+
+    /**
+     * Determines the system properties that point the updater at this server. They need to be set before the updater
+     * classes are loaded.
+     *
+     * @return The system properties mapped by name
+     */
+    public Map<String, String> getSystemProperties() {
+        final Map<String, String> properties = new HashMap<>();
+        properties.put("diu.topic.url", getUrl() + "/topic");
+        properties.put("diu.twitch.url", getUrl() + "/kraken");
+        properties.put("diu.hitbox.url", getUrl() + "/hitbox");
+        return properties;
+    }
+
+    /**
+     * Sets the faults of an endpoint, replacing earlier faults.
+     *
+     * @param endpoint
+     *            The endpoint to misbehave
+     * @param faults
+     *            The faults to inject or null to let the endpoint behave
+     */
+    public void setFaults(final Endpoint endpoint, final Faults faults) {
+        if (faults != null) {
+            mFaults.put(endpoint, faults);
+        } else {
+            mFaults.remove(endpoint);
+        }
+    }
+
+    /**
+     * Sets the same faults on all endpoints except the topic.
+     *
+     * @param faults
+     *            The faults to inject or null to let the endpoints behave
+     */
+    public void setPlatformFaults(final Faults faults) {
+        for (final Endpoint endpoint : Endpoint.values()) {
+            if (endpoint != Endpoint.TOPIC) {
+                setFaults(endpoint, faults);
+            }
+        }
+    }
+
+    /**
+     * Adds a game that both platforms know.
+     *
+     * @param game
+     *            The full name of the game
+     */
+    public void addGame(final String game) {
+        mCatalog.put(toSeoName(game), game);
+    }
+
+    /**
+     * Adds a listener to inform of changes to the platforms.
+     *
+     * @param listener
+     *            The listener to add
+     */
+    public synchronized void addListener(final Listener listener) {
+        mListeners.add(listener);
+    }
+
+    /**
+     * Changes the topic that is served.
+     *
+     * @param topic
+     *            The topic in the format served by the topic host
+     */
+    public synchronized void setTopic(final String topic) {
+        if (!topic.equals(mTopic)) {
+            mTopic = topic;
+            ++mTopicVersion;
+        }
+    }
+
+    /**
+     * Plays a sequence of topics in the background, waiting the given time before each of them.
+     *
+     * @param script
+     *            The topics to serve in order
+     *
+     * @return The thread playing the script
+     */
+    public Thread playScript(final List<ScriptStep> script) {
+        final Thread thread = new Thread(() -> {
+            try {
+                for (final ScriptStep step : script) {
+                    Thread.sleep(step.getDelay());
+                    setTopic(step.getTopic());
+                }
+            } catch (final InterruptedException ex) {
+                // Stop playing
+            }
+        }, "Stub topic script");
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * @return The current Twitch status
+     */
+    public synchronized String getTwitchStatus() {
+        return mTwitchStatus;
+    }
+
+    /**
+     * @return The current Twitch game
+     */
+    public synchronized String getTwitchGame() {
+        return mTwitchGame;
+    }
+
+    /**
+     * @return The current Hitbox status
+     */
+    public synchronized String getHitboxStatus() {
+        return mHitboxStatus;
+    }
+
+    /**
+     * @return The current Hitbox category ID
+     */
+    public synchronized String getHitboxCategory() {
+        return mHitboxCategory;
+    }
+
+    /**
+     * Serves the current topic, answering with a 304 if the client already has it.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     *
+     * @throws IOException
+     *             When the exchange failed
+     */
+    private void handleTopic(final HttpExchange exchange) throws IOException {
+        final String topic;
+        final long version;
+        final boolean firstServe;
+        synchronized (this) {
+            topic = mTopic;
+            version = mTopicVersion;
+            firstServe = (mServedTopicVersion != version);
+            mServedTopicVersion = version;
+        }
+        if (firstServe) {
+            for (final Listener listener : getListeners()) {
+                listener.onTopicServed(topic);
+            }
+        }
+
+        final String etag = "\"" + version + "\"";
+        exchange.getResponseHeaders().set("ETag", etag);
+        if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+            exchange.close();
+            return;
+        }
+        respond(exchange, 200, topic);
+    }
+
+    /**
+     * Searches the catalog for games containing the query.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     *
+     * @throws IOException
+     *             When the exchange failed
+     */
+    private void handleTwitchSearch(final HttpExchange exchange) throws IOException {
+        final String query = parseForm(exchange.getRequestURI().getRawQuery()).getOrDefault("q", "");
+        final String lowerQuery = query.toLowerCase(Locale.ROOT);
+
+        final JSONArray games = new JSONArray();
+        synchronized (mCatalog) {
+            for (final String game : mCatalog.values()) {
+                if (games.length() < MAX_SEARCH_RESULTS && game.toLowerCase(Locale.ROOT).contains(lowerQuery)) {
+                    games.put(new JSONObject().put("name", game).put("popularity", 0).put("_id", game.hashCode()));
+                }
+            }
+        }
+        respond(exchange, 200, new JSONObject().put("games", games).toString());
+    }
+
+    /**
+     * Lists a page of the catalog as the top games on Twitch.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     *
+     * @throws IOException
+     *             When the exchange failed
+     */
+    private void handleTwitchTopGames(final HttpExchange exchange) throws IOException {
+        final JSONArray top = new JSONArray();
+        for (final String game : getCatalogPage(exchange)) {
+            top.put(new JSONObject().put("game", new JSONObject().put("name", game).put("_id", game.hashCode()))
+                    .put("viewers", 0).put("channels", 0));
+        }
+        respond(exchange, 200, new JSONObject().put("_total", mCatalog.size()).put("top", top).toString());
+    }
+
+    /**
+     * Returns the Twitch channel, applying the update first if there is one.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     *
+     * @throws IOException
+     *             When the exchange failed
+     */
+    private void handleTwitchChannel(final HttpExchange exchange) throws IOException {
+        final String body = readBody(exchange);
+        final JSONObject channel;
+        synchronized (this) {
+            if ("PUT".equals(exchange.getRequestMethod())) {
+                final Map<String, String> form = parseForm(body);
+                mTwitchStatus = form.getOrDefault("channel[status]", mTwitchStatus);
+                mTwitchGame = form.getOrDefault("channel[game]", mTwitchGame);
+            }
+            channel = new JSONObject().put("status", mTwitchStatus).put("game", mTwitchGame).put("name", "stub");
+        }
+        if ("PUT".equals(exchange.getRequestMethod())) {
+            for (final Listener listener : getListeners()) {
+                listener.onTwitchUpdated(channel.getString("status"), channel.getString("game"));
+            }
+        }
+        respond(exchange, 200, channel.toString());
+    }
+
+    /**
+     * Looks up a game by its SEO name.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     *
+     * @throws IOException
+     *             When the exchange failed
+     */
+    private void handleHitboxGame(final HttpExchange exchange) throws IOException {
+        final String path = exchange.getRequestURI().getPath();
+        final String game = mCatalog.get(path.substring(path.lastIndexOf('/') + 1));
+        if (game == null) {
+            respond(exchange, 200, "{\"category\":null}");
+            return;
+        }
+        respond(exchange, 200, new JSONObject().put("category", new JSONObject().put("category_id", Integer
+                .toString(game.hashCode() & Integer.MAX_VALUE)).put("category_name", game).put("category_seo_key",
+                toSeoName(game))).toString());
+    }
+
+    /**
+     * Lists a page of the catalog as the games on Hitbox.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     *
+     * @throws IOException
+     *             When the exchange failed
+     */
+    private void handleHitboxGames(final HttpExchange exchange) throws IOException {
+        final JSONArray categories = new JSONArray();
+        for (final String game : getCatalogPage(exchange)) {
+            categories.put(new JSONObject().put("category_id", Integer.toString(game.hashCode() & Integer.MAX_VALUE))
+                    .put("category_name", game).put("category_seo_key", toSeoName(game)));
+        }
+        respond(exchange, 200, new JSONObject().put("categories", categories).toString());
+    }
+
+    /**
+     * Gets the page of the catalog requested with the limit and offset parameters, sorted by SEO name so that pages
+     * don't overlap.
+     *
+     * @param exchange
+     *            The exchange requesting the page
+     *
+     * @return The games on the page
+     */
+    private List<String> getCatalogPage(final HttpExchange exchange) {
+        final Map<String, String> form = parseForm(exchange.getRequestURI().getRawQuery());
+        final int limit = Integer.parseInt(form.getOrDefault("limit", "10"));
+        final int offset = Integer.parseInt(form.getOrDefault("offset", "0"));
+
+        final List<String> games;
+        synchronized (mCatalog) {
+            games = new ArrayList<>(new TreeMap<>(mCatalog).values());
+        }
+        return games.subList(Math.min(offset, games.size()), Math.min(offset + limit, games.size()));
+    }
+
+    /**
+     * Returns the Hitbox media, applying the update first if there is one.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     *
+     * @throws IOException
+     *             When the exchange failed
+     */
+    private void handleHitboxMedia(final HttpExchange exchange) throws IOException {
+        final String body = readBody(exchange);
+        final boolean update = "PUT".equals(exchange.getRequestMethod());
+        final JSONObject media;
+        synchronized (this) {
+            if (update) {
+                final JSONObject livestream = new JSONObject(body).getJSONArray("livestream").getJSONObject(0);
+                mHitboxStatus = livestream.optString("media_status", mHitboxStatus);
+                mHitboxCategory = livestream.optString("media_category_id", mHitboxCategory);
+            }
+            media = new JSONObject().put("livestream", new JSONArray().put(new JSONObject().put("media_id", "1")
+                    .put("media_name", "stub").put("media_status", mHitboxStatus).put("media_category_id",
+                            mHitboxCategory).put("media_is_live", "0")));
+        }
+        if (update) {
+            for (final Listener listener : getListeners()) {
+                listener.onHitboxUpdated(media.getJSONArray("livestream").getJSONObject(0).getString(
+                        "media_status"), media.getJSONArray("livestream").getJSONObject(0).getString(
+                        "media_category_id"));
+            }
+        }
+        respond(exchange, 200, media.toString());
+    }
+
+    /**
+     * @return A copy of the listeners, so they can be informed without holding the lock
+     */
+    private synchronized List<Listener> getListeners() {
+        return new ArrayList<>(mListeners);
+    }
+
+    /**
+     * Wraps a handler so that the faults of its endpoint are injected before it runs.
+     *
+     * @param endpoint
+     *            The endpoint that the handler serves
+     * @param handler
+     *            The handler to wrap
+     *
+     * @return The wrapped handler
+     */
+    private HttpHandler withFaults(final Endpoint endpoint, final HttpHandler handler) {
+        return exchange -> {
+            try {
+                final Faults faults = mFaults.get(endpoint);
+                if (faults != null) {
+                    Thread.sleep(faults.nextLatency());
+                    if (faults.nextTimeout()) {
+                        // Hold on to the request until the client gives up
+                        Thread.sleep(faults.getTimeoutMillis());
+                        exchange.close();
+                        return;
+                    }
+                    if (faults.nextError()) {
+                        readBody(exchange);
+                        respond(exchange, 500, "{\"error\":\"Internal Server Error\",\"status\":500}");
+                        return;
+                    }
+                }
+                handler.handle(exchange);
+
+            } catch (final InterruptedException ex) {
+                exchange.close();
+            } catch (final RuntimeException ex) {
+                ex.printStackTrace();
+                respond(exchange, 500, "{}");
+            }
+        };
+    }
+
+    /**
+     * Converts a game to the SEO name that Hitbox knows it by.
+     *
+     * @param game
+     *            The full name of the game
+     *
+     * @return The SEO name
+     */
+    private static String toSeoName(final String game) {
+        return game.toLowerCase().replaceAll("[^a-z0-9 -]", "").replace(' ', '-');
+    }
+
+    /**
+     * Parses URL encoded form data.
+     *
+     * @param form
+     *            The raw form data or null if there is none
+     *
+     * @return The decoded values mapped by name
+     */
+    private static Map<String, String> parseForm(final String form) {
+        final Map<String, String> values = new HashMap<>();
+        if (form == null) {
+            return values;
+        }
+
+        try {
+            for (final String pair : form.split("&")) {
+                final int separator = pair.indexOf('=');
+                if (separator > 0) {
+                    values.put(URLDecoder.decode(pair.substring(0, separator), StandardCharsets.UTF_8.name()),
+                            URLDecoder.decode(pair.substring(separator + 1), StandardCharsets.UTF_8.name()));
+                }
+            }
+        } catch (final UnsupportedEncodingException ex) {
+            // Won't ever happen
+            throw new RuntimeException(ex);
+        }
+        return values;
+    }
+
+    /**
+     * Reads the full request body.
+     *
+     * @param exchange
+     *            The exchange to read the request body of
+     *
+     * @return The request body as text
+     *
+     * @throws IOException
+     *             When the request body couldn't be read
+     */
+    private static String readBody(final HttpExchange exchange) throws IOException {
+        final ByteArrayOutputStream body = new ByteArrayOutputStream();
+        try (final InputStream input = exchange.getRequestBody()) {
+            final byte[] buffer = new byte[1024];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return new String(body.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Sends a response and closes the exchange.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     * @param status
+     *            The HTTP status code
+     * @param body
+     *            The response body
+     *
+     * @throws IOException
+     *             When the response couldn't be sent
+     */
+    private static void respond(final HttpExchange exchange, final int status, final String body) throws IOException {
+        final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (final OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    /**
+     * Runs the stub server on its own, for pointing a separately started updater at it. Optionally plays a topic
+     * script, which is a file with a line per topic in the format "delay in milliseconds, a tab and the topic", where
+     * "\n" stands for a newline in the topic.
+     *
+     * @param args
+     *            The port to listen on and optionally the topic script to play
+     *
+     * @throws Exception
+     *             When the server couldn't be started
+     */
+    public static void main(final String[] args) throws Exception {
+        final StubPlatformServer server = new StubPlatformServer(args.length > 0 ? Integer.parseInt(args[0]) : 0);
+        server.start();
+        for (final Map.Entry<String, String> property : server.getSystemProperties().entrySet()) {
+            System.out.println("-D" + property.getKey() + "=" + property.getValue());
+        }
+
+        if (args.length > 1) {
+            final Set<String> games = new LinkedHashSet<>();
+            final List<ScriptStep> script = new ArrayList<>();
+            try (final BufferedReader reader = Files.newBufferedReader(Paths.get(args[1]), StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final int separator = line.indexOf('\t');
+                    if (separator < 0) {
+                        continue;
+                    }
+                    final String topic = line.substring(separator + 1).replace("\\n", "\n");
+                    script.add(new ScriptStep(Long.parseLong(line.substring(0, separator).trim()), topic));
+
+                    final int gameStart = topic.indexOf(':');
+                    if (gameStart >= 0) {
+                        games.add(topic.substring(gameStart + 1).trim());
+                    }
+                }
+            }
+            for (final String game : games) {
+                server.addGame(game);
+            }
+            server.playScript(script).join();
+        }
+
+        Thread.currentThread().join();
+    }
+
+    /**
+     * The faults to inject into an endpoint. Each request is delayed by the latency and then either times out, fails or
+     * is handled normally.
+     */
+    public static class Faults {
+
+        /** The minimum delay in milliseconds before each response */
+        private final long mLatencyMillis;
+        /** The maximum extra random delay in milliseconds before each response */
+        private final long mJitterMillis;
+        /** The chance between 0 and 1 that a request fails with a server error */
+        private final double mErrorRate;
+        /** The chance between 0 and 1 that a request isn't answered in time */
+        private final double mTimeoutRate;
+        /** The time in milliseconds to hold on to a request that times out */
+        private final long mTimeoutMillis;
+
+        /**
+         * Creates new faults.
+         *
+         * @param latencyMillis
+         *            The minimum delay in milliseconds before each response
+         * @param jitterMillis
+         *            The maximum extra random delay in milliseconds before each response
+         * @param errorRate
+         *            The chance between 0 and 1 that a request fails with a server error
+         * @param timeoutRate
+         *            The chance between 0 and 1 that a request isn't answered in time
+         * @param timeoutMillis
+         *            The time in milliseconds to hold on to a request that times out, which should be longer than the
+         *            client's timeout
+         */
+        public Faults(final long latencyMillis, final long jitterMillis, final double errorRate,
+                final double timeoutRate, final long timeoutMillis) {
+            mLatencyMillis = latencyMillis;
+            mJitterMillis = jitterMillis;
+            mErrorRate = errorRate;
+            mTimeoutRate = timeoutRate;
+            mTimeoutMillis = timeoutMillis;
+        }
+
+        /**
+         * @return The delay in milliseconds before the next response
+         */
+        private long nextLatency() {
+            return mLatencyMillis + (mJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(mJitterMillis + 1) : 0);
+        }
+
+        /**
+         * @return True if the next request should time out, false otherwise
+         */
+        private boolean nextTimeout() {
+            return mTimeoutRate > 0 && ThreadLocalRandom.current().nextDouble() < mTimeoutRate;
+        }
+
+        /**
+         * @return True if the next request should fail, false otherwise
+         */
+        private boolean nextError() {
+            return mErrorRate > 0 && ThreadLocalRandom.current().nextDouble() < mErrorRate;
+        }
+
+        /**
+         * @return The time in milliseconds to hold on to a request that times out
+         */
+        private long getTimeoutMillis() {
+            return mTimeoutMillis;
+        }
+
+    }
+
+    /**
+     * A step in a topic script.
+     */
+    public static class ScriptStep {
+
+        /** The time in milliseconds to wait before serving the topic */
+        private final long mDelay;
+        /** The topic to serve */
+        private final String mTopic;
+
+        /**
+         * Creates a new script step.
+         *
+         * @param delay
+         *            The time in milliseconds to wait before serving the topic
+         * @param topic
+         *            The topic to serve in the format served by the topic host
+         */
+        public ScriptStep(final long delay, final String topic) {
+            mDelay = delay;
+            mTopic = topic;
+        }
+
+        /**
+         * @return The time in milliseconds to wait before serving the topic
+         */
+        public long getDelay() {
+            return mDelay;
+        }
+
+        /**
+         * @return The topic to serve
+         */
+        public String getTopic() {
+            return mTopic;
+        }
+
+    }
+
+    /**
+     * The interface for being informed of what the updater does to the platforms.
+     */
+    public interface Listener {
+
+        /**
+         * Called when a changed topic is served for the first time.
+         *
+         * @param topic
+         *            The topic that was served
+         */
+        void onTopicServed(String topic);
+
+        /**
+         * Called when the Twitch channel was updated.
+         *
+         * @param status
+         *            The new status
+         * @param game
+         *            The new game
+         */
+        void onTwitchUpdated(String status, String game);
+
+        /**
+         * Called when the Hitbox media was updated.
+         *
+         * @param status
+         *            The new status
+         * @param categoryId
+         *            The new category ID
+         */
+        void onHitboxUpdated(String status, String categoryId);
+
+    }
+
+}
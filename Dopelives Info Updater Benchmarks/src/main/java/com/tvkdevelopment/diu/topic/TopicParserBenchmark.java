@@ -0,0 +1,66 @@
+package com.tvkdevelopment.diu.topic;
+
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks parsing the topic served by the topic host, comparing the parser to the regex it replaced.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TopicParserBenchmark {
+
+    /** The regex that parsed topics before the topic parser */
+    private static final Pattern sTopicRegex = Pattern.compile("^(.+)\n([^:]+): ?(.+)$");
+
+    /** The topic to parse */
+    @Param({ "Vinny\nGame: Dark Souls II: Scholar of the First Sin (filler)\n", "\n", "Offline\nNo stream\n" })
+    public String mTopic;
+
+    /** The parser to reuse across invocations */
+    private final TopicParser mParser = new TopicParser();
+
+    @Benchmark
+    public void parser(final Blackhole blackhole) {
+        if (mParser.parse(mTopic)) {
+            blackhole.consume(mParser.gameEquals("Dark Souls"));
+        }
+    }
+
+    @Benchmark
+    public void parserWithStrings(final Blackhole blackhole) {
+        if (mParser.parse(mTopic)) {
+            blackhole.consume(mParser.getStreamer());
+            blackhole.consume(mParser.getType());
+            blackhole.consume(mParser.getGame());
+        }
+    }
+
+    @Benchmark
+    public void regex(final Blackhole blackhole) {
+        final Matcher matcher = sTopicRegex.matcher(mTopic.trim());
+        if (matcher.find()) {
+            blackhole.consume(matcher.group(1));
+            blackhole.consume(matcher.group(2));
+            blackhole.consume(matcher.group(3));
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+package com.tvkdevelopment.diu.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Benchmarks reading response bodies through the HTTP helper against a local in-process server.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HttpHelperBenchmark {
+
+    /** The topic served by the local server */
+    private static final byte[] TOPIC = "Vinny\nGame: Dark Souls II\n".getBytes(StandardCharsets.UTF_8);
+
+    /** The local server */
+    private HttpServer mServer;
+    /** The URL of the topic on the local server */
+    private String mTopicUrl;
+    /** The helper to perform requests with */
+    private final HttpHelper mHttpHelper = new HttpHelper();
+    /** The conditional request for the topic */
+    private ConditionalRequest mTopicRequest;
+
+    @Setup
+    public void setup() throws IOException {
+        HttpHelper.configureConnectionPool();
+        // Measure the requests themselves rather than the rate limit
+        System.setProperty("diu.http.rate", "0");
+
+        mServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        mServer.createContext("/topic", this::respond);
+        mServer.start();
+
+        mTopicUrl = "http://127.0.0.1:" + mServer.getAddress().getPort() + "/topic";
+        mTopicRequest = new ConditionalRequest(mTopicUrl);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mServer.stop(0);
+    }
+
+    /**
+     * Serves the topic for any request, consuming the request body first.
+     *
+     * @param exchange
+     *            The exchange to respond to
+     *
+     * @throws IOException
+     *             When the exchange failed
+     */
+    private void respond(final HttpExchange exchange) throws IOException {
+        try (final InputStream input = exchange.getRequestBody()) {
+            final byte[] buffer = new byte[1024];
+            while (input.read(buffer) != -1) {
+                // Discard
+            }
+        }
+        exchange.sendResponseHeaders(200, TOPIC.length);
+        try (final OutputStream output = exchange.getResponseBody()) {
+            output.write(TOPIC);
+        }
+    }
+
+    @Benchmark
+    public String get() {
+        return mHttpHelper.get(mTopicUrl);
+    }
+
+    @Benchmark
+    public ConditionalRequest.Result getIfChanged() {
+        return mHttpHelper.getIfChanged(mTopicRequest);
+    }
+
+    @Benchmark
+    public String update() {
+        return mHttpHelper.put(mTopicUrl, "channel[status]=Vinny&channel[game]=Dark+Souls+II");
+    }
+
+}
@@ -0,0 +1,195 @@
+package com.tvkdevelopment.diu.topic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.tvkdevelopment.diu.stub.StubIrcServer;
+
+/**
+ * Tests the IRC topic source against a local stub IRC server, from registering and joining to parsing topics and
+ * reconnecting after the connection drops.
+ */
+public class IrcTopicSourceTest {
+
+    /** The channel to read the topic of */
+    private static final String CHANNEL = "#dopelives";
+    /** The pattern of topics with stream info */
+    private static final Pattern TOPIC_PATTERN = Pattern.compile(
+            "^LIVE: (?<streamer>[^|]+?) \\| (?<type>[^:]+): (?<game>.+)$");
+    /** The pattern of topics that mean no stream is active */
+    private static final Pattern OFFLINE_PATTERN = Pattern.compile("^OFFLINE");
+    /** The maximum time in milliseconds to wait for something to happen */
+    private static final long TIMEOUT = 5000;
+    /** The time in milliseconds to wait to make sure that nothing happens */
+    private static final long QUIET_TIME = 300;
+
+    /** The stub server */
+    private StubIrcServer mServer;
+    /** The source being tested */
+    private IrcTopicSource mSource;
+    /** The topics and availability changes received from the source, as "topic:..." and "available:..." */
+    private final BlockingQueue<String> mEvents = new LinkedBlockingQueue<>();
+
+    @Before
+    public void setUp() throws IOException {
+        mServer = new StubIrcServer(CHANNEL);
+        mServer.start();
+        mSource = new IrcTopicSource("127.0.0.1", mServer.getPort(), CHANNEL, "Tester", TOPIC_PATTERN,
+                OFFLINE_PATTERN);
+    }
+
+    @After
+    public void tearDown() {
+        mSource.stop();
+        mServer.stop();
+    }
+
+    /**
+     * Starts the source, recording everything it passes on.
+     */
+    private void startSource() {
+        mSource.start(new TopicSource.Listener() {
+            @Override
+            public void onTopic(final String topic) {
+                mEvents.add("topic:" + topic);
+            }
+
+            @Override
+            public void onAvailabilityChanged(final boolean available) {
+                mEvents.add("available:" + available);
+            }
+        });
+    }
+
+    /**
+     * Waits for the next event of the source.
+     *
+     * @return The event
+     */
+    private String nextEvent() throws InterruptedException {
+        final String event = mEvents.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+        assertNotNull("No event within " + TIMEOUT + " ms", event);
+        return event;
+    }
+
+    @Test
+    public void topicOnJoinIsConverted() throws InterruptedException {
+        mServer.setTopic("LIVE: Vinny | Game: Dark Souls II");
+        startSource();
+
+        assertEquals("available:true", nextEvent());
+        assertEquals("topic:Vinny\nGame: Dark Souls II\n", nextEvent());
+        assertNotNull(mServer.awaitReceived("JOIN " + CHANNEL, TIMEOUT));
+    }
+
+    @Test
+    public void topicChangesArePushed() throws InterruptedException {
+        mServer.setTopic("LIVE: Vinny | Game: Dark Souls II");
+        startSource();
+        assertEquals("available:true", nextEvent());
+        assertEquals("topic:Vinny\nGame: Dark Souls II\n", nextEvent());
+
+        mServer.setTopic("LIVE: Joel | Movie: Shrek");
+        assertEquals("topic:Joel\nMovie: Shrek\n", nextEvent());
+    }
+
+    @Test
+    public void ordinaryTopicsAreIgnored() throws InterruptedException {
+        mServer.setTopic("Welcome to the channel: be nice | rules at http://example.com");
+        startSource();
+
+        // The source is available, but the topic doesn't say anything about the stream
+        assertEquals("available:true", nextEvent());
+        assertNull(mEvents.poll(QUIET_TIME, TimeUnit.MILLISECONDS));
+
+        mServer.setTopic("No stream today");
+        mServer.setTopic("LIVE: Vinny | Game: Dark Souls II");
+        assertEquals("topic:Vinny\nGame: Dark Souls II\n", nextEvent());
+    }
+
+    @Test
+    public void offlineTopicEndsTheStream() throws InterruptedException {
+        mServer.setTopic("LIVE: Vinny | Game: Dark Souls II");
+        startSource();
+        assertEquals("available:true", nextEvent());
+        assertEquals("topic:Vinny\nGame: Dark Souls II\n", nextEvent());
+
+        mServer.setTopic("OFFLINE | Next stream on Friday");
+        assertEquals("topic:", nextEvent());
+    }
+
+    @Test
+    public void missingTopicIsIgnored() throws InterruptedException {
+        startSource();
+
+        assertEquals("available:true", nextEvent());
+        assertNull(mEvents.poll(QUIET_TIME, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void pingIsAnswered() throws InterruptedException {
+        mServer.setTopic("LIVE: Vinny | Game: Dark Souls II");
+        startSource();
+        assertEquals("available:true", nextEvent());
+        assertEquals("topic:Vinny\nGame: Dark Souls II\n", nextEvent());
+
+        mServer.ping("stub-token");
+        assertEquals("PONG :stub-token", mServer.awaitReceived("PONG", TIMEOUT));
+    }
+
+    @Test
+    public void nicknameInUseIsReplaced() throws InterruptedException {
+        mServer.setRejectFirstNick(true);
+        mServer.setTopic("LIVE: Vinny | Game: Dark Souls II");
+        startSource();
+
+        assertEquals("NICK Tester", mServer.awaitReceived("NICK", TIMEOUT));
+        final String retry = mServer.awaitReceived("NICK", TIMEOUT);
+        assertNotNull(retry);
+        assertTrue(retry, retry.matches("NICK Tester[0-9]+"));
+        assertEquals("available:true", nextEvent());
+        assertEquals("topic:Vinny\nGame: Dark Souls II\n", nextEvent());
+    }
+
+    @Test
+    public void droppedConnectionIsReestablished() throws InterruptedException {
+        mServer.setTopic("LIVE: Vinny | Game: Dark Souls II");
+        startSource();
+        assertEquals("available:true", nextEvent());
+        assertEquals("topic:Vinny\nGame: Dark Souls II\n", nextEvent());
+
+        // The topic changes while the source is disconnected and is picked up again on join
+        mServer.dropConnections();
+        assertEquals("available:false", nextEvent());
+        mServer.setTopic("LIVE: Joel | Movie: Shrek");
+        assertEquals("available:true", nextEvent());
+        assertEquals("topic:Joel\nMovie: Shrek\n", nextEvent());
+        assertEquals(2, mServer.getConnectionCount());
+    }
+
+    @Test
+    public void unreachableServerIsRetried() throws InterruptedException, IOException {
+        final int port = mServer.getPort();
+        mServer.stop();
+        mSource = new IrcTopicSource("127.0.0.1", port, CHANNEL, "Tester", TOPIC_PATTERN, OFFLINE_PATTERN);
+        startSource();
+        assertEquals("available:false", nextEvent());
+        mSource.stop();
+
+        // Nothing else is passed on after stopping
+        assertNull(mEvents.poll(QUIET_TIME, TimeUnit.MILLISECONDS));
+    }
+
+}
@@ -0,0 +1,183 @@
+package com.tvkdevelopment.diu.topic;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Tests that the topic parser accepts and extracts exactly what the regular expression it replaced did, by comparing
+ * both on hand-picked edge cases and on large amounts of random and structured topics.
+ */
+public class TopicParserTest {
+
+    /** The regular expression that the parser replaced, applied to the trimmed topic */
+    private static final Pattern TOPIC_PATTERN = Pattern.compile("^(.+)\n([^:]+): ?(.+)$");
+
+    /** The characters that random topics are made of, weighted towards the ones that matter to the format */
+    private static final char[] ALPHABET = { 'a', 'b', 'Z', '1', ' ', ' ', ' ', ':', ':', ':', '\n', '\n', '\n', '\r',
+            '\r', '\t', '\u0085', ' ', ' ', '\u000B', '\u000C', '\u0000', ' ', '|', '-', '\u00E9' };
+    /** The seed of the random topics, fixed so that failures can be reproduced */
+    private static final long SEED = 20160214L;
+    /** The amount of random topics to compare */
+    private static final int RANDOM_TOPICS = 200000;
+    /** The amount of structured topics to compare */
+    private static final int STRUCTURED_TOPICS = 200000;
+
+    /** The parser being tested, reused like the updater does */
+    private final TopicParser mParser = new TopicParser();
+
+    @Test
+    public void matchesRegexOnEdgeCases() {
+        final String[] topics = { "", " ", "\n", ":", "\n:", "a\n:", "a\nb:", "a\n:b", "a\nb:c", "a\nb: c",
+                "a\nb:  c", "a\nb: ", "a\nb:  ", "a\nb: \n", "a\nb:c\n", "a\nb:c\r\n", "a\nb:c\r", "a\nb:c\n\n",
+                "a\nb:c\r\r", "a\nb:c\n\r", "a\nb:c\u0085", "a\nb:c ", "a\nb:c \n", "a\nb:c\nd",
+                "a\nb:c:d", "a\nb\nc:d", "a\nb\r\nc:d", "a\r\nb:c", "a\rb:c", "\na\nb:c", "  a\nb:c  ",
+                "\t\na\nb:c\n\t", "a\n:b:c", "a\nb::c", "a\nb: :c", "a\n b : c ", "a\nb:  ", "a\nb: c\u0085",
+                "a\nb: \u0085c", "a\nb:\u0085", "a\n\u0085:c", "a\u0085\nb:c", "a\nb:c\u0000", "\u0000a\nb:c",
+                "Vinny\nGame: Dark Souls II", "Vinny\nGame: Dark Souls II\n", "Joel & Vinny\nMovie: Shrek 2: Revenge",
+                "Vinny\nGame: Zelda: Breath of the Wild", "Vinny\nGame:Dark Souls", "Vinny\n\nGame: Dark Souls",
+                "Vinny Game: Dark Souls", "Vinny\nGame Dark Souls", "Vinny\nGame: Dark\nSouls" };
+        for (final String topic : topics) {
+            assertSameResult(topic);
+        }
+    }
+
+    @Test
+    public void matchesRegexOnRandomTopics() {
+        final Random random = new Random(SEED);
+        int matched = 0;
+        for (int i = 0; i < RANDOM_TOPICS; ++i) {
+            final int length = random.nextInt(12);
+            final StringBuilder topic = new StringBuilder(length);
+            for (int j = 0; j < length; ++j) {
+                topic.append(ALPHABET[random.nextInt(ALPHABET.length)]);
+            }
+            if (assertSameResult(topic.toString())) {
+                ++matched;
+            }
+        }
+
+        // Make sure that both outcomes were actually compared
+        assertTrue("Only " + matched + " random topics matched", matched > RANDOM_TOPICS / 1000);
+        assertTrue("All random topics matched", matched < RANDOM_TOPICS);
+    }
+
+    @Test
+    public void matchesRegexOnStructuredTopics() {
+        final Random random = new Random(SEED + 1);
+        int matched = 0;
+        for (int i = 0; i < STRUCTURED_TOPICS; ++i) {
+            // A topic that is close to the format, with any of its parts empty, broken or padded
+            final StringBuilder topic = new StringBuilder();
+            appendRandom(random, topic, random.nextInt(3), " \t\n");
+            appendRandom(random, topic, random.nextInt(4), "ab :\r");
+            topic.append(pick(random, "\n", "\n", "\n", "\r\n", "\r", "", "\n\n", " "));
+            appendRandom(random, topic, random.nextInt(4), "ab \n\r");
+            topic.append(pick(random, ":", ":", ":", ": ", ":  ", "", "::", " :"));
+            appendRandom(random, topic, random.nextInt(4), "ab :\n");
+            topic.append(pick(random, "", "", "", "\n", "\r\n", "\r", "\n\n", "\u0085", " ", " \n"));
+            appendRandom(random, topic, random.nextInt(3), " \t\n\r");
+            if (assertSameResult(topic.toString())) {
+                ++matched;
+            }
+        }
+
+        assertTrue("Only " + matched + " structured topics matched", matched > STRUCTURED_TOPICS / 10);
+        assertTrue("All structured topics matched", matched < STRUCTURED_TOPICS);
+    }
+
+    @Test
+    public void parsesAnyCharSequence() {
+        final StringBuilder topic = new StringBuilder(" Vinny\nGame: Dark Souls II\n");
+        assertTrue(mParser.parse(topic));
+        assertEquals("Vinny", mParser.getStreamer());
+        assertEquals("Game", mParser.getType());
+        assertEquals("Dark Souls II", mParser.getGame());
+    }
+
+    /**
+     * Checks that the parser and the regular expression agree on a topic, including the comparisons against the
+     * extracted parts.
+     *
+     * @param topic
+     *            The topic as served by the topic host
+     *
+     * @return True if the topic matched, false otherwise
+     */
+    private boolean assertSameResult(final String topic) {
+        final String description = "Topic \"" + escape(topic) + "\"";
+        final Matcher matcher = TOPIC_PATTERN.matcher(topic.trim());
+        final boolean expected = matcher.find();
+        assertEquals(description, expected, mParser.parse(topic));
+        if (!expected) {
+            return false;
+        }
+
+        assertEquals(description, matcher.group(1), mParser.getStreamer());
+        assertEquals(description, matcher.group(2), mParser.getType());
+        assertEquals(description, matcher.group(3), mParser.getGame());
+        assertTrue(description, mParser.streamerEquals(matcher.group(1)));
+        assertTrue(description, mParser.typeEquals(matcher.group(2)));
+        assertTrue(description, mParser.gameEquals(matcher.group(3)));
+        assertFalse(description, mParser.gameEquals(matcher.group(3) + " "));
+        assertFalse(description, mParser.gameEquals(null));
+        return true;
+    }
+
+    /**
+     * Appends random characters to a topic.
+     *
+     * @param random
+     *            The source of randomness
+     * @param topic
+     *            The topic to append to
+     * @param count
+     *            The amount of characters to append
+     * @param characters
+     *            The characters to pick from
+     */
+    private static void appendRandom(final Random random, final StringBuilder topic, final int count,
+            final String characters) {
+        for (int i = 0; i < count; ++i) {
+            topic.append(characters.charAt(random.nextInt(characters.length())));
+        }
+    }
+
+    /**
+     * @param random
+     *            The source of randomness
+     * @param options
+     *            The options to pick from
+     *
+     * @return A random option
+     */
+    private static String pick(final Random random, final String... options) {
+        return options[random.nextInt(options.length)];
+    }
+
+    /**
+     * @param topic
+     *            The topic to escape
+     *
+     * @return The topic with all special characters escaped, so that failures can be read
+     */
+    private static String escape(final String topic) {
+        final StringBuilder escaped = new StringBuilder();
+        for (int i = 0; i < topic.length(); ++i) {
+            final char c = topic.charAt(i);
+            if (c >= ' ' && c < 0x7F) {
+                escaped.append(c);
+            } else {
+                escaped.append(String.format("\\u%04X", (int) c));
+            }
+        }
+        return escaped.toString();
+    }
+
+}
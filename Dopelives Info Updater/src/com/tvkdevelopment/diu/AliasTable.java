@@ -0,0 +1,293 @@
+package com.tvkdevelopment.diu;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * An immutable table of game aliases packed into a single off-heap buffer. The buffer starts with an open addressing
+ * hash table of record offsets, followed by the records themselves:
+ *
+ * <pre>
+ * int hash, byte flags,
+ * short keyLength, byte[] key, short twitchLength, byte[] twitch, short hitboxLength, byte[] hitbox
+ * </pre>
+ *
+ * where strings are UTF-8 and a length of -1 means the value isn't set. Lookups only read the buffer, so any number of
+ * threads can use the table at once.
+ */
+public class AliasTable {
+
+    /** The table without any aliases */
+    public static final AliasTable EMPTY = build(Collections.<Alias> emptyList());
+
+    /** The flag marking a game that must not be shown on Twitch */
+    private static final int FLAG_BLACKLISTED = 1;
+    /** The length written for a value that isn't set */
+    private static final short NO_VALUE = -1;
+    /** The size in bytes of a slot of the hash table */
+    private static final int SLOT_SIZE = Integer.BYTES;
+
+    /** The hash table followed by the records */
+    private final ByteBuffer mImage;
+    /** The mask to turn a hash into a slot, one less than the amount of slots */
+    private final int mMask;
+    /** The amount of aliases in the table */
+    private final int mSize;
+
+    private AliasTable(final ByteBuffer image, final int mask, final int size) {
+        mImage = image;
+        mMask = mask;
+        mSize = size;
+    }
+
+    /**
+     * Builds a table.
+     *
+     * @param aliases
+     *            The aliases with unique normalised keys
+     *
+     * @return The table
+     */
+    public static AliasTable build(final Collection<Alias> aliases) {
+        // Keep the table at most half full so that probe sequences stay short
+        int slots = 2;
+        while (slots < aliases.size() * 2) {
+            slots <<= 1;
+        }
+
+        final byte[][][] encoded = new byte[aliases.size()][][];
+        int recordsSize = 0;
+        int i = 0;
+        for (final Alias alias : aliases) {
+            encoded[i] = new byte[][] { encode(alias.mGame), encode(alias.mTwitchGame), encode(alias.mHitboxGame) };
+            recordsSize += Integer.BYTES + 1;
+            for (final byte[] value : encoded[i]) {
+                recordsSize += Short.BYTES + (value != null ? value.length : 0);
+            }
+            ++i;
+        }
+
+        final ByteBuffer image = ByteBuffer.allocateDirect(slots * SLOT_SIZE + recordsSize);
+        int offset = slots * SLOT_SIZE;
+        i = 0;
+        for (final Alias alias : aliases) {
+            final byte[] key = encoded[i][0];
+            final int hash = hash(key);
+
+            // Slots hold the offset plus one so that zero marks an empty slot
+            int slot = hash & (slots - 1);
+            while (image.getInt(slot * SLOT_SIZE) != 0) {
+                slot = (slot + 1) & (slots - 1);
+            }
+            image.putInt(slot * SLOT_SIZE, offset + 1);
+
+            image.position(offset);
+            image.putInt(hash);
+            image.put((byte) (alias.mBlacklisted ? FLAG_BLACKLISTED : 0));
+            for (final byte[] value : encoded[i]) {
+                if (value != null) {
+                    image.putShort((short) value.length);
+                    image.put(value);
+                } else {
+                    image.putShort(NO_VALUE);
+                }
+            }
+            offset = image.position();
+            ++i;
+        }
+
+        return new AliasTable(image, slots - 1, aliases.size());
+    }
+
+    /**
+     * Looks up an alias.
+     *
+     * @param key
+     *            The normalised game from the topic
+     *
+     * @return The alias or null if there is none
+     */
+    public Alias get(final String key) {
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final int hash = hash(keyBytes);
+        for (int slot = hash & mMask;; slot = (slot + 1) & mMask) {
+            final int offset = mImage.getInt(slot * SLOT_SIZE) - 1;
+            if (offset < 0) {
+                return null;
+            }
+            if (mImage.getInt(offset) == hash && matches(offset + Integer.BYTES + 1, keyBytes)) {
+                return readAlias(offset);
+            }
+        }
+    }
+
+    /**
+     * @return The amount of aliases in the table
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Checks whether the string at an offset equals a key.
+     *
+     * @param offset
+     *            The offset of the string's length
+     * @param key
+     *            The UTF-8 bytes of the key
+     *
+     * @return True if the string equals the key, false otherwise
+     */
+    private boolean matches(final int offset, final byte[] key) {
+        if (mImage.getShort(offset) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; ++i) {
+            if (mImage.get(offset + Short.BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads the alias from a record.
+     *
+     * @param offset
+     *            The offset of the record
+     *
+     * @return The alias
+     */
+    private Alias readAlias(final int offset) {
+        final boolean blacklisted = (mImage.get(offset + Integer.BYTES) & FLAG_BLACKLISTED) != 0;
+        int position = offset + Integer.BYTES + 1;
+        final String game = readString(position);
+        position += Short.BYTES + Math.max(0, mImage.getShort(position));
+        final String twitchGame = readString(position);
+        position += Short.BYTES + Math.max(0, mImage.getShort(position));
+        final String hitboxGame = readString(position);
+        return new Alias(game, twitchGame, hitboxGame, blacklisted);
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @param offset
+     *            The offset of the string's length
+     *
+     * @return The string or null if the value isn't set
+     */
+    private String readString(final int offset) {
+        final short length = mImage.getShort(offset);
+        if (length == NO_VALUE) {
+            return null;
+        }
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; ++i) {
+            bytes[i] = mImage.get(offset + Short.BYTES + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Encodes a value for the table.
+     *
+     * @param value
+     *            The value to encode or null if it isn't set
+     *
+     * @return The UTF-8 bytes or null if the value isn't set
+     */
+    private static byte[] encode(final String value) {
+        if (value == null) {
+            return null;
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new IllegalArgumentException("Alias is too long: " + value.substring(0, 50) + "...");
+        }
+        return bytes;
+    }
+
+    /**
+     * Hashes a key with FNV-1a, which spreads short strings well enough for linear probing.
+     *
+     * @param key
+     *            The UTF-8 bytes of the key
+     *
+     * @return The hash
+     */
+    private static int hash(final byte[] key) {
+        int hash = 0x811c9dc5;
+        for (final byte b : key) {
+            hash = (hash ^ (b & 0xff)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    /**
+     * An alias of a game, telling what to show on Twitch and Hitbox instead of searching it.
+     */
+    public static class Alias {
+
+        /** The normalised game from the topic */
+        private final String mGame;
+        /** The name of the game on Twitch or null to search it */
+        private final String mTwitchGame;
+        /** The category ID of the game on Hitbox or null to search it */
+        private final String mHitboxGame;
+        /** Whether or not the game must not be shown on Twitch */
+        private final boolean mBlacklisted;
+
+        /**
+         * Creates a new alias.
+         *
+         * @param game
+         *            The normalised game from the topic
+         * @param twitchGame
+         *            The name of the game on Twitch or null to search it
+         * @param hitboxGame
+         *            The category ID of the game on Hitbox or null to search it
+         * @param blacklisted
+         *            Whether or not the game must not be shown on Twitch
+         */
+        public Alias(final String game, final String twitchGame, final String hitboxGame,
+                final boolean blacklisted) {
+            mGame = game;
+            mTwitchGame = twitchGame;
+            mHitboxGame = hitboxGame;
+            mBlacklisted = blacklisted;
+        }
+
+        /**
+         * @return The normalised game from the topic
+         */
+        public String getGame() {
+            return mGame;
+        }
+
+        /**
+         * @return The name of the game on Twitch or null to search it
+         */
+        public String getTwitchGame() {
+            return mTwitchGame;
+        }
+
+        /**
+         * @return The category ID of the game on Hitbox or null to search it
+         */
+        public String getHitboxGame() {
+            return mHitboxGame;
+        }
+
+        /**
+         * @return Whether or not the game must not be shown on Twitch
+         */
+        public boolean isBlacklisted() {
+            return mBlacklisted;
+        }
+
+    }
+
+}
@@ -0,0 +1,210 @@
+package com.tvkdevelopment.diu;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.tvkdevelopment.diu.topic.FallbackTopicSource;
+import com.tvkdevelopment.diu.topic.IrcTopicSource;
+import com.tvkdevelopment.diu.topic.TopicSource;
+
+/**
+ * The configuration of a single channel: where its topic comes from and which Twitch and Hitbox channels to update.
+ * Channels are either loaded from a JSON file holding an array of channels such as
+ *
+ * <pre>
+ * [ { "name": "dopelives", "topicUrl": "http://...", "statusPostfix": "Join us ...",
+ *     "twitch": { "channel": "...", "token": "..." }, "hitbox": { "channel": "...", "token": "..." },
+ *     "irc": { "host": "...", "port": 6667, "channel": "#...", "nick": "...", "topicPattern": "...",
+ *              "offlinePattern": "..." } } ]
+ * </pre>
+ *
+ * where the status postfix and IRC settings are optional, as are the port, nick and offline pattern within the IRC
+ * settings, or created from the Params and system properties for a single channel.
+ */
+public class Channel {
+
+    /** The URL at which to get the topic info by default, which can be overridden with diu.topic.url */
+    private static final String DEFAULT_TOPIC_URL = System.getProperty("diu.topic.url",
+            "http://goalitium.kapsi.fi/dopelives_status2");
+    /** The name of the channel created from the Params */
+    private static final String DEFAULT_NAME = "dopelives";
+
+    /** The name of the channel as shown in the output */
+    private final String mName;
+    /** The URL at which to get the topic info */
+    private final String mTopicUrl;
+    /** Creates the source receiving the topic from IRC, returning null if IRC isn't used */
+    private final Supplier<IrcTopicSource> mIrcSourceFactory;
+    /** The string to put behind the streamer/game info in the status */
+    private final String mStatusPostfix;
+    /** The Twitch channel to update */
+    private final String mTwitchChannel;
+    /** The Twitch authentication token to use */
+    private final String mTwitchToken;
+    /** The Hitbox channel to update */
+    private final String mHitboxChannel;
+    /** The Hitbox authentication token to use */
+    private final String mHitboxToken;
+
+    private Channel(final String name, final String topicUrl, final Supplier<IrcTopicSource> ircSourceFactory,
+            final String statusPostfix, final String twitchChannel, final String twitchToken,
+            final String hitboxChannel, final String hitboxToken) {
+        mName = name;
+        mTopicUrl = topicUrl;
+        mIrcSourceFactory = ircSourceFactory;
+        mStatusPostfix = statusPostfix;
+        mTwitchChannel = twitchChannel;
+        mTwitchToken = twitchToken;
+        mHitboxChannel = hitboxChannel;
+        mHitboxToken = hitboxToken;
+    }
+
+    /**
+     * Creates the single channel configured through the Params and the diu.topic.url and diu.irc.* system properties.
+     *
+     * @return The channel
+     *
+     * @throws IllegalArgumentException
+     *             When the diu.irc.* system properties are incomplete
+     */
+    public static Channel fromParams() {
+        // Read the IRC settings right away so that a mistake shows on start
+        final IrcTopicSource ircSource = IrcTopicSource.fromSystemProperties();
+        return new Channel(DEFAULT_NAME, DEFAULT_TOPIC_URL, () -> ircSource, Params.STATUS_POSTFIX,
+                Params.TWITCH_CHANNEL, Params.TWITCH_TOKEN, Params.HITBOX_CHANNEL, Params.HITBOX_TOKEN);
+    }
+
+    /**
+     * Loads channels from a JSON file.
+     *
+     * @param file
+     *            The file holding an array of channels
+     *
+     * @return The channels in the order of the file
+     *
+     * @throws IOException
+     *             When the file couldn't be read
+     * @throws IllegalArgumentException
+     *             When the file doesn't hold a valid configuration
+     */
+    public static List<Channel> load(final File file) throws IOException {
+        final String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+
+        try {
+            final JSONArray channels = new JSONArray(content);
+            final List<Channel> result = new ArrayList<>(channels.length());
+            final Set<String> names = new HashSet<>();
+            for (int i = 0; i < channels.length(); ++i) {
+                final Channel channel = fromJson(channels.getJSONObject(i));
+                if (!names.add(channel.getName())) {
+                    throw new IllegalArgumentException("Channel " + channel.getName() + " is configured twice");
+                }
+                result.add(channel);
+            }
+            return result;
+
+        } catch (final JSONException ex) {
+            throw new IllegalArgumentException("Invalid channel configuration: " + ex.getMessage(), ex);
+        }
+    }
+
+    /**
+     * Creates a channel from its JSON configuration.
+     *
+     * @param json
+     *            The configuration of the channel
+     *
+     * @return The channel
+     */
+    private static Channel fromJson(final JSONObject json) {
+        final JSONObject twitch = json.getJSONObject("twitch");
+        final JSONObject hitbox = json.getJSONObject("hitbox");
+
+        // Compile the topic pattern right away so that a mistake shows on start
+        final JSONObject irc = json.optJSONObject("irc");
+        final Supplier<IrcTopicSource> ircSourceFactory;
+        if (irc != null) {
+            final String host = irc.getString("host");
+            final int port = irc.optInt("port", IrcTopicSource.DEFAULT_PORT);
+            final String ircChannel = irc.getString("channel");
+            final String nick = irc.optString("nick", IrcTopicSource.DEFAULT_NICK);
+            final Pattern topicPattern = Pattern.compile(irc.getString("topicPattern"));
+            final String offline = irc.optString("offlinePattern", null);
+            final Pattern offlinePattern = (offline != null ? Pattern.compile(offline) : null);
+            ircSourceFactory = () -> new IrcTopicSource(host, port, ircChannel, nick, topicPattern, offlinePattern);
+        } else {
+            ircSourceFactory = () -> null;
+        }
+
+        return new Channel(json.getString("name"), json.optString("topicUrl", DEFAULT_TOPIC_URL), ircSourceFactory,
+                json.optString("statusPostfix", Params.STATUS_POSTFIX), twitch.getString("channel"), twitch.getString(
+                        "token"), hitbox.getString("channel"), hitbox.getString("token"));
+    }
+
+    /**
+     * Creates the source providing the topic of the channel. When IRC is configured, the topic is received from IRC
+     * while polling the topic host whenever IRC is down.
+     *
+     * @return The topic source
+     */
+    public TopicSource createTopicSource() {
+        final TopicSource httpSource = StreamInfo.createHttpSource(mTopicUrl);
+        final IrcTopicSource ircSource = mIrcSourceFactory.get();
+        return (ircSource != null ? new FallbackTopicSource(ircSource, httpSource) : httpSource);
+    }
+
+    /**
+     * @return The name of the channel as shown in the output
+     */
+    public String getName() {
+        return mName;
+    }
+
+    /**
+     * @return The string to put behind the streamer/game info in the status
+     */
+    public String getStatusPostfix() {
+        return mStatusPostfix;
+    }
+
+    /**
+     * @return The Twitch channel to update
+     */
+    public String getTwitchChannel() {
+        return mTwitchChannel;
+    }
+
+    /**
+     * @return The Twitch authentication token to use
+     */
+    public String getTwitchToken() {
+        return mTwitchToken;
+    }
+
+    /**
+     * @return The Hitbox channel to update
+     */
+    public String getHitboxChannel() {
+        return mHitboxChannel;
+    }
+
+    /**
+     * @return The Hitbox authentication token to use
+     */
+    public String getHitboxToken() {
+        return mHitboxToken;
+    }
+
+}
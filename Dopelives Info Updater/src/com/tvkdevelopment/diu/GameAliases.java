@@ -0,0 +1,161 @@
+package com.tvkdevelopment.diu;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.tvkdevelopment.diu.AliasTable.Alias;
+import com.tvkdevelopment.diu.log.Log;
+
+/**
+ * The game aliases from a JSON file holding an array of aliases such as
+ *
+ * <pre>
+ * [ { "game": "ds2", "twitch": "Dark Souls II", "hitbox": "12345" },
+ *   { "game": "Battle Rape", "blacklist": true } ]
+ * </pre>
+ *
+ * where the Twitch name, Hitbox category ID and blacklist flag are optional. Games with an alias skip the search for
+ * the values that are set, and blacklisted games are never shown on Twitch. The file is watched for changes and
+ * reloaded without interrupting lookups; a file that can't be parsed leaves the previous aliases in place.
+ */
+public class GameAliases {
+
+    /** The time in milliseconds to wait after a change so that a file being written is reloaded only once */
+    private static final long RELOAD_DELAY = 200;
+
+    /** The file holding the aliases */
+    private final File mFile;
+
+    /** The current aliases */
+    private volatile AliasTable mTable = AliasTable.EMPTY;
+
+    /**
+     * Creates new aliases and loads them from the file if it exists.
+     *
+     * @param file
+     *            The file holding the aliases
+     */
+    public GameAliases(final File file) {
+        mFile = file.getAbsoluteFile();
+        load();
+    }
+
+    /**
+     * Looks up the alias of a game.
+     *
+     * @param game
+     *            The game as found in the topic or on Twitch
+     *
+     * @return The alias or null if there is none
+     */
+    public Alias get(final String game) {
+        final AliasTable table = mTable;
+        return (table.size() > 0 ? table.get(GameCache.normalize(game)) : null);
+    }
+
+    /**
+     * Checks whether a game must not be shown on Twitch.
+     *
+     * @param game
+     *            The game as found in the topic or on Twitch
+     *
+     * @return True if the game is blacklisted, false otherwise
+     */
+    public boolean isBlacklisted(final String game) {
+        final Alias alias = get(game);
+        return (alias != null && alias.isBlacklisted());
+    }
+
+    /**
+     * Starts reloading the aliases in the background whenever the file changes.
+     */
+    public void startWatching() {
+        final Thread thread = new Thread(this::watch, "Alias watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Watches the directory of the file, reloading the aliases when the file is created, changed or deleted.
+     */
+    private void watch() {
+        final Path directory = mFile.getParentFile().toPath();
+        try (final WatchService watcher = FileSystems.getDefault().newWatchService()) {
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE);
+
+            while (true) {
+                final WatchKey key = watcher.take();
+                boolean changed = false;
+                for (final WatchEvent<?> event : key.pollEvents()) {
+                    changed |= (event.kind() == StandardWatchEventKinds.OVERFLOW || mFile.getName().equals(String
+                            .valueOf(event.context())));
+                }
+                if (!key.reset()) {
+                    Log.warn("aliases", "Stopped watching game aliases, as " + directory + " is gone");
+                    return;
+                }
+
+                if (changed) {
+                    // Editors often write a file in several steps, so let them finish first
+                    Thread.sleep(RELOAD_DELAY);
+                    for (WatchKey pending = watcher.poll(); pending != null; pending = watcher.poll()) {
+                        pending.pollEvents();
+                        pending.reset();
+                    }
+                    load();
+                }
+            }
+
+        } catch (final IOException ex) {
+            Log.warn("aliases", "Couldn't watch game aliases: " + ex.getMessage());
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Loads the aliases from the file, keeping the current aliases if it can't be parsed.
+     */
+    private void load() {
+        if (!mFile.isFile()) {
+            if (mTable.size() > 0) {
+                Log.info("aliases", "Game aliases removed");
+            }
+            mTable = AliasTable.EMPTY;
+            return;
+        }
+
+        try {
+            final String content = new String(Files.readAllBytes(mFile.toPath()), StandardCharsets.UTF_8);
+            final JSONArray entries = new JSONArray(content);
+            final Map<String, Alias> aliases = new LinkedHashMap<>(entries.length() * 2);
+            for (int i = 0; i < entries.length(); ++i) {
+                final JSONObject entry = entries.getJSONObject(i);
+                final String game = GameCache.normalize(entry.getString("game"));
+                aliases.put(game, new Alias(game, entry.optString("twitch", null), entry.optString("hitbox", null),
+                        entry.optBoolean("blacklist", false)));
+            }
+            mTable = AliasTable.build(aliases.values());
+            Log.info("aliases", "Loaded " + aliases.size() + " game aliases");
+
+        } catch (final IOException | JSONException | IllegalArgumentException ex) {
+            Log.warn("aliases", "Couldn't load game aliases: " + ex.getMessage());
+        }
+    }
+
+}
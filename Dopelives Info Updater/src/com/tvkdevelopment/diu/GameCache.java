@@ -0,0 +1,210 @@
+package com.tvkdevelopment.diu;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.tvkdevelopment.diu.journal.Journal;
+import com.tvkdevelopment.diu.journal.JournalRecord;
+import com.tvkdevelopment.diu.journal.RecordType;
+import com.tvkdevelopment.diu.journal.RecordedResponses;
+import com.tvkdevelopment.diu.log.Log;
+
+/**
+ * A persistent cache for resolved games, mapping the game from the topic to the games found on Twitch and Hitbox.
+ * Both hits and misses are stored, each with their own time to live, and the least recently used entries are evicted
+ * once the cache is full.
+ */
+public class GameCache {
+
+    /** The amount of time in milliseconds that a found game stays valid */
+    private static final long HIT_TTL = 7 * 24 * 60 * 60 * 1000L;
+    /** The amount of time in milliseconds that a game that either platform doesn't know stays valid */
+    private static final long MISS_TTL = 6 * 60 * 60 * 1000L;
+    /** The maximum amount of games to keep in the cache */
+    private static final int MAX_ENTRIES = 1000;
+
+    /** A filter for converting any whitespace to a single space */
+    private static final Pattern sWhitespaceFilter = Pattern.compile("\\s+");
+
+    /** The file that the cache is persisted to */
+    private final File mFile;
+
+    /** The cached games by normalised topic game, in least recently used order */
+    private final Map<String, Entry> mEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, GameCache.Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /**
+     * Creates a new cache and loads any games previously persisted to the file.
+     *
+     * @param file
+     *            The file to persist the cache to
+     */
+    public GameCache(final File file) {
+        mFile = file;
+        load();
+    }
+
+    /**
+     * Normalises a topic game so that trivial differences in whitespace and case map to the same entry.
+     *
+     * @param game
+     *            The game as found in the topic
+     *
+     * @return The normalised game
+     */
+    public static String normalize(final String game) {
+        return sWhitespaceFilter.matcher(game).replaceAll(" ").trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Retrieves the resolution of a game if it's cached and hasn't expired yet.
+     *
+     * @param game
+     *            The game as found in the topic
+     *
+     * @return The cached resolution or null if there is none
+     */
+    public synchronized Entry get(final String game) {
+        final String key = normalize(game);
+        final RecordedResponses recorded = RecordedResponses.getActive();
+        if (recorded != null) {
+            final JournalRecord response = recorded.find(RecordType.CACHE, key);
+            return (response != null ? new Entry(response.getField(1), response.getField(2), Long.MAX_VALUE) : null);
+        }
+
+        final Entry entry = mEntries.get(key);
+        if (entry == null) {
+            return null;
+        }
+
+        if (entry.mExpiresAt <= System.currentTimeMillis()) {
+            mEntries.remove(key);
+            return null;
+        }
+
+        Journal.lookup(RecordType.CACHE, key, entry.mTwitchGame, entry.mHitboxGame);
+        return entry;
+    }
+
+    /**
+     * Stores the resolution of a game and persists the cache. Only answers from both platforms should be stored, never
+     * the fallbacks used when a search failed.
+     *
+     * @param game
+     *            The game as found in the topic
+     * @param twitchGame
+     *            The name of the game according to Twitch or null if Twitch doesn't know it
+     * @param hitboxGame
+     *            The category ID of the game according to Hitbox or the default ID if Hitbox doesn't know it
+     */
+    public synchronized void put(final String game, final String twitchGame, final String hitboxGame) {
+        final boolean found = (twitchGame != null && !Params.HITBOX_DEFAULT_GAME.equals(hitboxGame));
+        final long ttl = (found ? HIT_TTL : MISS_TTL);
+        mEntries.put(normalize(game), new Entry(twitchGame, hitboxGame, System.currentTimeMillis() + ttl));
+        save();
+    }
+
+    /**
+     * Loads the persisted entries from the cache file, skipping any that have expired.
+     */
+    private void load() {
+        if (!mFile.isFile()) {
+            return;
+        }
+
+        try {
+            final String content = new String(Files.readAllBytes(mFile.toPath()), StandardCharsets.UTF_8);
+            final JSONArray entries = new JSONArray(content);
+            final long now = System.currentTimeMillis();
+            for (int i = 0; i < entries.length(); ++i) {
+                final JSONObject entry = entries.getJSONObject(i);
+                final long expiresAt = entry.getLong("expires");
+                if (expiresAt > now) {
+                    mEntries.put(entry.getString("game"), new Entry(entry.optString("twitch", null),
+                            entry.getString("hitbox"), expiresAt));
+                }
+            }
+        } catch (final IOException | JSONException ex) {
+            Log.warn("cache", "Couldn't load game cache: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes all entries to the cache file. A temporary file is moved over the old one so that a crash while writing
+     * doesn't corrupt the cache.
+     */
+    private void save() {
+        final JSONArray entries = new JSONArray();
+        for (final Map.Entry<String, Entry> mapEntry : mEntries.entrySet()) {
+            final Entry entry = mapEntry.getValue();
+            final JSONObject json = new JSONObject();
+            json.put("game", mapEntry.getKey());
+            if (entry.mTwitchGame != null) {
+                json.put("twitch", entry.mTwitchGame);
+            }
+            json.put("hitbox", entry.mHitboxGame);
+            json.put("expires", entry.mExpiresAt);
+            entries.put(json);
+        }
+
+        try {
+            final File tempFile = new File(mFile.getPath() + ".tmp");
+            Files.write(tempFile.toPath(), entries.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            Log.warn("cache", "Couldn't save game cache: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * A cached resolution of a game.
+     */
+    public static class Entry {
+
+        /** The name of the game according to Twitch or null if it wasn't found */
+        private final String mTwitchGame;
+        /** The category ID of the game according to Hitbox */
+        private final String mHitboxGame;
+        /** The time in milliseconds since epoch at which this entry is no longer valid */
+        private final long mExpiresAt;
+
+        private Entry(final String twitchGame, final String hitboxGame, final long expiresAt) {
+            mTwitchGame = twitchGame;
+            mHitboxGame = hitboxGame;
+            mExpiresAt = expiresAt;
+        }
+
+        /**
+         * @return The name of the game according to Twitch or null if it wasn't found
+         */
+        public String getTwitchGame() {
+            return mTwitchGame;
+        }
+
+        /**
+         * @return The category ID of the game according to Hitbox
+         */
+        public String getHitboxGame() {
+            return mHitboxGame;
+        }
+
+    }
+
+}
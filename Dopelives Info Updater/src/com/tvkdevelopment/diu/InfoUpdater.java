@@ -1,60 +1,562 @@
 package com.tvkdevelopment.diu;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+import com.tvkdevelopment.diu.AliasTable.Alias;
+import com.tvkdevelopment.diu.StateStore.PlatformCheckpoint;
+import com.tvkdevelopment.diu.StateStore.StreamState;
 import com.tvkdevelopment.diu.StreamInfo.StreamInfoListener;
+import com.tvkdevelopment.diu.journal.Journal;
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.MetricsExporter;
 import com.tvkdevelopment.diu.services.Hitbox;
+import com.tvkdevelopment.diu.services.PlatformState;
+import com.tvkdevelopment.diu.services.Reconciler;
 import com.tvkdevelopment.diu.services.Twitch;
+import com.tvkdevelopment.diu.topic.TopicSource;
+import com.tvkdevelopment.diu.util.Bulkhead;
+import com.tvkdevelopment.diu.util.CoalescingExecutor;
+import com.tvkdevelopment.diu.util.EventDispatcher.OverflowPolicy;
+import com.tvkdevelopment.diu.util.HttpHelper;
 
 /**
- * The info updater that searches the game and updates Twitch and Hitbox when informed of topic info.
+ * The info updater of a single channel that searches the game and updates Twitch and Hitbox when informed of topic
+ * info. Updates are applied in the background so that topic changes keep being received, and only the latest stream
+ * info is applied. Any number of channels can run in one process, sharing the thread pools, connections and game cache.
  */
 public class InfoUpdater implements StreamInfoListener {
 
     /** The type that a stream must be for it to update Twitch and Hitbox */
     private static final String REQUIRED_TYPE = "game";
 
+    /** The file in which resolved games are persisted between runs, which can be overridden with diu.cache */
+    private static final String GAME_CACHE_FILE = System.getProperty("diu.cache", "game-cache.json");
+    /** The system property holding the file with the channels to run, running the channel from the Params if unset */
+    private static final String PROPERTY_CHANNELS = "diu.channels";
+    /** The system property holding the Twitch token for searches and the catalog, using the first channel's if unset */
+    private static final String PROPERTY_TWITCH_TOKEN = "diu.twitch.token";
+    /** The file in which the state of all channels is checkpointed, which can be overridden with diu.state */
+    private static final String STATE_FILE = System.getProperty("diu.state", "diu-state.json");
+    /** The file holding the game aliases, which can be overridden with diu.aliases */
+    private static final String ALIASES_FILE = System.getProperty("diu.aliases", "game-aliases.json");
+
+    /** The time in nanoseconds that the Hitbox search waits for the Twitch game before using the topic's game */
+    private static final long TWITCH_DEPENDENCY_DEADLINE = TimeUnit.SECONDS.toNanos(3);
+    /** The time in nanoseconds after which a Twitch search is given up, using the topic's game instead */
+    private static final long TWITCH_DEADLINE = TimeUnit.SECONDS.toNanos(30);
+    /** The time in nanoseconds after which a Hitbox search is given up, using the default game instead */
+    private static final long HITBOX_DEADLINE = TimeUnit.SECONDS.toNanos(10);
+    /** The maximum amount of searches per platform performed at the same time */
+    private static final int SEARCH_THREADS = Integer.getInteger("diu.search.threads", 4);
+    /** The maximum amount of searches per platform waiting to be performed */
+    private static final int SEARCH_QUEUE_CAPACITY = 64;
+
+    /** The cache of previously resolved games, shared by all channels */
+    private static final GameCache sGameCache = new GameCache(new File(GAME_CACHE_FILE));
+    /** The checkpoint of the state of all channels, used to pick up where the previous run left off */
+    private static final StateStore sStateStore = new StateStore(new File(STATE_FILE));
+    /** The game aliases overriding the searches, shared by all channels */
+    private static final GameAliases sAliases = new GameAliases(new File(ALIASES_FILE));
+
+    /** The threads reserved for Twitch searches */
+    private static final Bulkhead sTwitchBulkhead = new Bulkhead("Twitch", SEARCH_THREADS, SEARCH_QUEUE_CAPACITY);
+    /** The threads reserved for Hitbox searches */
+    private static final Bulkhead sHitboxBulkhead = new Bulkhead("Hitbox", SEARCH_THREADS, SEARCH_QUEUE_CAPACITY);
+
     public static void main(final String[] args) {
-        System.out.println("Start scanning for topic changes");
-        System.setProperty("http.keepAlive", "false");
-        StreamInfo.addListener(new InfoUpdater());
-        StreamInfo.startRequestInterval();
+        final List<Channel> channels;
+        try {
+            channels = loadChannels();
+        } catch (final IOException | IllegalArgumentException ex) {
+            Log.warn("update", "Couldn't load channels: " + ex.getMessage());
+            return;
+        }
+        if (channels.isEmpty()) {
+            Log.warn("update", "No channels configured");
+            return;
+        }
+        Twitch.setApiToken(System.getProperty(PROPERTY_TWITCH_TOKEN, channels.get(0).getTwitchToken()));
+
+        Log.info("update", "Start scanning for topic changes of " + channels.size() + " channel(s)");
+        HttpHelper.configureConnectionPool();
+        MetricsExporter.start();
+        sAliases.startWatching();
+        Twitch.startCatalogRefresh();
+        Hitbox.startCatalogRefresh();
+        for (final Channel channel : channels) {
+            new InfoUpdater(channel).start();
+        }
+    }
+
+    /**
+     * Loads the channels to run from the file set with diu.channels, or the channel from the Params if it isn't set.
+     *
+     * @return The channels
+     *
+     * @throws IOException
+     *             When the channels file couldn't be read
+     * @throws IllegalArgumentException
+     *             When the channels aren't configured correctly
+     */
+    static List<Channel> loadChannels() throws IOException {
+        final String channelsFile = System.getProperty(PROPERTY_CHANNELS);
+        if (channelsFile != null) {
+            return Channel.load(new File(channelsFile));
+        }
+        return Collections.singletonList(Channel.fromParams());
+    }
+
+    /** The channel to update */
+    private final Channel mChannel;
+    /** The prefix of each line of output, naming the channel */
+    private final String mLogPrefix;
+    /** The stream info of the channel */
+    private final StreamInfo mStreamInfo;
+    /** The Hitbox channel to update */
+    private final Hitbox mHitbox;
+    /** The executor applying the stream info, which skips outdated stream info when newer info arrives */
+    private final CoalescingExecutor mUpdateExecutor;
+    /** The reconciler keeping Twitch up to date */
+    private final Reconciler mTwitchReconciler;
+    /** The reconciler keeping Hitbox up to date */
+    private final Reconciler mHitboxReconciler;
+
+    /** The normalised game that the resolved games belong to or null if none are known, only used by updates */
+    private String mResolvedGame;
+    /** The name of the resolved game on Twitch, only used by updates */
+    private String mResolvedTwitchGame;
+    /** The category ID of the resolved game on Hitbox, only used by updates */
+    private String mResolvedHitboxGame;
+
+    /**
+     * Creates a new info updater for a channel. Call {@link #start()} to start receiving topic changes.
+     *
+     * @param channel
+     *            The channel to update
+     */
+    public InfoUpdater(final Channel channel) {
+        this(channel, false);
+    }
+
+    /**
+     * Creates a new info updater for a channel, either for updating it or for replaying a journal. When replaying, the
+     * stream info is applied on the thread that receives the topic, and the platforms are neither read nor written so
+     * the states that they should show are only reported.
+     *
+     * @param channel
+     *            The channel to update or replay
+     * @param replay
+     *            True to replay a journal, false to update the channel
+     */
+    private InfoUpdater(final Channel channel, final boolean replay) {
+        mChannel = channel;
+        mLogPrefix = "[" + channel.getName() + "] ";
+        mStreamInfo = new StreamInfo(channel.getName());
+        mHitbox = new Hitbox(channel.getHitboxChannel(), channel.getHitboxToken());
+
+        if (replay) {
+            mUpdateExecutor = new CoalescingExecutor(mLogPrefix + "Info updater", Runnable::run);
+            mTwitchReconciler = new Reconciler("Twitch", channel.getName(), () -> null, state -> state);
+            mHitboxReconciler = new Reconciler("Hitbox", channel.getName(), () -> null, state -> state);
+        } else {
+            mUpdateExecutor = new CoalescingExecutor(mLogPrefix + "Info updater");
+            final Twitch twitch = new Twitch(channel.getTwitchChannel(), channel.getTwitchToken());
+            mTwitchReconciler = new Reconciler("Twitch", channel.getName(), twitch::readState, twitch::writeState);
+            mHitboxReconciler = new Reconciler("Hitbox", channel.getName(), mHitbox::readState, mHitbox::writeState);
+        }
+    }
+
+    /**
+     * Creates a new info updater for replaying a journal. Call {@link #startReplay(TopicSource, BiConsumer)} to start
+     * receiving topics.
+     *
+     * @param channel
+     *            The channel to replay
+     *
+     * @return The info updater
+     */
+    static InfoUpdater createReplay(final Channel channel) {
+        return new InfoUpdater(channel, true);
+    }
+
+    /**
+     * Starts receiving topic changes of the channel and updating Twitch and Hitbox accordingly.
+     */
+    public void start() {
+        final boolean restored = restoreState();
+        mHitbox.startMediaRefresh(!restored);
+        // Only the latest stream info is applied, so older info that is still waiting can be dropped
+        mStreamInfo.addListener(this, 1, OverflowPolicy.COALESCE);
+        mStreamInfo.start(mChannel.createTopicSource());
+    }
+
+    /**
+     * Starts receiving topics for a replay, which are applied before the topic source's listener returns.
+     *
+     * @param topicSource
+     *            The source providing the recorded topics
+     * @param desiredListener
+     *            The listener to inform of the states that the platforms should show, along with the name of the
+     *            platform
+     */
+    void startReplay(final TopicSource topicSource, final BiConsumer<String, PlatformState> desiredListener) {
+        mTwitchReconciler.setListener((desired, applied) -> {
+            if (!applied) {
+                desiredListener.accept("Twitch", desired);
+            }
+        });
+        mHitboxReconciler.setListener((desired, applied) -> {
+            if (!applied) {
+                desiredListener.accept("Hitbox", desired);
+            }
+        });
+        mStreamInfo.addListener(this, Runnable::run, 1, OverflowPolicy.COALESCE);
+        mStreamInfo.start(topicSource);
+    }
+
+    /**
+     * Restores the state checkpointed by a previous run and starts checkpointing the state of this run. The stream
+     * info is only restored if both platforms have a state to go with it, so that the platforms never miss a change.
+     *
+     * @return True if both platforms were restored to a state that they confirmed, false otherwise
+     */
+    private boolean restoreState() {
+        final String name = mChannel.getName();
+        final PlatformCheckpoint twitch = restorePlatform(mTwitchReconciler, "Twitch");
+        final PlatformCheckpoint hitbox = restorePlatform(mHitboxReconciler, "Hitbox");
+
+        final StreamState stream = sStateStore.getStream(name);
+        if (stream != null && twitch != null && hitbox != null) {
+            restoreStream(stream.getStreamer(), stream.getType(), stream.getGame(), twitch.getState().getGame(),
+                    hitbox.getState().getGame());
+            Log.info("update", mLogPrefix + "Restored stream info: [" + stream.getStreamer() + "] " + stream
+                    .getGame());
+        } else {
+            Journal.restore(name, null, null, null, null, null);
+        }
+        return (twitch != null && twitch.isApplied() && hitbox != null && hitbox.isApplied());
+    }
+
+    /**
+     * Restores the stream info and the games resolved for it before starting.
+     *
+     * @param streamer
+     *            The last detected streamer
+     * @param type
+     *            The last detected stream type
+     * @param game
+     *            The last detected game
+     * @param gameTwitch
+     *            The name of the game shown on Twitch
+     * @param gameHitbox
+     *            The category ID of the game shown on Hitbox
+     */
+    void restoreStream(final String streamer, final String type, final String game, final String gameTwitch,
+            final String gameHitbox) {
+        Journal.restore(mChannel.getName(), streamer, type, game, gameTwitch, gameHitbox);
+        mStreamInfo.restore(streamer, type, game);
+        if (REQUIRED_TYPE.equalsIgnoreCase(type)) {
+            setResolved(GameCache.normalize(game), gameTwitch, gameHitbox);
+        }
+    }
+
+    /**
+     * Restores the state of a platform and starts checkpointing it.
+     *
+     * @param reconciler
+     *            The reconciler keeping the platform up to date
+     * @param platform
+     *            The name of the platform
+     *
+     * @return The restored state or null if there was none
+     */
+    private PlatformCheckpoint restorePlatform(final Reconciler reconciler, final String platform) {
+        final String name = mChannel.getName();
+        final PlatformCheckpoint checkpoint = sStateStore.getPlatform(name, platform);
+        if (checkpoint != null) {
+            reconciler.restore(checkpoint.getState(), checkpoint.isApplied());
+        }
+        reconciler.setListener((desired, applied) -> sStateStore.putPlatform(name, platform, desired, applied));
+        return checkpoint;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void onStreamInfoUpdated(final StreamInfoChange change) {
+        final long startTime = System.nanoTime();
+        mUpdateExecutor.submit(superseded -> {
+            applyStreamInfo(change, startTime, superseded);
+
+            // Only checkpoint stream info once the platforms have been given the states that go with it
+            if (!superseded.getAsBoolean()) {
+                sStateStore.putStream(mChannel.getName(), new StreamState(change.getStreamer(), change.getType(),
+                        change.getGame()));
+            }
+        });
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
-    public void onStreamInfoUpdated(final String streamer, final String type, final String game) {
+    public void onStreamInfoRemoved() {
+        final long startTime = System.nanoTime();
+        mUpdateExecutor.submit(superseded -> {
+            applyNoStream(startTime);
+            sStateStore.putStream(mChannel.getName(), null);
+        });
+    }
+
+    /**
+     * Searches the game and sets the state that Twitch and Hitbox should show, stopping between searches once newer
+     * stream info has arrived. Only the Hitbox search depends on the Twitch search, and each platform is updated as
+     * soon as its game is known. Every search has a deadline after which a fallback game is used, so a platform that
+     * hangs can't hold up the other. When the game didn't change, the games resolved before are reused and only the
+     * status changes.
+     *
+     * @param change
+     *            The new stream info along with what changed
+     * @param startTime
+     *            The time at which the stream info changed as returned by {@link System#nanoTime()}
+     * @param superseded
+     *            Tells whether newer stream info has arrived
+     */
+    private void applyStreamInfo(final StreamInfoChange change, final long startTime,
+            final BooleanSupplier superseded) {
+        final String streamer = change.getStreamer();
+        final String type = change.getType();
+        final String game = change.getGame();
+
         // Only update for games
-        if (!REQUIRED_TYPE.equals(type.toLowerCase())) {
-            System.out.println("\nStream is a " + type.toLowerCase());
-            onStreamInfoRemoved();
+        if (!REQUIRED_TYPE.equalsIgnoreCase(type)) {
+            Log.info("update", mLogPrefix + "Stream is a " + type.toLowerCase());
+            applyNoStream(startTime);
             return;
         }
 
         final String statusInfo = "[" + streamer + "] " + game.trim();
-        System.out.println("\nNew game: " + statusInfo);
-        final String status = statusInfo + " | " + Params.STATUS_POSTFIX;
+        Log.info("update", mLogPrefix + "New game: " + statusInfo);
+        final String status = statusInfo + " | " + mChannel.getStatusPostfix();
+
+        // Use the games from the alias where set, which take precedence over anything found earlier
+        final Alias alias = sAliases.get(game);
+        if (alias != null) {
+            Log.info("update", mLogPrefix + "Using alias");
+        }
+        final String aliasTwitch = (alias != null ? alias.getTwitchGame() : null);
+        final String aliasHitbox = (alias != null ? alias.getHitboxGame() : null);
+
+        // Reuse the games resolved for the previous stream info if it was about the same game, applying an alias that
+        // was added or changed since
+        final String normalizedGame = GameCache.normalize(game);
+        if (!change.isGameChanged() && normalizedGame.equals(mResolvedGame)) {
+            Log.info("update", mLogPrefix + "Same game, only updating the status");
+            final String gameTwitch = (aliasTwitch != null ? aliasTwitch : mResolvedTwitchGame);
+            final String gameHitbox = (aliasHitbox != null ? aliasHitbox : mResolvedHitboxGame);
+            mTwitchReconciler.setDesired(createTwitchState(status, game, gameTwitch), startTime);
+            mHitboxReconciler.setDesired(new PlatformState(status, gameHitbox), startTime);
+            setResolved(normalizedGame, gameTwitch, gameHitbox);
+            return;
+        }
+        mResolvedGame = null;
 
-        // Search game on Twitch and update it
-        final String gameTwitch = Twitch.searchGame(game);
-        System.out.println("Twitch game: " + gameTwitch);
-        Twitch.updateInfo(status, gameTwitch);
+        // Reuse the games found earlier if possible
+        final GameCache.Entry cached = (alias == null ? sGameCache.get(game) : null);
+        if (cached != null) {
+            final String gameTwitch = (cached.getTwitchGame() != null ? cached.getTwitchGame() : game);
+            Log.info("update", mLogPrefix + "Twitch game: " + gameTwitch + " (cached)");
+            mTwitchReconciler.setDesired(createTwitchState(status, game, gameTwitch), startTime);
 
-        // Search game on Hitbox and update it
-        final String gameHitbox = Hitbox.searchGame(gameTwitch);
-        System.out.println("Hitbox game: " + (Params.HITBOX_DEFAULT_GAME.equals(gameHitbox) ? "DEFAULT" : gameHitbox));
-        Hitbox.updateInfo(status, gameHitbox);
+            final String gameHitbox = cached.getHitboxGame();
+            Log.info("update", mLogPrefix + "Hitbox game: " + (Params.HITBOX_DEFAULT_GAME.equals(gameHitbox) ? "DEFAULT"
+                    : gameHitbox) + " (cached)");
+            mHitboxReconciler.setDesired(new PlatformState(status, gameHitbox), startTime);
+            setResolved(normalizedGame, gameTwitch, gameHitbox);
+            return;
+        }
+
+        // Search game on Twitch, which Hitbox will only wait for until its own deadline, and treat a failed search like
+        // one that found nothing rather than letting it fall back to a worse search option
+        final long searchStart = System.nanoTime();
+        final AtomicBoolean twitchFailed = new AtomicBoolean();
+        final Future<String> twitchSearch = (aliasTwitch != null ? CompletableFuture.completedFuture(aliasTwitch)
+                : sTwitchBulkhead.submit(() -> {
+                    try {
+                        return Twitch.searchGame(game, superseded);
+                    } catch (final IOException ex) {
+                        Log.warn("update", mLogPrefix + "Twitch search failed, using the topic's game");
+                        twitchFailed.set(true);
+                        return null;
+                    }
+                }));
+        String foundTwitch = null;
+        boolean twitchDone;
+        boolean twitchLate = false;
+        try {
+            foundTwitch = sTwitchBulkhead.await(twitchSearch, searchStart + TWITCH_DEPENDENCY_DEADLINE, superseded);
+            twitchDone = true;
+        } catch (final TimeoutException ex) {
+            Log.info("update", mLogPrefix + "Twitch search is slow, not waiting for it for Hitbox");
+            twitchDone = false;
+        } catch (final RuntimeException ex) {
+            // Rejected by a full bulkhead or failed unexpectedly, which mustn't keep Hitbox from being updated
+            Log.warn("update", mLogPrefix + "Twitch search failed, using the topic's game: " + ex);
+            twitchFailed.set(true);
+            twitchDone = true;
+        }
+        if (superseded.getAsBoolean()) {
+            Log.info("update", mLogPrefix + "Twitch search superseded");
+            return;
+        }
+
+        // Update Twitch with the game, falling back to the topic's game if it can't be found
+        if (twitchDone) {
+            applyTwitchGame(status, game, foundTwitch, startTime);
+        }
+
+        // Search game on Hitbox and update it, falling back to the default game if the search fails or is too slow
+        final String hitboxQuery = (foundTwitch != null ? foundTwitch : game);
+        final AtomicBoolean hitboxFailed = new AtomicBoolean();
+        final Future<String> hitboxSearch = (aliasHitbox != null ? CompletableFuture.completedFuture(aliasHitbox)
+                : sHitboxBulkhead.submit(() -> {
+                    try {
+                        return Hitbox.searchGame(hitboxQuery);
+                    } catch (final IOException ex) {
+                        Log.warn("update", mLogPrefix + "Hitbox search failed, using the default game");
+                        hitboxFailed.set(true);
+                        return Params.HITBOX_DEFAULT_GAME;
+                    }
+                }));
+        String gameHitbox;
+        boolean hitboxDone;
+        try {
+            gameHitbox = sHitboxBulkhead.await(hitboxSearch, System.nanoTime() + HITBOX_DEADLINE, superseded);
+            hitboxDone = true;
+        } catch (final TimeoutException ex) {
+            Log.warn("update", mLogPrefix + "Hitbox search took too long");
+            gameHitbox = Params.HITBOX_DEFAULT_GAME;
+            hitboxDone = false;
+        } catch (final RuntimeException ex) {
+            Log.warn("update", mLogPrefix + "Hitbox search failed, using the default game: " + ex);
+            hitboxFailed.set(true);
+            gameHitbox = Params.HITBOX_DEFAULT_GAME;
+            hitboxDone = true;
+        }
+        if (superseded.getAsBoolean()) {
+            return;
+        }
+        Log.info("update", mLogPrefix + "Hitbox game: " + (Params.HITBOX_DEFAULT_GAME.equals(gameHitbox) ? "DEFAULT"
+                : gameHitbox));
+        mHitboxReconciler.setDesired(new PlatformState(status, gameHitbox), startTime);
+
+        // Keep waiting for a slow Twitch search until its own deadline
+        if (!twitchDone) {
+            try {
+                foundTwitch = sTwitchBulkhead.await(twitchSearch, searchStart + TWITCH_DEADLINE, superseded);
+                twitchDone = true;
+                twitchLate = true;
+            } catch (final TimeoutException ex) {
+                Log.warn("update", mLogPrefix + "Twitch search took too long");
+                twitchSearch.cancel(true);
+            } catch (final RuntimeException ex) {
+                Log.warn("update", mLogPrefix + "Twitch search failed, using the topic's game: " + ex);
+                twitchFailed.set(true);
+            }
+            if (superseded.getAsBoolean()) {
+                return;
+            }
+            applyTwitchGame(status, game, foundTwitch, startTime);
+        }
+
+        // Only remember games that both platforms actually answered for, never the fallbacks of failed searches
+        if (twitchDone && hitboxDone && !twitchFailed.get() && !hitboxFailed.get()) {
+            setResolved(normalizedGame, (foundTwitch != null ? foundTwitch : game), gameHitbox);
+
+            // Hitbox didn't wait for a late Twitch search and was searched with the topic's game instead of Twitch's
+            // name for it, so its category is only reused for this stream rather than cached for days
+            if (alias == null && !twitchLate) {
+                sGameCache.put(game, foundTwitch, gameHitbox);
+            }
+        }
     }
 
     /**
-     * {@inheritDoc}
+     * Remembers the games resolved for the current stream info, to reuse them if only the streamer or the way the
+     * game is written changes.
+     *
+     * @param game
+     *            The normalised game from the topic
+     * @param gameTwitch
+     *            The name of the game shown on Twitch
+     * @param gameHitbox
+     *            The category ID of the game shown on Hitbox
      */
-    @Override
-    public void onStreamInfoRemoved() {
-        System.out.println("\nNo (game) stream");
+    private void setResolved(final String game, final String gameTwitch, final String gameHitbox) {
+        mResolvedGame = game;
+        mResolvedTwitchGame = gameTwitch;
+        mResolvedHitboxGame = gameHitbox;
+    }
+
+    /**
+     * Sets the state that Twitch should show for a game.
+     *
+     * @param status
+     *            The status to show
+     * @param game
+     *            The game being streamed according to the topic
+     * @param foundTwitch
+     *            The name of the game according to Twitch or null if it wasn't found
+     * @param startTime
+     *            The time at which the stream info changed as returned by {@link System#nanoTime()}
+     */
+    private void applyTwitchGame(final String status, final String game, final String foundTwitch,
+            final long startTime) {
+        final String gameTwitch = (foundTwitch != null ? foundTwitch : game);
+        Log.info("update", mLogPrefix + "Twitch game: " + gameTwitch);
+        mTwitchReconciler.setDesired(createTwitchState(status, game, gameTwitch), startTime);
+    }
+
+    /**
+     * Creates the state to show on Twitch, also replacing games that are blacklisted by the aliases under either name.
+     *
+     * @param status
+     *            The status to show
+     * @param game
+     *            The game being streamed according to the topic
+     * @param gameTwitch
+     *            The name of the game on Twitch
+     *
+     * @return The state to show on Twitch
+     */
+    private static PlatformState createTwitchState(final String status, final String game, final String gameTwitch) {
+        final boolean blacklisted = (sAliases.isBlacklisted(game) || sAliases.isBlacklisted(gameTwitch));
+        return Twitch.createState(status, (blacklisted ? Params.TWITCH_BLACKLIST_REPLACEMENT : gameTwitch));
+    }
+
+    /**
+     * Sets Twitch and Hitbox to show that no game is being streamed.
+     *
+     * @param startTime
+     *            The time at which the stream info changed as returned by {@link System#nanoTime()}
+     */
+    private void applyNoStream(final long startTime) {
+        Log.info("update", mLogPrefix + "No (game) stream");
 
-        Twitch.updateInfo(Params.STATUS_POSTFIX, "");
-        Hitbox.updateInfo(Params.STATUS_POSTFIX, Params.HITBOX_DEFAULT_GAME);
+        mTwitchReconciler.setDesired(Twitch.createState(mChannel.getStatusPostfix(), ""), startTime);
+        mHitboxReconciler.setDesired(new PlatformState(mChannel.getStatusPostfix(), Params.HITBOX_DEFAULT_GAME),
+                startTime);
     }
 
 }
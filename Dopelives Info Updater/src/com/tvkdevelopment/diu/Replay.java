@@ -0,0 +1,296 @@
+package com.tvkdevelopment.diu;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import com.tvkdevelopment.diu.journal.JournalReader;
+import com.tvkdevelopment.diu.journal.JournalRecord;
+import com.tvkdevelopment.diu.journal.RecordType;
+import com.tvkdevelopment.diu.journal.RecordedResponses;
+import com.tvkdevelopment.diu.services.PlatformState;
+import com.tvkdevelopment.diu.services.Twitch;
+import com.tvkdevelopment.diu.topic.TopicSource;
+
+/**
+ * Replays a journal written by the info updater as fast as possible, answering all lookups and searches with the
+ * recorded responses, and checks whether the states that the platforms should show are identical to the recorded ones.
+ * The channels are loaded the same way as by the info updater, as their status postfixes are part of the states. Run
+ * with the journal directory and optionally a file to write the replayed states to, which makes it easy to compare
+ * the replays of two versions. Exits with status 1 if the states differ from the recorded ones.
+ */
+public class Replay {
+
+    /** The recorded records in the order in which they were written */
+    private final List<JournalRecord> mRecords;
+    /** The recorded responses to answer the lookups and searches with */
+    private final RecordedResponses mResponses;
+    /** The channels to replay by name */
+    private final Map<String, Channel> mChannels = new HashMap<>();
+
+    /** The sources feeding the topics to the info updaters by channel name */
+    private final Map<String, RecordedTopicSource> mSources = new HashMap<>();
+    /** The recorded states by channel and platform, without repeats */
+    private final Map<String, List<PlatformState>> mRecordedStates = new TreeMap<>();
+    /** The replayed states by channel and platform, without repeats */
+    private final Map<String, List<PlatformState>> mReplayedStates = new TreeMap<>();
+    /** The replayed states in the order in which they were set, one per line */
+    private final List<String> mReplayedLines = new ArrayList<>();
+
+    public static void main(final String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: Replay <journal directory> [output file]");
+            System.exit(2);
+        }
+
+        // Keep the replay away from the journal and the files of a live updater, and from the terminal
+        final File directory = Files.createTempDirectory("diu-replay").toFile();
+        directory.deleteOnExit();
+        System.clearProperty("diu.journal");
+        System.setProperty("diu.state", createTempFile(directory, "diu-state.json"));
+        System.setProperty("diu.cache", createTempFile(directory, "game-cache.json"));
+        if (System.getProperty("diu.log.level") == null) {
+            System.setProperty("diu.log.level", "WARN");
+        }
+        if (System.getProperty("diu.log.status") == null) {
+            System.setProperty("diu.log.status", "false");
+        }
+
+        final List<JournalRecord> records = new ArrayList<>();
+        new JournalReader(new File(args[0])).read(records::add);
+        final Replay replay = new Replay(records, InfoUpdater.loadChannels());
+        final boolean identical = replay.run();
+        if (args.length > 1) {
+            Files.write(new File(args[1]).toPath(), replay.mReplayedLines, StandardCharsets.UTF_8);
+        }
+        System.exit(identical ? 0 : 1);
+    }
+
+    /**
+     * Picks a temporary file that is deleted when the replay ends if it gets created.
+     *
+     * @param directory
+     *            The temporary directory
+     * @param name
+     *            The name of the file
+     *
+     * @return The path of the file
+     */
+    private static String createTempFile(final File directory, final String name) {
+        final File file = new File(directory, name);
+        file.deleteOnExit();
+        return file.getPath();
+    }
+
+    /**
+     * Creates a new replay.
+     *
+     * @param records
+     *            The records of the journal in the order in which they were written
+     * @param channels
+     *            The channels to replay
+     */
+    private Replay(final List<JournalRecord> records, final List<Channel> channels) {
+        mRecords = records;
+        mResponses = new RecordedResponses(records);
+        for (final Channel channel : channels) {
+            mChannels.put(channel.getName(), channel);
+        }
+    }
+
+    /**
+     * Replays all topics and reports the throughput and whether the states are identical to the recorded ones.
+     *
+     * @return True if the states are identical, false otherwise
+     */
+    private boolean run() {
+        // The end of each topic's window is the next topic of the same channel
+        final long[] windowEnds = new long[mRecords.size()];
+        final Map<String, Long> nextTopicTimes = new HashMap<>();
+        for (int i = mRecords.size() - 1; i >= 0; --i) {
+            final JournalRecord record = mRecords.get(i);
+            if (record.getType() == RecordType.TOPIC) {
+                windowEnds[i] = nextTopicTimes.getOrDefault(record.getField(0), Long.MAX_VALUE);
+                nextTopicTimes.put(record.getField(0), record.getTime());
+            }
+        }
+
+        // Searching one option at a time only asks for the responses that decide the game
+        Twitch.setParallelSearch(false);
+        RecordedResponses.setActive(mResponses);
+
+        int topics = 0;
+        int skipped = 0;
+        final long startTime = System.nanoTime();
+        for (int i = 0; i < mRecords.size(); ++i) {
+            final JournalRecord record = mRecords.get(i);
+            final String channel = record.getField(0);
+            switch (record.getType()) {
+                case RESTORE:
+                    if (mChannels.containsKey(channel)) {
+                        startChannel(record);
+                    }
+                    break;
+
+                case TOPIC:
+                    if (!mChannels.containsKey(channel)) {
+                        ++skipped;
+                        break;
+                    }
+                    if (!mSources.containsKey(channel)) {
+                        startChannel(record);
+                    }
+                    mResponses.setWindow(record.getTime(), windowEnds[i]);
+                    mSources.get(channel).play(record.getField(1));
+                    ++topics;
+                    break;
+
+                case DESIRED:
+                    addState(mRecordedStates, channel, record.getField(1), new PlatformState(record.getField(2),
+                            record.getField(3)));
+                    break;
+
+                default:
+                    break;
+            }
+        }
+        final long duration = System.nanoTime() - startTime;
+        RecordedResponses.setActive(null);
+
+        final long topicsPerSecond = (duration > 0 ? topics * TimeUnit.SECONDS.toNanos(1) / duration : 0);
+        System.out.println("Replayed " + topics + " topics from " + mRecords.size() + " records in "
+                + TimeUnit.NANOSECONDS.toMillis(duration) + " ms (" + topicsPerSecond + " topics/s)");
+        if (skipped > 0) {
+            System.out.println("Skipped " + skipped + " topics of unknown channels");
+        }
+        for (final RecordType type : new RecordType[] { RecordType.TWITCH_SEARCH, RecordType.HITBOX_SEARCH }) {
+            if (mResponses.getMissing(type) > 0) {
+                System.out.println("Missing " + type + " responses: " + mResponses.getMissing(type));
+            }
+        }
+        return compareStates();
+    }
+
+    /**
+     * Starts a new run of a channel, replacing the info updater of the previous run if there was one.
+     *
+     * @param record
+     *            The record that starts the run, which restores the stream info if it's a restore record with a
+     *            streamer
+     */
+    private void startChannel(final JournalRecord record) {
+        final String channel = record.getField(0);
+        final RecordedTopicSource previous = mSources.get(channel);
+        if (previous != null) {
+            previous.stop();
+        }
+
+        final InfoUpdater updater = InfoUpdater.createReplay(mChannels.get(channel));
+        if (record.getType() == RecordType.RESTORE && record.getField(1) != null) {
+            updater.restoreStream(record.getField(1), record.getField(2), record.getField(3), record.getField(4),
+                    record.getField(5));
+        }
+        final RecordedTopicSource source = new RecordedTopicSource();
+        updater.startReplay(source, (platform, state) -> {
+            addState(mReplayedStates, channel, platform, state);
+            mReplayedLines.add(channel + "\t" + platform + "\t" + state.getStatus() + "\t" + state.getGame());
+        });
+        mSources.put(channel, source);
+    }
+
+    /**
+     * Adds a state to the states of a channel and platform, unless it's the same as the previous one.
+     *
+     * @param states
+     *            The states by channel and platform
+     * @param channel
+     *            The name of the channel
+     * @param platform
+     *            The name of the platform
+     * @param state
+     *            The state
+     */
+    private static void addState(final Map<String, List<PlatformState>> states, final String channel,
+            final String platform, final PlatformState state) {
+        final List<PlatformState> list = states.computeIfAbsent("[" + channel + "] " + platform,
+                key -> new ArrayList<>());
+        if (list.isEmpty() || !list.get(list.size() - 1).equals(state)) {
+            list.add(state);
+        }
+    }
+
+    /**
+     * Compares the replayed states to the recorded ones, reporting the first difference per channel and platform.
+     *
+     * @return True if the states are identical, false otherwise
+     */
+    private boolean compareStates() {
+        boolean identical = true;
+        final TreeSet<String> keys = new TreeSet<>(mRecordedStates.keySet());
+        keys.addAll(mReplayedStates.keySet());
+        for (final String key : keys) {
+            final List<PlatformState> recorded = mRecordedStates.getOrDefault(key, new ArrayList<>());
+            final List<PlatformState> replayed = mReplayedStates.getOrDefault(key, new ArrayList<>());
+            for (int i = 0; i < Math.max(recorded.size(), replayed.size()); ++i) {
+                final PlatformState expected = (i < recorded.size() ? recorded.get(i) : null);
+                final PlatformState actual = (i < replayed.size() ? replayed.get(i) : null);
+                if (expected == null || !expected.equals(actual)) {
+                    System.out.println(key + " differs at state " + (i + 1) + ": recorded " + expected
+                            + ", replayed " + actual);
+                    identical = false;
+                    break;
+                }
+            }
+        }
+
+        System.out.println(identical ? "States identical" : "States differ");
+        return identical;
+    }
+
+    /**
+     * A topic source that passes on the recorded topics as they are played.
+     */
+    private static class RecordedTopicSource implements TopicSource {
+
+        /** The listener to receive the topic or null if the source isn't started */
+        private Listener mListener;
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void start(final Listener listener) {
+            mListener = listener;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void stop() {
+            mListener = null;
+        }
+
+        /**
+         * Passes on a recorded topic.
+         *
+         * @param topic
+         *            The topic in the format served by the topic host
+         */
+        private void play(final String topic) {
+            if (mListener != null) {
+                mListener.onTopic(topic);
+            }
+        }
+
+    }
+
+}
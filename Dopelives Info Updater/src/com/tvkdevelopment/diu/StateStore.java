@@ -0,0 +1,309 @@
+package com.tvkdevelopment.diu;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.services.PlatformState;
+
+/**
+ * A checkpoint of the stream info and platform states of all channels, so that a restart picks up where the previous
+ * run left off instead of treating the first topic as a change. The file holds an object per channel such as
+ *
+ * <pre>
+ * { "dopelives": { "stream": { "streamer": "...", "type": "game", "game": "..." },
+ *                  "Twitch": { "status": "...", "game": "...", "applied": true }, "Hitbox": { ... } } }
+ * </pre>
+ *
+ * Changes are written shortly after they're made, batching changes made close together, and always on shutdown. The
+ * file is replaced atomically, so a crash while writing leaves the previous checkpoint.
+ */
+public class StateStore {
+
+    /** The time in milliseconds to wait after a change before writing, so that related changes are written at once */
+    private static final long SAVE_DELAY = 1000;
+
+    /** The name of the stream info of a channel in the file */
+    private static final String KEY_STREAM = "stream";
+
+    /** The scheduler writing the file */
+    private final ScheduledExecutorService mScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "State store");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The file that the state is checkpointed to */
+    private final File mFile;
+
+    /** The state of all channels by name */
+    private JSONObject mState = new JSONObject();
+    /** Whether or not a write has been scheduled */
+    private boolean mSaveScheduled = false;
+
+    /**
+     * Creates a new state store, loads the state previously checkpointed to the file and makes sure that the latest
+     * state is written on shutdown.
+     *
+     * @param file
+     *            The file to checkpoint the state to
+     */
+    public StateStore(final File file) {
+        mFile = file;
+        load();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::save, "State store shutdown"));
+    }
+
+    /**
+     * Retrieves the stream info that was last applied to a channel.
+     *
+     * @param channel
+     *            The name of the channel
+     *
+     * @return The stream info or null if no stream was active or the channel has no checkpoint
+     */
+    public synchronized StreamState getStream(final String channel) {
+        final JSONObject channelState = mState.optJSONObject(channel);
+        final JSONObject stream = (channelState != null ? channelState.optJSONObject(KEY_STREAM) : null);
+        if (stream == null) {
+            return null;
+        }
+
+        try {
+            return new StreamState(stream.getString("streamer"), stream.getString("type"), stream.getString("game"));
+        } catch (final JSONException ex) {
+            Log.warn("state", "Couldn't restore stream info of " + channel + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records the stream info that was applied to a channel.
+     *
+     * @param channel
+     *            The name of the channel
+     * @param stream
+     *            The stream info or null if no stream is active
+     */
+    public synchronized void putStream(final String channel, final StreamState stream) {
+        final JSONObject channelState = getOrAddChannel(channel);
+        if (stream != null) {
+            channelState.put(KEY_STREAM, new JSONObject().put("streamer", stream.mStreamer).put("type", stream.mType)
+                    .put("game", stream.mGame));
+        } else {
+            channelState.remove(KEY_STREAM);
+        }
+        scheduleSave();
+    }
+
+    /**
+     * Retrieves the state that a platform should show for a channel.
+     *
+     * @param channel
+     *            The name of the channel
+     * @param platform
+     *            The name of the platform
+     *
+     * @return The state or null if the channel has no checkpoint for the platform
+     */
+    public synchronized PlatformCheckpoint getPlatform(final String channel, final String platform) {
+        final JSONObject channelState = mState.optJSONObject(channel);
+        final JSONObject state = (channelState != null ? channelState.optJSONObject(platform) : null);
+        if (state == null) {
+            return null;
+        }
+
+        try {
+            return new PlatformCheckpoint(new PlatformState(state.getString("status"), state.getString("game")),
+                    state.getBoolean("applied"));
+        } catch (final JSONException ex) {
+            Log.warn("state", "Couldn't restore " + platform + " state of " + channel + ": " + ex.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Records the state that a platform should show for a channel.
+     *
+     * @param channel
+     *            The name of the channel
+     * @param platform
+     *            The name of the platform
+     * @param state
+     *            The state that the platform should show
+     * @param applied
+     *            Whether or not the platform confirmed that it shows the state
+     */
+    public synchronized void putPlatform(final String channel, final String platform, final PlatformState state,
+            final boolean applied) {
+        getOrAddChannel(channel).put(platform, new JSONObject().put("status", state.getStatus()).put("game", state
+                .getGame()).put("applied", applied));
+        scheduleSave();
+    }
+
+    /**
+     * Gets the state of a channel, adding it if it doesn't exist yet.
+     *
+     * @param channel
+     *            The name of the channel
+     *
+     * @return The state of the channel
+     */
+    private JSONObject getOrAddChannel(final String channel) {
+        JSONObject channelState = mState.optJSONObject(channel);
+        if (channelState == null) {
+            channelState = new JSONObject();
+            mState.put(channel, channelState);
+        }
+        return channelState;
+    }
+
+    /**
+     * Schedules a write if none is scheduled yet.
+     */
+    private void scheduleSave() {
+        if (!mSaveScheduled) {
+            mSaveScheduled = true;
+            mScheduler.schedule(this::save, SAVE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Loads the state from the checkpoint file if there is one.
+     */
+    private void load() {
+        if (!mFile.isFile()) {
+            return;
+        }
+
+        try {
+            final String content = new String(Files.readAllBytes(mFile.toPath()), StandardCharsets.UTF_8);
+            mState = new JSONObject(content);
+            Log.info("state", "Restored state of " + mState.length() + " channel(s)");
+        } catch (final IOException | JSONException ex) {
+            Log.warn("state", "Couldn't load state: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes the state to the checkpoint file. A temporary file is moved over the old one so that a crash while writing
+     * doesn't corrupt the checkpoint.
+     */
+    private void save() {
+        // Only one write at a time, as the shutdown hook may write while the scheduler does
+        synchronized (mFile) {
+            final String content;
+            synchronized (this) {
+                mSaveScheduled = false;
+                content = mState.toString();
+            }
+
+            try {
+                final Path tempFile = new File(mFile.getPath() + ".tmp").toPath();
+                Files.write(tempFile, content.getBytes(StandardCharsets.UTF_8));
+                try {
+                    Files.move(tempFile, mFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } catch (final AtomicMoveNotSupportedException ex) {
+                    Files.move(tempFile, mFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } catch (final IOException ex) {
+                Log.warn("state", "Couldn't save state: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The stream info of a channel.
+     */
+    public static class StreamState {
+
+        /** The streamer */
+        private final String mStreamer;
+        /** The type of stream */
+        private final String mType;
+        /** The game being streamed */
+        private final String mGame;
+
+        /**
+         * Creates new stream info.
+         *
+         * @param streamer
+         *            The streamer
+         * @param type
+         *            The type of stream
+         * @param game
+         *            The game being streamed
+         */
+        public StreamState(final String streamer, final String type, final String game) {
+            mStreamer = streamer;
+            mType = type;
+            mGame = game;
+        }
+
+        /**
+         * @return The streamer
+         */
+        public String getStreamer() {
+            return mStreamer;
+        }
+
+        /**
+         * @return The type of stream
+         */
+        public String getType() {
+            return mType;
+        }
+
+        /**
+         * @return The game being streamed
+         */
+        public String getGame() {
+            return mGame;
+        }
+
+    }
+
+    /**
+     * The state that a platform should show, with whether it confirmed showing it.
+     */
+    public static class PlatformCheckpoint {
+
+        /** The state that the platform should show */
+        private final PlatformState mState;
+        /** Whether or not the platform confirmed that it shows the state */
+        private final boolean mApplied;
+
+        private PlatformCheckpoint(final PlatformState state, final boolean applied) {
+            mState = state;
+            mApplied = applied;
+        }
+
+        /**
+         * @return The state that the platform should show
+         */
+        public PlatformState getState() {
+            return mState;
+        }
+
+        /**
+         * @return Whether or not the platform confirmed that it shows the state
+         */
+        public boolean isApplied() {
+            return mApplied;
+        }
+
+    }
+
+}
@@ -1,150 +1,260 @@
 package com.tvkdevelopment.diu;
 
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
-import java.util.LinkedList;
-import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.LongAdder;
 
-import com.tvkdevelopment.diu.util.HttpHelper;
+import com.tvkdevelopment.diu.journal.Journal;
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Metrics;
+import com.tvkdevelopment.diu.topic.HttpTopicSource;
+import com.tvkdevelopment.diu.topic.TopicParser;
+import com.tvkdevelopment.diu.topic.TopicSource;
+import com.tvkdevelopment.diu.util.EventDispatcher;
+import com.tvkdevelopment.diu.util.EventDispatcher.OverflowPolicy;
 
 /**
- * A static helper class for getting stream info from the IRC topic.
+ * Gets stream info for a single channel from its topic and informs the listeners when it changes. Listeners are
+ * informed asynchronously, so slow listeners never delay picking up the topic.
  */
 public class StreamInfo {
 
-    /** The formatter for time prefixes per line */
-    private static final SimpleDateFormat sTimeFormatter = new SimpleDateFormat("[HH:mm:ss] ");
+    /** The shortest amount of time in milliseconds between topic requests, used right after a change */
+    private static final long MIN_REQUEST_INTERVAL = Long.getLong("diu.topic.minInterval", 1000);
+    /** The amount of time in milliseconds between topic requests to start backing off from */
+    private static final long BASE_REQUEST_INTERVAL = Long.getLong("diu.topic.interval",
+            Params.REQUEST_INTERVAL_TOPIC);
+    /** The longest amount of time in milliseconds between topic requests, used when nothing changes for a while */
+    private static final long MAX_REQUEST_INTERVAL = Long.getLong("diu.topic.maxInterval", 30 * 1000);
 
-    /** The URL at which to get the topic info */
-    private static final String URL_TOPIC = "http://goalitium.kapsi.fi/dopelives_status2";
+    /** The maximum amount of events waiting for a listener that was added without a capacity */
+    private static final int DEFAULT_LISTENER_CAPACITY = 16;
 
-    /** The HTTP helper to use for requests */
-    private static final HttpHelper sHttpHelper = new HttpHelper();
+    /** The amount of times the stream info changed */
+    private static final LongAdder sUpdates = Metrics.counter("streaminfo.updates");
+    /** The amount of times a stream stopped */
+    private static final LongAdder sRemovals = Metrics.counter("streaminfo.removals");
 
-    /** The pattern used to match active streams */
-    private static final Pattern sTopicParser = Pattern.compile("^(.+)\n([^:]+): ?(.+)$");
+    /** The name of the channel as shown in the output */
+    private final String mName;
+
+    /** The parser used to match active streams */
+    private final TopicParser mTopicParser = new TopicParser();
 
     /** Whether or not a stream is currently active */
-    private static boolean sStreamActive = false;
+    private boolean mStreamActive = false;
     /** The last detected streamer */
-    private static String sStreamer;
+    private String mStreamer;
     /** The last detected stream type */
-    private static String sType;
+    private String mType;
     /** The last detected game */
-    private static String sGame;
+    private String mGame;
+    /** The last topic that was received or null if none has been */
+    private String mLastTopic;
 
-    /** The listeners that will receive updates of stream info changes */
-    private static final List<StreamInfoListener> sListeners = new LinkedList<>();
+    /** Informs the listeners of stream info changes */
+    private final EventDispatcher<StreamInfoListener> mDispatcher = new EventDispatcher<>("streaminfo");
 
-    /** The last printed topic info length, used for clearing */
-    private static int sLastPrintInfoLength = 0;
+    /** The source providing the topic or null if it hasn't been started */
+    private TopicSource mTopicSource;
 
     /**
-     * Periodically refreshes the latest stream info. This method is synchronous and will deny any calls after it.
+     * Creates a source that polls a topic host for the topic.
+     *
+     * @param url
+     *            The URL at which to get the topic info
+     *
+     * @return The HTTP topic source
      */
-    public synchronized static void startRequestInterval() {
-        while (true) {
-            try {
-                // Check the newest stream info
-                final String result = sHttpHelper.get(URL_TOPIC);
-
-                if (result != null) {
-                    // Overwrite the last print info by new info
-                    final String printInfo = sTimeFormatter.format(Calendar.getInstance().getTime())
-                            + result.replace("\n", " ");
-                    System.out.print(printInfo);
-                    for (int i = printInfo.length(); i < sLastPrintInfoLength; ++i) {
-                        System.out.print(" ");
-                    }
-                    System.out.print("\r");
-                    sLastPrintInfoLength = printInfo.length();
-
-                    // Parse the topic
-                    final Matcher matcher = sTopicParser.matcher(result.trim());
-                    if (matcher.find()) {
-                        // Stream info found, see if it needs to be updated
-                        final String streamer = matcher.group(1);
-                        final String type = matcher.group(2);
-                        final String game = matcher.group(3);
-
-                        if (!sStreamActive || !sStreamer.equals(streamer) || !sType.equals(type) || !sGame.equals(game)) {
-                            sStreamActive = true;
-                            sStreamer = streamer;
-                            sType = type;
-                            sGame = game;
-
-                            // Notify all listeners of a change in stream info
-                            for (final StreamInfoListener listener : sListeners) {
-                                listener.onStreamInfoUpdated(sStreamer, sType, sGame);
-                            }
-                        }
-
-                    } else {
-                        // No stream info found
-                        if (sStreamActive) {
-                            sStreamActive = false;
-
-                            // Notify all listeners of a change in stream info
-                            for (final StreamInfoListener listener : sListeners) {
-                                listener.onStreamInfoRemoved();
-                            }
-                        }
-                    }
-                } else {
-                    System.out.println("\nCouldn't retrieve topic");
-                }
+    public static TopicSource createHttpSource(final String url) {
+        return new HttpTopicSource(url, MIN_REQUEST_INTERVAL, BASE_REQUEST_INTERVAL, MAX_REQUEST_INTERVAL);
+    }
+
+    /**
+     * Creates new stream info for a channel.
+     *
+     * @param name
+     *            The name of the channel as shown in the output
+     */
+    public StreamInfo(final String name) {
+        mName = name;
+    }
+
+    /**
+     * Restores the stream info from a previous run before starting, so that the same topic isn't seen as a change.
+     *
+     * @param streamer
+     *            The last detected streamer
+     * @param type
+     *            The last detected stream type
+     * @param game
+     *            The last detected game
+     */
+    public synchronized void restore(final String streamer, final String type, final String game) {
+        mStreamActive = true;
+        mStreamer = streamer;
+        mType = type;
+        mGame = game;
+    }
 
-            } catch (final Throwable ex) {
-                // Catch EVERYTHING to try to keep running
-                System.out.println("\nTopic updater exception/error");
-                ex.printStackTrace();
+    /**
+     * Starts receiving the latest stream info from a topic source in the background. Any calls after the first are
+     * ignored.
+     *
+     * @param topicSource
+     *            The source providing the topic
+     */
+    public synchronized void start(final TopicSource topicSource) {
+        if (mTopicSource != null) {
+            return;
+        }
+
+        mTopicSource = topicSource;
+        topicSource.start(new TopicSource.Listener() {
+            @Override
+            public void onTopic(final String topic) {
+                processTopic(topic);
             }
 
-            // Add interval between checks
-            try {
-                Thread.sleep(Params.REQUEST_INTERVAL_TOPIC);
+            @Override
+            public void onAvailabilityChanged(final boolean available) {}
+        });
+    }
 
-            } catch (final Throwable ex) {
-                // Catch EVERYTHING to try to keep running
-                System.out.println("\nThread sleep exception/error");
-                ex.printStackTrace();
+    /**
+     * Stops receiving stream info.
+     */
+    public synchronized void stop() {
+        if (mTopicSource != null) {
+            mTopicSource.stop();
+        }
+    }
+
+    /**
+     * Parses a topic and notifies the listeners if the stream info has changed. Topics that differ from the previous
+     * one are recorded in the journal.
+     *
+     * @param result
+     *            The topic in the format served by the topic host
+     */
+    private synchronized void processTopic(final String result) {
+        try {
+            printTopic("[" + mName + "] " + result.replace("\n", " "));
+            if (!result.equals(mLastTopic)) {
+                Journal.topic(mName, result);
+                mLastTopic = result;
             }
+
+            // Parse the topic
+            if (mTopicParser.parse(result)) {
+                // Stream info found, see if it needs to be updated
+                if (!mStreamActive || !mTopicParser.streamerEquals(mStreamer) || !mTopicParser.typeEquals(mType)
+                        || !mTopicParser.gameEquals(mGame)) {
+                    final StreamInfoChange change = new StreamInfoChange(mTopicParser.getStreamer(), mTopicParser
+                            .getType(), mTopicParser.getGame(), (mStreamActive ? mStreamer : null), (mStreamActive
+                                    ? mType : null), (mStreamActive ? mGame : null));
+                    mStreamActive = true;
+                    mStreamer = change.getStreamer();
+                    mType = change.getType();
+                    mGame = change.getGame();
+                    sUpdates.increment();
+
+                    // Notify all listeners of a change in stream info
+                    mDispatcher.dispatch(listener -> listener.onStreamInfoUpdated(change));
+                }
+
+            } else {
+                // No stream info found
+                if (mStreamActive) {
+                    mStreamActive = false;
+                    sRemovals.increment();
+
+                    // Notify all listeners of a change in stream info
+                    mDispatcher.dispatch(StreamInfoListener::onStreamInfoRemoved);
+                }
+            }
+
+        } catch (final Throwable ex) {
+            // Catch EVERYTHING to try to keep running
+            Log.error("topic", "[" + mName + "] Topic updater exception/error", ex);
         }
     }
 
     /**
-     * Adds a listener that will be informed of any stream info update.
+     * Shows topic info as the status line and logs it for debugging.
+     *
+     * @param info
+     *            The topic info on a single line
+     */
+    private static void printTopic(final String info) {
+        Log.status(info);
+        Log.debug("topic", info);
+    }
+
+    /**
+     * Adds a listener that will be informed of any stream info update on a shared pool, dropping the oldest updates if
+     * it falls far behind.
      *
      * @param listener
      *            The listener to receive updates
      */
-    public static void addListener(final StreamInfoListener listener) {
-        sListeners.add(listener);
+    public void addListener(final StreamInfoListener listener) {
+        mDispatcher.addListener(listener, DEFAULT_LISTENER_CAPACITY, OverflowPolicy.DROP_OLDEST);
     }
 
     /**
-     * This is a static-only class.
+     * Adds a listener that will be informed of stream info updates on a shared pool.
+     *
+     * @param listener
+     *            The listener to receive updates
+     * @param capacity
+     *            The maximum amount of updates waiting for the listener
+     * @param policy
+     *            What to do with updates that don't fit in the queue
      */
-    private StreamInfo() {}
+    public void addListener(final StreamInfoListener listener, final int capacity, final OverflowPolicy policy) {
+        mDispatcher.addListener(listener, capacity, policy);
+    }
+
+    /**
+     * Adds a listener that will be informed of stream info updates on an executor of choice.
+     *
+     * @param listener
+     *            The listener to receive updates
+     * @param executor
+     *            The executor to inform the listener on, one update at a time
+     * @param capacity
+     *            The maximum amount of updates waiting for the listener
+     * @param policy
+     *            What to do with updates that don't fit in the queue
+     */
+    public void addListener(final StreamInfoListener listener, final Executor executor, final int capacity,
+            final OverflowPolicy policy) {
+        mDispatcher.addListener(listener, executor, capacity, policy);
+    }
+
+    /**
+     * Stops informing a listener of stream info updates.
+     *
+     * @param listener
+     *            The listener to remove
+     */
+    public void removeListener(final StreamInfoListener listener) {
+        mDispatcher.removeListener(listener);
+    }
 
     /**
-     * The interface for receiving updates of stream info changes.
+     * The interface for receiving updates of stream info changes. Updates are received one at a time, but not on the
+     * thread that picked up the topic.
      */
     public interface StreamInfoListener {
 
         /**
          * Called when the stream info is updated for an active stream.
          *
-         * @param streamer
-         *            The streamer
-         * @param type
-         *            The type of stream
-         * @param game
-         *            The game being streamed
+         * @param change
+         *            The new stream info along with what changed
          */
-        void onStreamInfoUpdated(String streamer, String type, String game);
+        void onStreamInfoUpdated(StreamInfoChange change);
 
         /**
          * Called when a streamer has stopped.
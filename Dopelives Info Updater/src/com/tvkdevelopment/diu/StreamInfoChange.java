@@ -0,0 +1,112 @@
+package com.tvkdevelopment.diu;
+
+/**
+ * A change of the stream info of an active stream, telling which fields changed compared to the previous stream info.
+ * Games are compared the way they're resolved, so a game that only differs in whitespace or case isn't a change.
+ */
+public class StreamInfoChange {
+
+    /** The streamer */
+    private final String mStreamer;
+    /** The type of stream */
+    private final String mType;
+    /** The game being streamed */
+    private final String mGame;
+
+    /** The previous streamer or null if no stream was active */
+    private final String mPreviousStreamer;
+    /** The previous type of stream or null if no stream was active */
+    private final String mPreviousType;
+    /** The previous game or null if no stream was active */
+    private final String mPreviousGame;
+
+    /**
+     * Creates a new change.
+     *
+     * @param streamer
+     *            The streamer
+     * @param type
+     *            The type of stream
+     * @param game
+     *            The game being streamed
+     * @param previousStreamer
+     *            The previous streamer or null if no stream was active
+     * @param previousType
+     *            The previous type of stream or null if no stream was active
+     * @param previousGame
+     *            The previous game or null if no stream was active
+     */
+    public StreamInfoChange(final String streamer, final String type, final String game,
+            final String previousStreamer, final String previousType, final String previousGame) {
+        mStreamer = streamer;
+        mType = type;
+        mGame = game;
+        mPreviousStreamer = previousStreamer;
+        mPreviousType = previousType;
+        mPreviousGame = previousGame;
+    }
+
+    /**
+     * @return The streamer
+     */
+    public String getStreamer() {
+        return mStreamer;
+    }
+
+    /**
+     * @return The type of stream
+     */
+    public String getType() {
+        return mType;
+    }
+
+    /**
+     * @return The game being streamed
+     */
+    public String getGame() {
+        return mGame;
+    }
+
+    /**
+     * @return The previous streamer or null if no stream was active
+     */
+    public String getPreviousStreamer() {
+        return mPreviousStreamer;
+    }
+
+    /**
+     * @return The previous type of stream or null if no stream was active
+     */
+    public String getPreviousType() {
+        return mPreviousType;
+    }
+
+    /**
+     * @return The previous game or null if no stream was active
+     */
+    public String getPreviousGame() {
+        return mPreviousGame;
+    }
+
+    /**
+     * @return Whether or not the streamer changed
+     */
+    public boolean isStreamerChanged() {
+        return !mStreamer.equals(mPreviousStreamer);
+    }
+
+    /**
+     * @return Whether or not the type of stream changed
+     */
+    public boolean isTypeChanged() {
+        return !mType.equals(mPreviousType);
+    }
+
+    /**
+     * @return Whether or not the game changed, ignoring differences in whitespace and case
+     */
+    public boolean isGameChanged() {
+        return (mPreviousGame == null || !GameCache.normalize(mGame).equals(GameCache.normalize(mPreviousGame)));
+    }
+
+}
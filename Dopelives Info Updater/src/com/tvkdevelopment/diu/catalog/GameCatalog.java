@@ -0,0 +1,201 @@
+package com.tvkdevelopment.diu.catalog;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Metrics;
+
+/**
+ * A local copy of the games known to a platform, so that most games can be resolved without asking the platform. The
+ * games are downloaded periodically in the background and snapshotted to a file, so that lookups work right away after
+ * a restart. Lookups never block, as each download replaces the whole index at once.
+ */
+public class GameCatalog {
+
+    /** The time in milliseconds between downloads of the games */
+    private static final long REFRESH_INTERVAL = 6 * 60 * 60 * 1000L;
+    /** The time in milliseconds to wait before trying again after a failed download */
+    private static final long RETRY_INTERVAL = 10 * 60 * 1000L;
+
+    /** The scheduler downloading the games of all catalogs */
+    private static final ScheduledExecutorService sScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        final Thread thread = new Thread(runnable, "Game catalog");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The name of the platform as shown in the output */
+    private final String mName;
+    /** The file that the games are snapshotted to */
+    private final File mFile;
+    /** Downloads the values by normalised key from most to least popular, returning null if that failed */
+    private final Supplier<Map<String, String>> mLoader;
+
+    /** The amount of lookups that were answered by the catalog */
+    private final LongAdder mHits;
+    /** The amount of lookups that the catalog couldn't answer */
+    private final LongAdder mMisses;
+
+    /** The current index */
+    private volatile GameIndex mIndex = GameIndex.EMPTY;
+    /** The time in milliseconds since epoch at which the games were downloaded */
+    private volatile long mUpdatedAt = 0;
+
+    /**
+     * Creates a new catalog and loads the games previously snapshotted to the file. Its metrics are recorded under
+     * catalog.[name].hits and catalog.[name].misses.
+     *
+     * @param name
+     *            The name of the platform, used for the output and metrics
+     * @param file
+     *            The file to snapshot the games to
+     * @param loader
+     *            Downloads the values by normalised key from most to least popular, returning null if that failed
+     */
+    public GameCatalog(final String name, final File file, final Supplier<Map<String, String>> loader) {
+        mName = name;
+        mFile = file;
+        mLoader = loader;
+        final String metricsName = name.toLowerCase(Locale.ROOT);
+        mHits = Metrics.counter("catalog." + metricsName + ".hits");
+        mMisses = Metrics.counter("catalog." + metricsName + ".misses");
+        load();
+    }
+
+    /**
+     * Starts downloading the games in the background, right away if the snapshot is outdated.
+     */
+    public void startRefresh() {
+        final long snapshotAge = System.currentTimeMillis() - mUpdatedAt;
+        scheduleRefresh(Math.max(0, REFRESH_INTERVAL - snapshotAge));
+    }
+
+    /**
+     * Looks up a game by its exact key.
+     *
+     * @param key
+     *            The normalised key
+     *
+     * @return The value of the game or null if the catalog doesn't know it
+     */
+    public String get(final String key) {
+        return count(mIndex.get(key));
+    }
+
+    /**
+     * Counts a lookup as a hit or a miss.
+     *
+     * @param value
+     *            The result of the lookup
+     *
+     * @return The result of the lookup
+     */
+    private String count(final String value) {
+        if (value != null) {
+            mHits.increment();
+        } else {
+            mMisses.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Schedules the next download.
+     *
+     * @param delay
+     *            The time in milliseconds until the download
+     */
+    private void scheduleRefresh(final long delay) {
+        sScheduler.schedule(this::refresh, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Downloads the games, replaces the index and snapshots the games, then schedules the next download.
+     */
+    private void refresh() {
+        long delay = RETRY_INTERVAL;
+        try {
+            final Map<String, String> games = mLoader.get();
+            if (games != null && !games.isEmpty()) {
+                mIndex = GameIndex.build(games);
+                mUpdatedAt = System.currentTimeMillis();
+                save(games);
+                Log.info("catalog", mName + " catalog updated with " + mIndex.size() + " games");
+                delay = REFRESH_INTERVAL;
+            } else {
+                Log.warn("catalog", "Couldn't update " + mName + " catalog");
+            }
+
+        } catch (final Throwable ex) {
+            // Catch EVERYTHING to try to keep running
+            Log.error("catalog", mName + " catalog exception/error", ex);
+        }
+        scheduleRefresh(delay);
+    }
+
+    /**
+     * Loads the games from the snapshot file if there is one.
+     */
+    private void load() {
+        if (!mFile.isFile()) {
+            return;
+        }
+
+        try {
+            final String content = new String(Files.readAllBytes(mFile.toPath()), StandardCharsets.UTF_8);
+            final JSONObject snapshot = new JSONObject(content);
+            final JSONArray entries = snapshot.getJSONArray("games");
+            final Map<String, String> games = new LinkedHashMap<>(entries.length() * 2);
+            for (int i = 0; i < entries.length(); ++i) {
+                final JSONArray entry = entries.getJSONArray(i);
+                games.putIfAbsent(entry.getString(0), entry.getString(1));
+            }
+            mIndex = GameIndex.build(games);
+            mUpdatedAt = snapshot.getLong("updated");
+        } catch (final IOException | JSONException ex) {
+            Log.warn("catalog", "Couldn't load " + mName + " catalog: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Writes the games to the snapshot file. A temporary file is moved over the old one so that a crash while writing
+     * doesn't corrupt the snapshot.
+     *
+     * @param games
+     *            The values by normalised key from most to least popular
+     */
+    private void save(final Map<String, String> games) {
+        final JSONArray entries = new JSONArray();
+        for (final Map.Entry<String, String> game : games.entrySet()) {
+            entries.put(new JSONArray().put(game.getKey()).put(game.getValue()));
+        }
+        final JSONObject snapshot = new JSONObject();
+        snapshot.put("updated", mUpdatedAt);
+        snapshot.put("games", entries);
+
+        try {
+            final File tempFile = new File(mFile.getPath() + ".tmp");
+            Files.write(tempFile.toPath(), snapshot.toString().getBytes(StandardCharsets.UTF_8));
+            Files.move(tempFile.toPath(), mFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (final IOException ex) {
+            Log.warn("catalog", "Couldn't save " + mName + " catalog: " + ex.getMessage());
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+package com.tvkdevelopment.diu.catalog;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * An immutable trie of games by normalised key, which looks up a game by its exact key in time proportional to the
+ * length of the key.
+ */
+public class GameIndex {
+
+    /** The index without any games */
+    public static final GameIndex EMPTY = new GameIndex(new Node(), 0);
+
+    /** The root of the trie */
+    private final Node mRoot;
+    /** The amount of games in the index */
+    private final int mSize;
+
+    private GameIndex(final Node root, final int size) {
+        mRoot = root;
+        mSize = size;
+    }
+
+    /**
+     * Builds an index.
+     *
+     * @param games
+     *            The values by normalised key
+     *
+     * @return The index
+     */
+    public static GameIndex build(final Map<String, String> games) {
+        final Node root = new Node();
+        int size = 0;
+        for (final Map.Entry<String, String> game : games.entrySet()) {
+            if (!game.getKey().isEmpty()) {
+                root.insert(game.getKey(), game.getValue());
+                ++size;
+            }
+        }
+        return new GameIndex(root, size);
+    }
+
+    /**
+     * Looks up a game by its exact key.
+     *
+     * @param key
+     *            The normalised key
+     *
+     * @return The value of the game or null if there is none
+     */
+    public String get(final String key) {
+        final Node node = mRoot.find(key);
+        return (node != null ? node.mValue : null);
+    }
+
+    /**
+     * @return The amount of games in the index
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * A node of the trie, with its children sorted by character.
+     */
+    private static class Node {
+
+        /** The characters leading to the children */
+        private char[] mKeys = new char[0];
+        /** The children in the same order as their characters */
+        private Node[] mChildren = new Node[0];
+
+        /** The value of the game whose key ends at this node or null if there is none */
+        private String mValue;
+
+        /**
+         * Adds a game below this node.
+         *
+         * @param key
+         *            The normalised key
+         * @param value
+         *            The value of the game
+         */
+        private void insert(final String key, final String value) {
+            Node node = this;
+            for (int i = 0; i < key.length(); ++i) {
+                node = node.getOrAddChild(key.charAt(i));
+            }
+            node.mValue = value;
+        }
+
+        /**
+         * Finds the node at which a key ends.
+         *
+         * @param key
+         *            The normalised key
+         *
+         * @return The node or null if no key starts with the given key
+         */
+        private Node find(final String key) {
+            Node node = this;
+            for (int i = 0; i < key.length(); ++i) {
+                final int index = Arrays.binarySearch(node.mKeys, key.charAt(i));
+                if (index < 0) {
+                    return null;
+                }
+                node = node.mChildren[index];
+            }
+            return node;
+        }
+
+        /**
+         * Gets the child for a character, adding it if it doesn't exist yet.
+         *
+         * @param key
+         *            The character leading to the child
+         *
+         * @return The child
+         */
+        private Node getOrAddChild(final char key) {
+            final int index = Arrays.binarySearch(mKeys, key);
+            if (index >= 0) {
+                return mChildren[index];
+            }
+
+            final int insertAt = -index - 1;
+            final char[] keys = new char[mKeys.length + 1];
+            final Node[] children = new Node[mChildren.length + 1];
+            System.arraycopy(mKeys, 0, keys, 0, insertAt);
+            System.arraycopy(mChildren, 0, children, 0, insertAt);
+            System.arraycopy(mKeys, insertAt, keys, insertAt + 1, mKeys.length - insertAt);
+            System.arraycopy(mChildren, insertAt, children, insertAt + 1, mChildren.length - insertAt);
+
+            final Node child = new Node();
+            keys[insertAt] = key;
+            children[insertAt] = child;
+            mKeys = keys;
+            mChildren = children;
+            return child;
+        }
+
+    }
+
+}
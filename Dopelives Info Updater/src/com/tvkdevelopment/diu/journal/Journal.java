@@ -0,0 +1,362 @@
+package com.tvkdevelopment.diu.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Metrics;
+import com.tvkdevelopment.diu.services.PlatformState;
+
+/**
+ * An append-only record of everything that the updater's decisions depend on and everything it decided, so that
+ * production traffic can be replayed later. The journal is written to memory-mapped segment files in the directory set
+ * with the diu.journal system property, and is off when it isn't set. Each run starts a new segment, and a segment
+ * that is full is followed by the next one; old segments can simply be deleted. A segment starts with
+ *
+ * <pre>
+ * int magic, int version
+ * </pre>
+ *
+ * followed by records of
+ *
+ * <pre>
+ * int length, byte type, long time, long duration, byte fieldCount, (int fieldLength, byte[] field)...
+ * </pre>
+ *
+ * where the length covers the whole record, strings are UTF-8 and a field length of -1 means the field isn't set. The
+ * length is written last, so a record is only seen once it's complete and a length of 0 marks the end of a segment.
+ * Records are counted under journal.records, and records that couldn't be written under journal.dropped.
+ */
+public class Journal {
+
+    /** The first bytes of each segment, "DIUJ" */
+    static final int MAGIC = 0x4449554a;
+    /** The version of the format */
+    static final int VERSION = 1;
+    /** The size in bytes of the segment header */
+    static final int HEADER_SIZE = Integer.BYTES * 2;
+    /** The size in bytes of a record without its fields */
+    static final int RECORD_HEADER_SIZE = Integer.BYTES + 1 + Long.BYTES * 2 + 1;
+    /** The extension of segment files */
+    static final String SEGMENT_EXTENSION = ".journal";
+
+    /** The size in bytes of each segment, which can be overridden with diu.journal.segmentSize */
+    private static final int SEGMENT_SIZE = Integer.getInteger("diu.journal.segmentSize", 16 * 1024 * 1024);
+
+    /** The journal being written or null if journaling is off */
+    private static final Journal sJournal = open(System.getProperty("diu.journal"));
+
+    /** The directory holding the segments */
+    private final File mDirectory;
+    /** The number of the last segment that was started */
+    private int mSegment;
+    /** The segment being written or null if writing failed */
+    private MappedByteBuffer mBuffer;
+
+    /** The amount of records written */
+    private final LongAdder mRecords = Metrics.counter("journal.records");
+    /** The amount of records that couldn't be written */
+    private final LongAdder mDropped = Metrics.counter("journal.dropped");
+
+    /**
+     * Opens the journal if a directory is configured.
+     *
+     * @param directory
+     *            The directory holding the segments or null if journaling is off
+     *
+     * @return The journal or null if journaling is off
+     */
+    private static Journal open(final String directory) {
+        if (directory == null) {
+            return null;
+        }
+
+        final Journal journal = new Journal(new File(directory));
+        Runtime.getRuntime().addShutdownHook(new Thread(journal::flush, "Journal shutdown"));
+        return journal;
+    }
+
+    /**
+     * @return Whether or not the journal is being written
+     */
+    public static boolean isEnabled() {
+        return sJournal != null;
+    }
+
+    /**
+     * Records a topic fetched for a channel.
+     *
+     * @param channel
+     *            The name of the channel
+     * @param topic
+     *            The topic in the format served by the topic host
+     */
+    public static void topic(final String channel, final String topic) {
+        if (sJournal != null) {
+            sJournal.append(RecordType.TOPIC, JournalRecord.NO_DURATION, channel, topic);
+        }
+    }
+
+    /**
+     * Records a lookup that was answered without a network request.
+     *
+     * @param type
+     *            Either {@link RecordType#TWITCH_CATALOG} or {@link RecordType#CACHE}
+     * @param fields
+     *            The fields as listed by the type
+     */
+    public static void lookup(final RecordType type, final String... fields) {
+        if (sJournal != null) {
+            sJournal.append(type, JournalRecord.NO_DURATION, fields);
+        }
+    }
+
+    /**
+     * Records a game search.
+     *
+     * @param type
+     *            Either {@link RecordType#TWITCH_SEARCH} or {@link RecordType#HITBOX_SEARCH}
+     * @param query
+     *            The query
+     * @param result
+     *            The game found or null if none was found
+     * @param startTime
+     *            The time at which the search started as returned by {@link System#nanoTime()}
+     */
+    public static void search(final RecordType type, final String query, final String result, final long startTime) {
+        if (sJournal != null) {
+            sJournal.append(type, (System.nanoTime() - startTime) / 1000, query, result);
+        }
+    }
+
+    /**
+     * Records a game search that failed, which the replay fails the same way.
+     *
+     * @param type
+     *            Either {@link RecordType#TWITCH_SEARCH} or {@link RecordType#HITBOX_SEARCH}
+     * @param query
+     *            The query
+     * @param failure
+     *            What went wrong, such as the exception class
+     * @param startTime
+     *            The time at which the search started as returned by {@link System#nanoTime()}
+     */
+    public static void searchFailed(final RecordType type, final String query, final String failure,
+            final long startTime) {
+        if (sJournal != null) {
+            sJournal.append(type, (System.nanoTime() - startTime) / 1000, query, null, failure);
+        }
+    }
+
+    /**
+     * Records the start of a run of a channel along with the stream info it restored.
+     *
+     * @param channel
+     *            The name of the channel
+     * @param streamer
+     *            The streamer or null if nothing was restored
+     * @param type
+     *            The type of stream or null if nothing was restored
+     * @param game
+     *            The game being streamed or null if nothing was restored
+     * @param twitchGame
+     *            The game shown on Twitch or null if nothing was restored
+     * @param hitboxGame
+     *            The category ID shown on Hitbox or null if nothing was restored
+     */
+    public static void restore(final String channel, final String streamer, final String type, final String game,
+            final String twitchGame, final String hitboxGame) {
+        if (sJournal != null) {
+            sJournal.append(RecordType.RESTORE, JournalRecord.NO_DURATION, channel, streamer, type, game, twitchGame,
+                    hitboxGame);
+        }
+    }
+
+    /**
+     * Records a state that a platform should show.
+     *
+     * @param channel
+     *            The name of the channel
+     * @param platform
+     *            The name of the platform
+     * @param state
+     *            The state
+     */
+    public static void desired(final String channel, final String platform, final PlatformState state) {
+        if (sJournal != null) {
+            sJournal.append(RecordType.DESIRED, JournalRecord.NO_DURATION, channel, platform, state.getStatus(), state
+                    .getGame());
+        }
+    }
+
+    /**
+     * Records a write to a platform.
+     *
+     * @param channel
+     *            The name of the channel
+     * @param platform
+     *            The name of the platform
+     * @param state
+     *            The state that was written
+     * @param confirmed
+     *            Whether or not the platform confirmed the state
+     * @param startTime
+     *            The time at which the write started as returned by {@link System#nanoTime()}
+     */
+    public static void write(final String channel, final String platform, final PlatformState state,
+            final boolean confirmed, final long startTime) {
+        if (sJournal != null) {
+            sJournal.append(RecordType.WRITE, (System.nanoTime() - startTime) / 1000, channel, platform, state
+                    .getStatus(), state.getGame(), Boolean.toString(confirmed));
+        }
+    }
+
+    /**
+     * Creates a new journal, which starts a segment after the segments already in the directory.
+     *
+     * @param directory
+     *            The directory holding the segments
+     */
+    private Journal(final File directory) {
+        mDirectory = directory;
+        final int[] segments = getSegments(directory);
+        mSegment = (segments.length > 0 ? segments[segments.length - 1] : 0);
+        try {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                throw new IOException("Couldn't create " + directory);
+            }
+            startSegment();
+            Log.info("journal", "Journaling to " + getSegmentFile(directory, mSegment));
+        } catch (final IOException ex) {
+            Log.warn("journal", "Couldn't start journal: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Appends a record, starting a new segment if it doesn't fit in the current one.
+     *
+     * @param type
+     *            The type of record
+     * @param duration
+     *            The duration in microseconds of what the record is about or {@link JournalRecord#NO_DURATION}
+     * @param fields
+     *            The fields as listed by the type
+     */
+    private synchronized void append(final RecordType type, final long duration, final String... fields) {
+        if (mBuffer == null) {
+            mDropped.increment();
+            return;
+        }
+
+        final byte[][] encoded = new byte[fields.length][];
+        int length = RECORD_HEADER_SIZE;
+        for (int i = 0; i < fields.length; ++i) {
+            encoded[i] = (fields[i] != null ? fields[i].getBytes(StandardCharsets.UTF_8) : null);
+            length += Integer.BYTES + (encoded[i] != null ? encoded[i].length : 0);
+        }
+        if (length > SEGMENT_SIZE - HEADER_SIZE) {
+            mDropped.increment();
+            return;
+        }
+
+        try {
+            if (mBuffer.remaining() < length) {
+                startSegment();
+            }
+        } catch (final IOException ex) {
+            Log.warn("journal", "Couldn't start journal segment, stopping the journal: " + ex.getMessage());
+            mBuffer = null;
+            mDropped.increment();
+            return;
+        }
+
+        // Write the length last, so that a record is never read before it's complete
+        final int start = mBuffer.position();
+        mBuffer.position(start + Integer.BYTES);
+        mBuffer.put(type.getCode());
+        mBuffer.putLong(System.currentTimeMillis());
+        mBuffer.putLong(duration);
+        mBuffer.put((byte) fields.length);
+        for (final byte[] field : encoded) {
+            if (field != null) {
+                mBuffer.putInt(field.length);
+                mBuffer.put(field);
+            } else {
+                mBuffer.putInt(-1);
+            }
+        }
+        mBuffer.putInt(start, length);
+        mRecords.increment();
+    }
+
+    /**
+     * Finishes the current segment and maps the next one.
+     *
+     * @throws IOException
+     *             When the next segment couldn't be created
+     */
+    private void startSegment() throws IOException {
+        if (mBuffer != null) {
+            mBuffer.force();
+        }
+
+        ++mSegment;
+        try (final FileChannel channel = FileChannel.open(getSegmentFile(mDirectory, mSegment).toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            mBuffer = channel.map(MapMode.READ_WRITE, 0, SEGMENT_SIZE);
+        }
+        mBuffer.putInt(MAGIC);
+        mBuffer.putInt(VERSION);
+    }
+
+    /**
+     * Writes the current segment to disk.
+     */
+    private synchronized void flush() {
+        if (mBuffer != null) {
+            mBuffer.force();
+        }
+    }
+
+    /**
+     * Gets the file of a segment.
+     *
+     * @param directory
+     *            The directory holding the segments
+     * @param segment
+     *            The number of the segment
+     *
+     * @return The file
+     */
+    static File getSegmentFile(final File directory, final int segment) {
+        return new File(directory, String.format(Locale.ROOT, "%08d%s", segment, SEGMENT_EXTENSION));
+    }
+
+    /**
+     * Finds the segments in a directory.
+     *
+     * @param directory
+     *            The directory holding the segments
+     *
+     * @return The numbers of the segments in ascending order
+     */
+    static int[] getSegments(final File directory) {
+        final String[] names = directory.list();
+        if (names == null) {
+            return new int[0];
+        }
+
+        return Arrays.stream(names).filter(name -> name.endsWith(SEGMENT_EXTENSION)).map(name -> name.substring(0,
+                name.length() - SEGMENT_EXTENSION.length())).filter(number -> number.matches("[0-9]{1,9}"))
+                .mapToInt(Integer::parseInt).sorted().toArray();
+    }
+
+}
@@ -0,0 +1,132 @@
+package com.tvkdevelopment.diu.journal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+/**
+ * Reads the records from the segments of a journal in the order in which they were written. A segment is read up to
+ * its end or its first incomplete record, and records of unknown types are skipped.
+ */
+public class JournalReader {
+
+    /** The directory holding the segments */
+    private final File mDirectory;
+
+    /**
+     * Creates a new reader for a journal.
+     *
+     * @param directory
+     *            The directory holding the segments
+     */
+    public JournalReader(final File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Reads all records of the journal.
+     *
+     * @param consumer
+     *            The consumer to give the records to
+     *
+     * @return The amount of records read
+     *
+     * @throws IOException
+     *             When a segment couldn't be read or isn't a journal segment of a known version
+     */
+    public long read(final Consumer<JournalRecord> consumer) throws IOException {
+        long count = 0;
+        for (final int segment : Journal.getSegments(mDirectory)) {
+            count += readSegment(Journal.getSegmentFile(mDirectory, segment), consumer);
+        }
+        return count;
+    }
+
+    /**
+     * Reads all records of a segment.
+     *
+     * @param file
+     *            The segment file
+     * @param consumer
+     *            The consumer to give the records to
+     *
+     * @return The amount of records read
+     *
+     * @throws IOException
+     *             When the segment couldn't be read or isn't a journal segment of a known version
+     */
+    private static long readSegment(final File file, final Consumer<JournalRecord> consumer) throws IOException {
+        final MappedByteBuffer buffer;
+        try (final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            buffer = channel.map(MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.remaining() < Journal.HEADER_SIZE || buffer.getInt() != Journal.MAGIC) {
+            throw new IOException(file + " isn't a journal segment");
+        }
+        final int version = buffer.getInt();
+        if (version != Journal.VERSION) {
+            throw new IOException(file + " has unknown version " + version);
+        }
+
+        long count = 0;
+        while (buffer.remaining() >= Journal.RECORD_HEADER_SIZE) {
+            final int start = buffer.position();
+            final int length = buffer.getInt(start);
+            if (length < Journal.RECORD_HEADER_SIZE || length > buffer.remaining()) {
+                break;
+            }
+
+            final ByteBuffer record = buffer.duplicate();
+            record.position(start + Integer.BYTES).limit(start + length);
+            buffer.position(start + length);
+            final RecordType type = RecordType.fromCode(record.get());
+            if (type == null) {
+                continue;
+            }
+
+            final long time = record.getLong();
+            final long duration = record.getLong();
+            final String[] fields = readFields(record);
+            if (fields == null) {
+                break;
+            }
+            consumer.accept(new JournalRecord(type, time, duration, fields));
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Reads the fields of a record.
+     *
+     * @param record
+     *            The record positioned at the field count and limited to the end of the record
+     *
+     * @return The fields or null if they don't fit in the record
+     */
+    private static String[] readFields(final ByteBuffer record) {
+        final String[] fields = new String[record.get() & 0xff];
+        for (int i = 0; i < fields.length; ++i) {
+            if (record.remaining() < Integer.BYTES) {
+                return null;
+            }
+            final int length = record.getInt();
+            if (length > record.remaining() || length < -1) {
+                return null;
+            }
+            if (length >= 0) {
+                final byte[] bytes = new byte[length];
+                record.get(bytes);
+                fields[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+        }
+        return fields;
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.tvkdevelopment.diu.journal;
+
+/**
+ * A record read from the journal.
+ */
+public class JournalRecord {
+
+    /** The duration of a record that has none */
+    public static final long NO_DURATION = -1;
+
+    /** The type of record */
+    private final RecordType mType;
+    /** The time in milliseconds since epoch at which the record was written */
+    private final long mTime;
+    /** The duration in microseconds of what the record is about or {@link #NO_DURATION} */
+    private final long mDuration;
+    /** The fields as listed by the type, where values that weren't set are null */
+    private final String[] mFields;
+
+    JournalRecord(final RecordType type, final long time, final long duration, final String[] fields) {
+        mType = type;
+        mTime = time;
+        mDuration = duration;
+        mFields = fields;
+    }
+
+    /**
+     * @return The type of record
+     */
+    public RecordType getType() {
+        return mType;
+    }
+
+    /**
+     * @return The time in milliseconds since epoch at which the record was written
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    /**
+     * @return The duration in microseconds of what the record is about or {@link #NO_DURATION}
+     */
+    public long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * Gets a field.
+     *
+     * @param index
+     *            The index of the field as listed by the type
+     *
+     * @return The value or null if it wasn't set or the record doesn't have that many fields
+     */
+    public String getField(final int index) {
+        return (index < mFields.length ? mFields[index] : null);
+    }
+
+}
@@ -0,0 +1,63 @@
+package com.tvkdevelopment.diu.journal;
+
+/**
+ * The types of records in the journal, each with a fixed list of fields. The codes are written to the journal, so they
+ * must never change.
+ */
+public enum RecordType {
+
+    /** A topic fetched for a channel: channel, topic */
+    TOPIC(1),
+    /** A game found in the Twitch catalog: search option, game */
+    TWITCH_CATALOG(2),
+    /**
+     * A game search on Twitch with its duration: query, game or null if none was found, failure or null if the search
+     * succeeded
+     */
+    TWITCH_SEARCH(3),
+    /** A game search on Hitbox with its duration: query, category ID, failure or null if the search succeeded */
+    HITBOX_SEARCH(4),
+    /** A game resolved from the game cache: normalised game, Twitch game or null if none was found, Hitbox category */
+    CACHE(5),
+    /**
+     * The start of a run of a channel with the stream info it restored: channel, streamer, type, game, Twitch game,
+     * Hitbox category ID, where all but the channel are null if nothing was restored
+     */
+    RESTORE(6),
+    /** A state that a platform should show: channel, platform, status, game */
+    DESIRED(7),
+    /** A write to a platform with its duration: channel, platform, status, game, "true" if it was confirmed */
+    WRITE(8);
+
+    /** The code identifying the type in the journal */
+    private final byte mCode;
+
+    private RecordType(final int code) {
+        mCode = (byte) code;
+    }
+
+    /**
+     * @return The code identifying the type in the journal
+     */
+    byte getCode() {
+        return mCode;
+    }
+
+    /**
+     * Looks up a type by its code.
+     *
+     * @param code
+     *            The code identifying the type in the journal
+     *
+     * @return The type or null if the code is unknown
+     */
+    static RecordType fromCode(final byte code) {
+        for (final RecordType type : values()) {
+            if (type.mCode == code) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,178 @@
+package com.tvkdevelopment.diu.journal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The responses recorded in a journal, which answer the lookups and searches while replaying it instead of the
+ * catalogs, the game cache and the platforms. Each topic is replayed within a time window, and a lookup is answered
+ * with the first response to the same key that was recorded within it. Searches that weren't recorded within the
+ * window, for example because the game was cached at the time, are answered with the response to the same query that
+ * was recorded closest in time instead.
+ */
+public class RecordedResponses {
+
+    /** The types of records that are responses */
+    private static final Set<RecordType> RESPONSE_TYPES = EnumSet.of(RecordType.TWITCH_CATALOG,
+            RecordType.TWITCH_SEARCH, RecordType.HITBOX_SEARCH, RecordType.CACHE);
+    /** The types of responses that may be answered from outside of the window */
+    private static final Set<RecordType> NEAREST_TYPES = EnumSet.of(RecordType.TWITCH_SEARCH,
+            RecordType.HITBOX_SEARCH);
+
+    /** The responses being replayed or null if no journal is being replayed */
+    private static volatile RecordedResponses sActive;
+
+    /** The responses by type and key, ordered by time */
+    private final Map<RecordType, Map<String, List<JournalRecord>>> mResponses = new EnumMap<>(RecordType.class);
+    /** The amount of searches by type that couldn't be answered */
+    private final Map<RecordType, LongAdder> mMissing = new EnumMap<>(RecordType.class);
+
+    /** The time in milliseconds since epoch at which the window starts */
+    private volatile long mWindowStart = Long.MIN_VALUE;
+    /** The time in milliseconds since epoch before which the window ends */
+    private volatile long mWindowEnd = Long.MAX_VALUE;
+
+    /**
+     * @return The responses being replayed or null if no journal is being replayed
+     */
+    public static RecordedResponses getActive() {
+        return sActive;
+    }
+
+    /**
+     * Sets the responses to answer lookups and searches with instead of the catalogs, the game cache and the
+     * platforms.
+     *
+     * @param responses
+     *            The responses being replayed or null to stop replaying
+     */
+    public static void setActive(final RecordedResponses responses) {
+        sActive = responses;
+    }
+
+    /**
+     * Collects the responses from the records of a journal.
+     *
+     * @param records
+     *            The records of the journal, of which the ones that aren't responses are ignored
+     */
+    public RecordedResponses(final List<JournalRecord> records) {
+        for (final RecordType type : RESPONSE_TYPES) {
+            mResponses.put(type, new HashMap<>());
+        }
+        for (final RecordType type : NEAREST_TYPES) {
+            mMissing.put(type, new LongAdder());
+        }
+
+        for (final JournalRecord record : records) {
+            final Map<String, List<JournalRecord>> responses = mResponses.get(record.getType());
+            if (responses != null && record.getField(0) != null) {
+                responses.computeIfAbsent(record.getField(0), key -> new ArrayList<>()).add(record);
+            }
+        }
+        for (final Map<String, List<JournalRecord>> responses : mResponses.values()) {
+            for (final List<JournalRecord> list : responses.values()) {
+                Collections.sort(list, Comparator.comparingLong(JournalRecord::getTime));
+            }
+        }
+    }
+
+    /**
+     * Sets the time window of the topic being replayed.
+     *
+     * @param start
+     *            The time in milliseconds since epoch at which the topic was recorded
+     * @param end
+     *            The time in milliseconds since epoch at which the next topic of the channel was recorded or
+     *            {@link Long#MAX_VALUE} if there is none
+     */
+    public void setWindow(final long start, final long end) {
+        mWindowStart = start;
+        mWindowEnd = end;
+    }
+
+    /**
+     * Finds the recorded response to a lookup or search.
+     *
+     * @param type
+     *            The type of response
+     * @param key
+     *            The first field of the response, such as the query
+     *
+     * @return The response or null if none was recorded
+     */
+    public JournalRecord find(final RecordType type, final String key) {
+        final List<JournalRecord> responses = mResponses.get(type).get(key);
+        if (responses != null) {
+            final long start = mWindowStart;
+            final int index = findFirst(responses, start);
+            if (index < responses.size() && responses.get(index).getTime() < mWindowEnd) {
+                return responses.get(index);
+            }
+
+            if (NEAREST_TYPES.contains(type)) {
+                if (index == 0) {
+                    return responses.get(0);
+                }
+                if (index == responses.size()) {
+                    return responses.get(index - 1);
+                }
+                final JournalRecord before = responses.get(index - 1);
+                final JournalRecord after = responses.get(index);
+                return (start - before.getTime() <= after.getTime() - start ? before : after);
+            }
+        }
+
+        // A lookup that wasn't recorded within the window simply didn't find anything at the time
+        if (NEAREST_TYPES.contains(type)) {
+            mMissing.get(type).increment();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the amount of searches that couldn't be answered, as they were never recorded.
+     *
+     * @param type
+     *            The type of search
+     *
+     * @return The amount
+     */
+    public long getMissing(final RecordType type) {
+        final LongAdder missing = mMissing.get(type);
+        return (missing != null ? missing.sum() : 0);
+    }
+
+    /**
+     * Finds the first response recorded at or after a time.
+     *
+     * @param responses
+     *            The responses ordered by time
+     * @param time
+     *            The time in milliseconds since epoch
+     *
+     * @return The index of the response or the amount of responses if there is none
+     */
+    private static int findFirst(final List<JournalRecord> responses, final long time) {
+        int low = 0;
+        int high = responses.size();
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (responses.get(middle).getTime() < time) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+}
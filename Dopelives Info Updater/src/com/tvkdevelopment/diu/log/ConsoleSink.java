@@ -0,0 +1,105 @@
+package com.tvkdevelopment.diu.log;
+
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+
+/**
+ * Writes log events to the standard output in a short format and keeps the status line below them. The status line
+ * is redrawn in place, so it's only meant for interactive terminals.
+ */
+class ConsoleSink implements LogSink {
+
+    /** The formatter for the time in front of each line */
+    private static final DateTimeFormatter sTimeFormatter = DateTimeFormatter.ofPattern("'['HH:mm:ss'] '")
+            .withZone(ZoneId.systemDefault());
+
+    /** The line being built, reused for every event */
+    private final StringBuilder mLine = new StringBuilder(256);
+    /** Spaces used to clear the status line */
+    private char[] mSpaces = new char[0];
+
+    /** The status line currently shown or null if none */
+    private String mStatus;
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final LogEvent event) {
+        final PrintStream out = System.out;
+        mLine.setLength(0);
+        clearStatus();
+
+        sTimeFormatter.formatTo(Instant.ofEpochMilli(event.getTime()), mLine);
+        if (event.getLevel().compareTo(Level.WARN) >= 0) {
+            mLine.append(event.getLevel()).append(' ');
+        }
+        mLine.append(event.getMessage());
+        if (event.getDuration() != LogEvent.NO_DURATION) {
+            mLine.append(" (").append(event.getDuration() / 1000).append(" ms)");
+        }
+        mLine.append('\n');
+        out.append(mLine);
+
+        if (event.getThrowable() != null) {
+            event.getThrowable().printStackTrace(out);
+        }
+        if (mStatus != null) {
+            out.print(mStatus);
+            out.print('\r');
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStatus(final String status) {
+        mLine.setLength(0);
+        mLine.append(status);
+        final int previousLength = (mStatus != null ? mStatus.length() : 0);
+        appendSpaces(previousLength - status.length());
+        mLine.append('\r');
+        System.out.append(mLine);
+        mStatus = status;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        System.out.flush();
+    }
+
+    /**
+     * Adds spaces to clear the status line to the line being built, leaving the cursor at its start.
+     */
+    private void clearStatus() {
+        if (mStatus != null) {
+            appendSpaces(mStatus.length());
+            mLine.append('\r');
+        }
+    }
+
+    /**
+     * Adds spaces to the line being built.
+     *
+     * @param count
+     *            The amount of spaces, adding none if it's not positive
+     */
+    private void appendSpaces(final int count) {
+        if (count <= 0) {
+            return;
+        }
+        if (mSpaces.length < count) {
+            mSpaces = new char[Math.max(count, mSpaces.length * 2)];
+            Arrays.fill(mSpaces, ' ');
+        }
+        mLine.append(mSpaces, 0, count);
+    }
+
+}
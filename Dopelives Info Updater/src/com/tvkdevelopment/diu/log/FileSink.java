@@ -0,0 +1,159 @@
+package com.tvkdevelopment.diu.log;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Writes log events to a file with one line per event, holding the time, level, type, message and any endpoint and
+ * duration. Once the file reaches its maximum size, it's renamed to [file].1, shifting older files up to the maximum
+ * amount of files and deleting the oldest.
+ */
+class FileSink implements LogSink {
+
+    /** The formatter for the time at the start of each line */
+    private static final DateTimeFormatter sTimeFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS ")
+            .withZone(ZoneId.systemDefault());
+
+    /** The file being written to */
+    private final File mFile;
+    /** The size in bytes at which the file is rotated */
+    private final long mMaxSize;
+    /** The amount of rotated files to keep */
+    private final int mMaxFiles;
+
+    /** The line being built, reused for every event */
+    private final StringBuilder mLine = new StringBuilder(256);
+
+    /** The output to the file or null if it couldn't be opened */
+    private OutputStream mOutput;
+    /** The current size of the file in bytes */
+    private long mSize;
+
+    /**
+     * Creates a new file sink, appending to the file if it exists.
+     *
+     * @param file
+     *            The file to write to
+     * @param maxSize
+     *            The size in bytes at which the file is rotated
+     * @param maxFiles
+     *            The amount of rotated files to keep
+     */
+    FileSink(final File file, final long maxSize, final int maxFiles) {
+        mFile = file;
+        mMaxSize = maxSize;
+        mMaxFiles = maxFiles;
+        open();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void write(final LogEvent event) {
+        if (mOutput == null) {
+            return;
+        }
+
+        mLine.setLength(0);
+        sTimeFormatter.formatTo(Instant.ofEpochMilli(event.getTime()), mLine);
+        mLine.append(event.getLevel()).append(' ').append(event.getType()).append(' ').append(event.getMessage());
+        if (event.getEndpoint() != null) {
+            mLine.append(" endpoint=").append(event.getEndpoint());
+        }
+        if (event.getDuration() != LogEvent.NO_DURATION) {
+            mLine.append(" duration_us=").append(event.getDuration());
+        }
+        mLine.append('\n');
+        if (event.getThrowable() != null) {
+            final StringWriter stackTrace = new StringWriter();
+            event.getThrowable().printStackTrace(new PrintWriter(stackTrace));
+            mLine.append(stackTrace);
+        }
+
+        final byte[] bytes = mLine.toString().getBytes(StandardCharsets.UTF_8);
+        try {
+            mOutput.write(bytes);
+            mSize += bytes.length;
+            if (mSize >= mMaxSize) {
+                rotate();
+            }
+        } catch (final IOException ex) {
+            System.err.println("Couldn't write log file: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void writeStatus(final String status) {}
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void flush() {
+        if (mOutput == null) {
+            return;
+        }
+
+        try {
+            mOutput.flush();
+        } catch (final IOException ex) {
+            System.err.println("Couldn't write log file: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Opens the file for appending.
+     */
+    private void open() {
+        try {
+            mOutput = new BufferedOutputStream(new FileOutputStream(mFile, true));
+            mSize = mFile.length();
+        } catch (final IOException ex) {
+            System.err.println("Couldn't open log file: " + ex.getMessage());
+            mOutput = null;
+        }
+    }
+
+    /**
+     * Closes the file, shifts the rotated files up and opens a new file.
+     *
+     * @throws IOException
+     *             When the file couldn't be closed
+     */
+    private void rotate() throws IOException {
+        mOutput.close();
+
+        final File oldest = new File(mFile.getPath() + "." + mMaxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            System.err.println("Couldn't delete old log file " + oldest);
+        }
+        for (int i = mMaxFiles - 1; i >= 1; --i) {
+            final File rotated = new File(mFile.getPath() + "." + i);
+            if (rotated.exists() && !rotated.renameTo(new File(mFile.getPath() + "." + (i + 1)))) {
+                System.err.println("Couldn't rotate log file " + rotated);
+            }
+        }
+        if (mMaxFiles > 0 && !mFile.renameTo(new File(mFile.getPath() + ".1"))) {
+            System.err.println("Couldn't rotate log file " + mFile);
+        }
+        if (mMaxFiles == 0 && !mFile.delete()) {
+            System.err.println("Couldn't delete log file " + mFile);
+        }
+
+        open();
+    }
+
+}
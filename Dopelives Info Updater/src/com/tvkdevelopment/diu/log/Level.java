@@ -0,0 +1,20 @@
+package com.tvkdevelopment.diu.log;
+
+/**
+ * The severity of a log event, from least to most severe.
+ */
+public enum Level {
+
+    /** Details that are only useful while looking into a problem, such as every topic poll */
+    DEBUG,
+
+    /** The normal progress of the updater */
+    INFO,
+
+    /** Something failed but will be retried or worked around */
+    WARN,
+
+    /** Something unexpected happened that may need attention */
+    ERROR
+
+}
@@ -0,0 +1,276 @@
+package com.tvkdevelopment.diu.log;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import com.tvkdevelopment.diu.metrics.Metrics;
+
+/**
+ * The static entry point for logging. Events are put in a bounded ring buffer and written to the sinks by a
+ * background thread, so logging never blocks on the output; when the buffer is full, events are dropped and counted
+ * under log.dropped instead. The status line is rendered by the same thread at a limited rate, and only when running
+ * in a terminal. Logging is configured with system properties:
+ * <ul>
+ * <li>diu.log.level: the lowest level to log, INFO by default</li>
+ * <li>diu.log.file: the file to also log to, none by default</li>
+ * <li>diu.log.maxSize: the size in bytes at which the file is rotated, 10 MB by default</li>
+ * <li>diu.log.maxFiles: the amount of rotated files to keep, 5 by default</li>
+ * <li>diu.log.status: whether to show the status line, by default only when running in a terminal</li>
+ * </ul>
+ */
+public class Log {
+
+    /** The lowest level that is logged */
+    private static final Level LEVEL = Level.valueOf(System.getProperty("diu.log.level", "INFO").toUpperCase(
+            Locale.ROOT));
+    /** Whether or not the status line is shown */
+    private static final boolean STATUS_ENABLED = Boolean.parseBoolean(System.getProperty("diu.log.status", Boolean
+            .toString(System.console() != null)));
+    /** The maximum amount of events waiting to be written */
+    private static final int BUFFER_CAPACITY = 8192;
+    /** The time in nanoseconds that the writer sleeps when there is nothing to write */
+    private static final long IDLE_WAIT = TimeUnit.MILLISECONDS.toNanos(10);
+    /** The shortest time in milliseconds between renders of the status line */
+    private static final long STATUS_INTERVAL = 250;
+
+    /** The formatter for the time in front of the status line */
+    private static final DateTimeFormatter sStatusTimeFormatter = DateTimeFormatter.ofPattern("'['HH:mm:ss'] '")
+            .withZone(ZoneId.systemDefault());
+
+    /** The events waiting to be written */
+    private static final RingBuffer sBuffer = new RingBuffer(BUFFER_CAPACITY);
+    /** The destinations of the events */
+    private static final List<LogSink> sSinks = createSinks();
+    /** The lock making sure that only one thread at a time writes, as the buffer has a single consumer */
+    private static final Object sWriterLock = new Object();
+
+    /** The amount of events dropped because the buffer was full */
+    private static final LongAdder sDropped = Metrics.counter("log.dropped");
+
+    /** The latest status line or null if none has been set */
+    private static volatile Status sStatus;
+    /** The status line that was rendered last, only accessed by the writer */
+    private static Status sRenderedStatus;
+    /** The time in milliseconds since epoch at which the status line was rendered last, only accessed by the writer */
+    private static long sStatusRenderTime = 0;
+    /** The amount of dropped events that have been reported, only accessed by the writer */
+    private static long sReportedDropped = 0;
+
+    static {
+        final Thread writer = new Thread(Log::runWriter, "Log writer");
+        writer.setDaemon(true);
+        writer.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(Log::writeAll, "Log shutdown"));
+    }
+
+    /**
+     * Checks whether events of a level are logged, so that building expensive messages can be skipped.
+     *
+     * @param level
+     *            The level
+     *
+     * @return True if events of the level are logged, false otherwise
+     */
+    public static boolean isEnabled(final Level level) {
+        return level.compareTo(LEVEL) >= 0;
+    }
+
+    /**
+     * Logs a detail that is only useful while looking into a problem.
+     *
+     * @param type
+     *            The part of the updater logging the event, such as "http" or "update"
+     * @param message
+     *            The message
+     */
+    public static void debug(final String type, final String message) {
+        event(Level.DEBUG, type, null, LogEvent.NO_DURATION, message, null);
+    }
+
+    /**
+     * Logs the normal progress of the updater.
+     *
+     * @param type
+     *            The part of the updater logging the event, such as "http" or "update"
+     * @param message
+     *            The message
+     */
+    public static void info(final String type, final String message) {
+        event(Level.INFO, type, null, LogEvent.NO_DURATION, message, null);
+    }
+
+    /**
+     * Logs a failure that will be retried or worked around.
+     *
+     * @param type
+     *            The part of the updater logging the event, such as "http" or "update"
+     * @param message
+     *            The message
+     */
+    public static void warn(final String type, final String message) {
+        event(Level.WARN, type, null, LogEvent.NO_DURATION, message, null);
+    }
+
+    /**
+     * Logs something unexpected along with its cause.
+     *
+     * @param type
+     *            The part of the updater logging the event, such as "http" or "update"
+     * @param message
+     *            The message
+     * @param throwable
+     *            The error that caused the event
+     */
+    public static void error(final String type, final String message, final Throwable throwable) {
+        event(Level.ERROR, type, null, LogEvent.NO_DURATION, message, throwable);
+    }
+
+    /**
+     * Logs an event with all of its fields. Never blocks, dropping the event if too many are waiting to be written.
+     *
+     * @param level
+     *            The severity
+     * @param type
+     *            The part of the updater logging the event, such as "http" or "update"
+     * @param endpoint
+     *            The endpoint that the event is about or null if none
+     * @param duration
+     *            The duration in microseconds of what the event is about or {@link LogEvent#NO_DURATION}
+     * @param message
+     *            The message
+     * @param throwable
+     *            The error that caused the event or null if none
+     */
+    public static void event(final Level level, final String type, final String endpoint, final long duration,
+            final String message, final Throwable throwable) {
+        if (!isEnabled(level)) {
+            return;
+        }
+        if (!sBuffer.offer(System.currentTimeMillis(), level, type, endpoint, duration, message, throwable)) {
+            sDropped.increment();
+        }
+    }
+
+    /**
+     * Sets the status line, which replaces the previous one in the terminal. Status lines set in quick succession are
+     * only rendered at a limited rate, skipping all but the latest.
+     *
+     * @param status
+     *            The status line
+     */
+    public static void status(final String status) {
+        if (STATUS_ENABLED) {
+            sStatus = new Status(System.currentTimeMillis(), status);
+        }
+    }
+
+    /**
+     * @return The sinks configured with the system properties
+     */
+    private static List<LogSink> createSinks() {
+        final List<LogSink> sinks = new ArrayList<>();
+        sinks.add(new ConsoleSink());
+
+        final String file = System.getProperty("diu.log.file");
+        if (file != null) {
+            sinks.add(new FileSink(new File(file), Long.getLong("diu.log.maxSize", 10 * 1024 * 1024), Integer
+                    .getInteger("diu.log.maxFiles", 5)));
+        }
+        return Collections.unmodifiableList(sinks);
+    }
+
+    /**
+     * Writes the events and renders the status line until the process ends.
+     */
+    private static void runWriter() {
+        while (true) {
+            if (!writeAll()) {
+                LockSupport.parkNanos(IDLE_WAIT);
+            }
+        }
+    }
+
+    /**
+     * Writes all waiting events, reports dropped events and renders the status line if it's due.
+     *
+     * @return True if anything was written, false otherwise
+     */
+    private static boolean writeAll() {
+        synchronized (sWriterLock) {
+            boolean written = (sBuffer.drain(Log::write) > 0);
+
+            final long dropped = sDropped.sum();
+            if (dropped != sReportedDropped) {
+                sBuffer.offer(System.currentTimeMillis(), Level.WARN, "log", null, LogEvent.NO_DURATION, (dropped
+                        - sReportedDropped) + " log events dropped", null);
+                sReportedDropped = dropped;
+                sBuffer.drain(Log::write);
+                written = true;
+            }
+
+            final Status status = sStatus;
+            final long now = System.currentTimeMillis();
+            if (status != sRenderedStatus && now - sStatusRenderTime >= STATUS_INTERVAL) {
+                final String line = sStatusTimeFormatter.format(Instant.ofEpochMilli(status.mTime)) + status.mText;
+                for (final LogSink sink : sSinks) {
+                    sink.writeStatus(line);
+                }
+                sRenderedStatus = status;
+                sStatusRenderTime = now;
+                written = true;
+            }
+
+            if (written) {
+                for (final LogSink sink : sSinks) {
+                    sink.flush();
+                }
+            }
+            return written;
+        }
+    }
+
+    /**
+     * Writes an event to all sinks.
+     *
+     * @param event
+     *            The event to write
+     */
+    private static void write(final LogEvent event) {
+        for (final LogSink sink : sSinks) {
+            try {
+                sink.write(event);
+            } catch (final Throwable ex) {
+                // Catch EVERYTHING to keep the other sinks and the writer running
+                System.err.println("Log sink exception/error");
+                ex.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A status line with the time at which it was set.
+     */
+    private static class Status {
+
+        /** The time in milliseconds since epoch at which the status line was set */
+        private final long mTime;
+        /** The status line */
+        private final String mText;
+
+        private Status(final long time, final String text) {
+            mTime = time;
+            mText = text;
+        }
+
+    }
+
+}
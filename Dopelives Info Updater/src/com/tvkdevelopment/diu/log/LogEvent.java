@@ -0,0 +1,115 @@
+package com.tvkdevelopment.diu.log;
+
+/**
+ * A structured log event. Events live in the slots of the ring buffer and are filled in place, so logging doesn't
+ * allocate anything besides the message itself.
+ */
+public class LogEvent {
+
+    /** The value of the duration for events that didn't time anything */
+    public static final long NO_DURATION = -1;
+
+    /** The time in milliseconds since epoch at which the event happened */
+    private long mTime;
+    /** The severity */
+    private Level mLevel;
+    /** The part of the updater that logged the event, such as "http" or "update" */
+    private String mType;
+    /** The endpoint that the event is about or null if none */
+    private String mEndpoint;
+    /** The duration in microseconds of what the event is about or {@link #NO_DURATION} */
+    private long mDuration;
+    /** The message */
+    private String mMessage;
+    /** The error that caused the event or null if none */
+    private Throwable mThrowable;
+
+    /**
+     * Fills the event.
+     *
+     * @param time
+     *            The time in milliseconds since epoch at which the event happened
+     * @param level
+     *            The severity
+     * @param type
+     *            The part of the updater that logged the event
+     * @param endpoint
+     *            The endpoint that the event is about or null if none
+     * @param duration
+     *            The duration in microseconds of what the event is about or {@link #NO_DURATION}
+     * @param message
+     *            The message
+     * @param throwable
+     *            The error that caused the event or null if none
+     */
+    void set(final long time, final Level level, final String type, final String endpoint, final long duration,
+            final String message, final Throwable throwable) {
+        mTime = time;
+        mLevel = level;
+        mType = type;
+        mEndpoint = endpoint;
+        mDuration = duration;
+        mMessage = message;
+        mThrowable = throwable;
+    }
+
+    /**
+     * Releases the references held by the event, so a slot doesn't keep an old message alive.
+     */
+    void clear() {
+        mType = null;
+        mEndpoint = null;
+        mMessage = null;
+        mThrowable = null;
+    }
+
+    /**
+     * @return The time in milliseconds since epoch at which the event happened
+     */
+    public long getTime() {
+        return mTime;
+    }
+
+    /**
+     * @return The severity
+     */
+    public Level getLevel() {
+        return mLevel;
+    }
+
+    /**
+     * @return The part of the updater that logged the event, such as "http" or "update"
+     */
+    public String getType() {
+        return mType;
+    }
+
+    /**
+     * @return The endpoint that the event is about or null if none
+     */
+    public String getEndpoint() {
+        return mEndpoint;
+    }
+
+    /**
+     * @return The duration in microseconds of what the event is about or {@link #NO_DURATION}
+     */
+    public long getDuration() {
+        return mDuration;
+    }
+
+    /**
+     * @return The message
+     */
+    public String getMessage() {
+        return mMessage;
+    }
+
+    /**
+     * @return The error that caused the event or null if none
+     */
+    public Throwable getThrowable() {
+        return mThrowable;
+    }
+
+}
@@ -0,0 +1,29 @@
+package com.tvkdevelopment.diu.log;
+
+/**
+ * A destination for log events. Sinks are only used by the log writer thread, so they don't need to be thread-safe.
+ */
+public interface LogSink {
+
+    /**
+     * Writes an event. The event is reused once this returns, so it must not be kept.
+     *
+     * @param event
+     *            The event to write
+     */
+    void write(LogEvent event);
+
+    /**
+     * Shows the status line, replacing the previous one. Sinks that don't show a status line ignore it.
+     *
+     * @param status
+     *            The status line
+     */
+    void writeStatus(String status);
+
+    /**
+     * Flushes any buffered output, called whenever the writer runs out of events.
+     */
+    void flush();
+
+}
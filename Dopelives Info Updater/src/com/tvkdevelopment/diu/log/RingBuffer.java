@@ -0,0 +1,120 @@
+package com.tvkdevelopment.diu.log;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded lock-free queue of log events for many producers and a single consumer. Each slot has a sequence number
+ * telling whether it's free for the producer claiming that position or filled for the consumer, so producers only
+ * contend on claiming a position and never wait for each other or the consumer. When the buffer is full, events are
+ * rejected instead of blocking the producer.
+ */
+class RingBuffer {
+
+    /** The events, reused for every lap around the buffer */
+    private final LogEvent[] mSlots;
+    /** The sequence number per slot: its position when free and its position plus one when filled */
+    private final AtomicLongArray mSequences;
+    /** The mask to turn a position into a slot, one less than the capacity */
+    private final int mMask;
+
+    /** The next position for producers to claim */
+    private final AtomicLong mTail = new AtomicLong();
+    /** The next position for the consumer to read, only accessed by the consumer */
+    private long mHead = 0;
+
+    /**
+     * Creates a new ring buffer.
+     *
+     * @param capacity
+     *            The maximum amount of waiting events, rounded up to a power of two
+     */
+    RingBuffer(final int capacity) {
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+
+        mSlots = new LogEvent[size];
+        mSequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i) {
+            mSlots[i] = new LogEvent();
+            mSequences.set(i, i);
+        }
+        mMask = size - 1;
+    }
+
+    /**
+     * Adds an event if there is room.
+     *
+     * @param time
+     *            The time in milliseconds since epoch at which the event happened
+     * @param level
+     *            The severity
+     * @param type
+     *            The part of the updater that logged the event
+     * @param endpoint
+     *            The endpoint that the event is about or null if none
+     * @param duration
+     *            The duration in microseconds of what the event is about or {@link LogEvent#NO_DURATION}
+     * @param message
+     *            The message
+     * @param throwable
+     *            The error that caused the event or null if none
+     *
+     * @return True if the event was added, false if the buffer was full
+     */
+    boolean offer(final long time, final Level level, final String type, final String endpoint, final long duration,
+            final String message, final Throwable throwable) {
+        long position = mTail.get();
+        while (true) {
+            final int slot = (int) position & mMask;
+            final long difference = mSequences.get(slot) - position;
+            if (difference == 0) {
+                if (mTail.compareAndSet(position, position + 1)) {
+                    mSlots[slot].set(time, level, type, endpoint, duration, message, throwable);
+                    mSequences.set(slot, position + 1);
+                    return true;
+                }
+                position = mTail.get();
+            } else if (difference < 0) {
+                // The consumer hasn't freed this slot from the previous lap yet
+                return false;
+            } else {
+                // Another producer claimed this position first
+                position = mTail.get();
+            }
+        }
+    }
+
+    /**
+     * Passes all filled events to a consumer in order, freeing their slots. Must only be called by the single
+     * consumer.
+     *
+     * @param consumer
+     *            The consumer of the events, which must not keep them
+     *
+     * @return The amount of events consumed
+     */
+    int drain(final Consumer<LogEvent> consumer) {
+        int count = 0;
+        while (true) {
+            final int slot = (int) mHead & mMask;
+            if (mSequences.get(slot) != mHead + 1) {
+                return count;
+            }
+
+            final LogEvent event = mSlots[slot];
+            try {
+                consumer.accept(event);
+            } finally {
+                event.clear();
+                mSequences.set(slot, mHead + mSlots.length);
+                ++mHead;
+            }
+            ++count;
+        }
+    }
+
+}
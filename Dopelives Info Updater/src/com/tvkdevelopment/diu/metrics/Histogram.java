@@ -0,0 +1,146 @@
+package com.tvkdevelopment.diu.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A lock-free histogram of non-negative values with a bounded relative error, in the style of HdrHistogram. Values
+ * are counted in buckets that are linear within each power of two, so every recorded value is reported within about 3%
+ * of its real value regardless of its magnitude. Recording only touches a few atomic counters and never allocates.
+ */
+public class Histogram {
+
+    /** The amount of bits used for the linear buckets within each power of two */
+    private static final int SUB_BUCKET_BITS = 5;
+    /** The amount of linear buckets within each power of two */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** The amount of buckets needed to cover all non-negative long values */
+    private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    /** The amount of values per bucket */
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    /** The amount of recorded values */
+    private final LongAdder mCount = new LongAdder();
+    /** The sum of the recorded values */
+    private final LongAdder mSum = new LongAdder();
+    /** The highest recorded value */
+    private final AtomicLong mMax = new AtomicLong();
+
+    /**
+     * Records a value.
+     *
+     * @param value
+     *            The value to record, where negative values are counted as 0
+     */
+    public void record(final long value) {
+        final long clamped = Math.max(0, value);
+        mBuckets.incrementAndGet(getBucket(clamped));
+        mCount.increment();
+        mSum.add(clamped);
+
+        long max = mMax.get();
+        while (clamped > max && !mMax.compareAndSet(max, clamped)) {
+            max = mMax.get();
+        }
+    }
+
+    /**
+     * Records the time that has passed since a start time in microseconds.
+     *
+     * @param startNanos
+     *            The start time as returned by {@link System#nanoTime()}
+     */
+    public void recordSince(final long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * @return The amount of recorded values
+     */
+    public long getCount() {
+        return mCount.sum();
+    }
+
+    /**
+     * @return The average of the recorded values or 0 if there are none
+     */
+    public double getMean() {
+        final long count = mCount.sum();
+        return (count > 0 ? (double) mSum.sum() / count : 0);
+    }
+
+    /**
+     * @return The highest recorded value or 0 if there are none
+     */
+    public long getMax() {
+        return mMax.get();
+    }
+
+    /**
+     * Determines the value below which a percentage of the recorded values fall. Values recorded at the same time may
+     * or may not be included.
+     *
+     * @param percentile
+     *            The percentage between 0 and 100
+     *
+     * @return The highest value equivalent to the percentile or 0 if there are no values
+     */
+    public long getPercentile(final double percentile) {
+        long total = 0;
+        final long[] counts = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            counts[i] = mBuckets.get(i);
+            total += counts[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        final long target = Math.max(1, (long) Math.ceil(percentile / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; ++i) {
+            seen += counts[i];
+            if (seen >= target) {
+                return Math.min(getBucketUpperBound(i), mMax.get());
+            }
+        }
+        return mMax.get();
+    }
+
+    /**
+     * Determines the bucket of a value. Values below twice the sub bucket count have a bucket each, after which each
+     * power of two is split into the same amount of buckets.
+     *
+     * @param value
+     *            The non-negative value
+     *
+     * @return The index of the bucket
+     */
+    private static int getBucket(final long value) {
+        final int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        if (magnitude <= SUB_BUCKET_BITS) {
+            return (int) value;
+        }
+
+        final int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKET_COUNT + (int) ((value >>> shift) - SUB_BUCKET_COUNT);
+    }
+
+    /**
+     * @param bucket
+     *            The index of the bucket
+     *
+     * @return The highest value that falls in the bucket
+     */
+    private static long getBucketUpperBound(final int bucket) {
+        if (bucket < 2 * SUB_BUCKET_COUNT) {
+            return bucket;
+        }
+
+        final int shift = bucket / SUB_BUCKET_COUNT - 1;
+        final long lowerBound = (long) (bucket % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT) << shift;
+        return lowerBound + (1L << shift) - 1;
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.tvkdevelopment.diu.metrics;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A static registry of the counters and histograms that the updater records. Metrics are created on first use and
+ * should be looked up once and kept in a field, so that recording doesn't need to go through the registry. Names are
+ * dot-separated, and histograms of durations are recorded in microseconds with names ending in ".us".
+ */
+public class Metrics {
+
+    /** The percentiles reported for each histogram */
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+    /** The counters by name */
+    private static final ConcurrentNavigableMap<String, LongAdder> sCounters = new ConcurrentSkipListMap<>();
+    /** The histograms by name */
+    private static final ConcurrentNavigableMap<String, Histogram> sHistograms = new ConcurrentSkipListMap<>();
+
+    /**
+     * Gets a counter, creating it if it doesn't exist yet.
+     *
+     * @param name
+     *            The name of the counter
+     *
+     * @return The counter
+     */
+    public static LongAdder counter(final String name) {
+        return sCounters.computeIfAbsent(name, key -> new LongAdder());
+    }
+
+    /**
+     * Gets a histogram, creating it if it doesn't exist yet.
+     *
+     * @param name
+     *            The name of the histogram
+     *
+     * @return The histogram
+     */
+    public static Histogram histogram(final String name) {
+        return sHistograms.computeIfAbsent(name, key -> new Histogram());
+    }
+
+    /**
+     * @return All counters by name, sorted by name
+     */
+    static Map<String, LongAdder> getCounters() {
+        return Collections.unmodifiableMap(sCounters);
+    }
+
+    /**
+     * @return All histograms by name, sorted by name
+     */
+    static Map<String, Histogram> getHistograms() {
+        return Collections.unmodifiableMap(sHistograms);
+    }
+
+    /**
+     * Formats all metrics as text with a line per metric. Counters show their value and histograms show their count,
+     * mean, percentiles and maximum.
+     *
+     * @return The formatted metrics
+     */
+    public static String format() {
+        final StringBuilder result = new StringBuilder();
+        for (final Map.Entry<String, LongAdder> counter : sCounters.entrySet()) {
+            result.append(counter.getKey()).append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        for (final Map.Entry<String, Histogram> entry : sHistograms.entrySet()) {
+            final Histogram histogram = entry.getValue();
+            result.append(entry.getKey()).append(" count=").append(histogram.getCount()).append(" mean=").append(
+                    String.format(Locale.ROOT, "%.1f", histogram.getMean()));
+            for (final double percentile : PERCENTILES) {
+                result.append(" p").append(formatPercentile(percentile)).append('=').append(histogram.getPercentile(
+                        percentile));
+            }
+            result.append(" max=").append(histogram.getMax()).append('\n');
+        }
+        return result.toString();
+    }
+
+    /**
+     * @param percentile
+     *            The percentage between 0 and 100
+     *
+     * @return The percentile without trailing zeroes, such as "99" or "99.9"
+     */
+    static String formatPercentile(final double percentile) {
+        return (percentile == Math.rint(percentile) ? Long.toString((long) percentile) : Double.toString(percentile));
+    }
+
+    /**
+     * @return The percentiles reported for each histogram
+     */
+    static double[] getPercentiles() {
+        return PERCENTILES.clone();
+    }
+
+    /**
+     * This is a static-only class.
+     */
+    private Metrics() {}
+
+}
@@ -0,0 +1,204 @@
+package com.tvkdevelopment.diu.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.ObjectName;
+
+import com.sun.net.httpserver.HttpServer;
+import com.tvkdevelopment.diu.log.Log;
+
+/**
+ * Exposes the metrics over JMX and, when the diu.metrics.port system property is set, as text over HTTP on the local
+ * machine at /metrics.
+ */
+public class MetricsExporter {
+
+    /** The system property holding the local port of the HTTP metrics endpoint, which enables it when set */
+    private static final String PROPERTY_PORT = "diu.metrics.port";
+    /** The name under which the metrics are registered with JMX */
+    private static final String OBJECT_NAME = "com.tvkdevelopment.diu:type=Metrics";
+
+    /** Whether or not the metrics are being exported */
+    private static boolean sStarted = false;
+
+    /**
+     * Starts exporting the metrics. Any calls after the first are ignored. Failing to export the metrics is reported
+     * but doesn't stop the updater.
+     */
+    public static synchronized void start() {
+        if (sStarted) {
+            return;
+        }
+        sStarted = true;
+
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), new ObjectName(OBJECT_NAME));
+        } catch (final JMException ex) {
+            Log.warn("metrics", "Couldn't register metrics with JMX: " + ex.getMessage());
+        }
+
+        final Integer port = Integer.getInteger(PROPERTY_PORT);
+        if (port != null) {
+            try {
+                final HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                        port), 0);
+                server.createContext("/metrics", exchange -> {
+                    final byte[] body = Metrics.format().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (final OutputStream output = exchange.getResponseBody()) {
+                        output.write(body);
+                    }
+                });
+                server.start();
+                Log.info("metrics", "Metrics available at http://127.0.0.1:" + server.getAddress().getPort()
+                        + "/metrics");
+            } catch (final IOException ex) {
+                Log.warn("metrics", "Couldn't start the metrics endpoint: " + ex.getMessage());
+            }
+        }
+    }
+
+    /**
+     * This is a static-only class.
+     */
+    private MetricsExporter() {}
+
+    /**
+     * The JMX view of the metrics. Counters are exposed as an attribute with their name and histograms as an
+     * attribute per statistic, such as "name.count" and "name.p99". The attributes follow the metrics as they are
+     * created.
+     */
+    private static class MetricsBean implements DynamicMBean {
+
+        @Override
+        public Object getAttribute(final String attribute) throws AttributeNotFoundException {
+            final LongAdder counter = Metrics.getCounters().get(attribute);
+            if (counter != null) {
+                return counter.sum();
+            }
+
+            Histogram histogram = getHistogram(attribute, ".count");
+            if (histogram != null) {
+                return histogram.getCount();
+            }
+            histogram = getHistogram(attribute, ".mean");
+            if (histogram != null) {
+                return histogram.getMean();
+            }
+            histogram = getHistogram(attribute, ".max");
+            if (histogram != null) {
+                return histogram.getMax();
+            }
+            for (final double percentile : Metrics.getPercentiles()) {
+                histogram = getHistogram(attribute, ".p" + Metrics.formatPercentile(percentile));
+                if (histogram != null) {
+                    return histogram.getPercentile(percentile);
+                }
+            }
+
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        @Override
+        public AttributeList getAttributes(final String[] attributes) {
+            final AttributeList result = new AttributeList();
+            for (final String attribute : attributes) {
+                try {
+                    result.add(new Attribute(attribute, getAttribute(attribute)));
+                } catch (final AttributeNotFoundException ex) {
+                    // Left out as specified by DynamicMBean
+                }
+            }
+            return result;
+        }
+
+        @Override
+        public void setAttribute(final Attribute attribute) throws AttributeNotFoundException {
+            throw new AttributeNotFoundException("Metrics are read-only");
+        }
+
+        @Override
+        public AttributeList setAttributes(final AttributeList attributes) {
+            return new AttributeList();
+        }
+
+        @Override
+        public Object invoke(final String actionName, final Object[] params, final String[] signature) {
+            throw new UnsupportedOperationException(actionName);
+        }
+
+        @Override
+        public MBeanInfo getMBeanInfo() {
+            final List<MBeanAttributeInfo> attributes = new ArrayList<>();
+            for (final String name : Metrics.getCounters().keySet()) {
+                attributes.add(createAttributeInfo(name, "long", "Counter"));
+            }
+            for (final Map.Entry<String, Histogram> histogram : Metrics.getHistograms().entrySet()) {
+                final String name = histogram.getKey();
+                attributes.add(createAttributeInfo(name + ".count", "long", "Amount of recorded values"));
+                attributes.add(createAttributeInfo(name + ".mean", "double", "Mean of the recorded values"));
+                for (final double percentile : Metrics.getPercentiles()) {
+                    final String label = Metrics.formatPercentile(percentile);
+                    attributes.add(createAttributeInfo(name + ".p" + label, "long", label + "th percentile"));
+                }
+                attributes.add(createAttributeInfo(name + ".max", "long", "Highest recorded value"));
+            }
+
+            return new MBeanInfo(getClass().getName(), "Dopelives Info Updater metrics", attributes.toArray(
+                    new MBeanAttributeInfo[attributes.size()]), null, null, null);
+        }
+
+        /**
+         * Finds the histogram that an attribute describes a statistic of.
+         *
+         * @param attribute
+         *            The name of the attribute
+         * @param suffix
+         *            The suffix of the statistic, such as ".count"
+         *
+         * @return The histogram or null if the attribute doesn't have the suffix or there is no such histogram
+         */
+        private static Histogram getHistogram(final String attribute, final String suffix) {
+            if (!attribute.endsWith(suffix)) {
+                return null;
+            }
+            return Metrics.getHistograms().get(attribute.substring(0, attribute.length() - suffix.length()));
+        }
+
+        /**
+         * Creates the description of a read-only attribute.
+         *
+         * @param name
+         *            The name of the attribute
+         * @param type
+         *            The type of the attribute
+         * @param description
+         *            The description of the attribute
+         *
+         * @return The attribute description
+         */
+        private static MBeanAttributeInfo createAttributeInfo(final String name, final String type,
+                final String description) {
+            return new MBeanAttributeInfo(name, type, description, true, false, false);
+        }
+
+    }
+
+}
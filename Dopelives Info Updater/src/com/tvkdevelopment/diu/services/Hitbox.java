@@ -1,44 +1,246 @@
 package com.tvkdevelopment.diu.services;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Pattern;
 
+import org.json.JSONArray;
+import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
 
 import com.tvkdevelopment.diu.Params;
+import com.tvkdevelopment.diu.catalog.GameCatalog;
+import com.tvkdevelopment.diu.journal.Journal;
+import com.tvkdevelopment.diu.journal.JournalRecord;
+import com.tvkdevelopment.diu.journal.RecordType;
+import com.tvkdevelopment.diu.journal.RecordedResponses;
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Metrics;
 import com.tvkdevelopment.diu.util.HttpHelper;
+import com.tvkdevelopment.diu.util.JsonReader;
+import com.tvkdevelopment.diu.util.RequestScheduler.Priority;
 
 /**
- * A class for communication with Hitbox.
+ * A class for communication with Hitbox. Game searches are shared by all channels, while an instance reads and updates
+ * a single channel.
  */
 public class Hitbox {
 
-    /** The HTTP helper to use for requests */
-    private static final HttpHelper sHttpHelper = new HttpHelper();
+    /** The base URL of the API, which can be overridden with the diu.hitbox.url system property */
+    private static final String API_URL = System.getProperty("diu.hitbox.url", "http://api.hitbox.tv");
+
+    /** The time in nanoseconds after which the cached media data is no longer used for updates */
+    private static final long MEDIA_MAX_AGE = TimeUnit.MINUTES.toNanos(10);
+    /** The time in nanoseconds after which the background refresh retrieves the media data again */
+    private static final long MEDIA_REFRESH_AGE = TimeUnit.MINUTES.toNanos(4);
+    /** The time in milliseconds between checks whether the media data needs to be refreshed */
+    private static final long MEDIA_REFRESH_INTERVAL = 60 * 1000;
+    /** The amount of games to download per request for the catalog */
+    private static final int CATALOG_PAGE_SIZE = 100;
+    /** The maximum amount of games to keep in the catalog */
+    private static final int CATALOG_MAX_GAMES = 10000;
+    /** The file that the catalog is snapshotted to */
+    private static final String CATALOG_FILE = "hitbox-catalog.json";
+
+    /** The HTTP helper to use for game searches */
+    private static final HttpHelper sSearchHttpHelper = new HttpHelper(null, "hitbox.search", Priority.SEARCH);
+    /** The HTTP helper to use for downloading the catalog */
+    private static final HttpHelper sCatalogHttpHelper = new HttpHelper(null, "hitbox.catalog",
+            Priority.BACKGROUND);
+    /** The HTTP helper to use for retrieving the media data */
+    private static final HttpHelper sMediaHttpHelper = new HttpHelper(null, "hitbox.media");
+    /** The HTTP helper to use for updating the media data */
+    private static final HttpHelper sUpdateHttpHelper = new HttpHelper(null, "hitbox.update", Priority.UPDATE);
+    /** The JSON readers to parse responses with, reused per thread */
+    private static final ThreadLocal<JsonReader> sJsonReaders = ThreadLocal.withInitial(JsonReader::new);
+
+    /** The amount of updates that could use the cached media data */
+    private static final LongAdder sMediaCacheHits = Metrics.counter("hitbox.media.cache.hits");
+    /** The amount of updates that had to retrieve the media data first */
+    private static final LongAdder sMediaCacheMisses = Metrics.counter("hitbox.media.cache.misses");
+    /** The amount of updates based on cached media data that Hitbox didn't accept */
+    private static final LongAdder sMediaCacheRejections = Metrics.counter("hitbox.media.cache.rejections");
+
+    /** The scheduler refreshing the cached media data of all channels */
+    private static final ScheduledExecutorService sRefreshScheduler = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                final Thread thread = new Thread(runnable, "Hitbox media refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
 
     /** A filter used for replacing spaces with dashes */
     private static final Pattern sSpaceFilter = Pattern.compile(" ");
     /** A filter used for removing invalid characters */
     private static final Pattern sInvalidCharacterFilter = Pattern.compile("[^a-z0-9 -]");
 
+    /** The local copy of the most popular games, which is consulted before searching */
+    private static final GameCatalog sCatalog = new GameCatalog("Hitbox", new File(CATALOG_FILE),
+            Hitbox::downloadCatalog);
+
+    /** The URL of the media data, used for reading and updating Hitbox info */
+    private final String mMediaUrl;
+
+    /** The lock guarding the cached media data */
+    private final Object mMediaLock = new Object();
+    /** The last media data that Hitbox sent, kept as text so each update can patch its own copy, or null if none */
+    private String mMedia;
+    /** The time at which the cached media data was requested as returned by {@link System#nanoTime()} */
+    private long mMediaTime;
+
+    /**
+     * Starts downloading the catalog of popular games in the background.
+     */
+    public static void startCatalogRefresh() {
+        sCatalog.startRefresh();
+    }
+
     /**
-     * Searches a game on Hitbox.
+     * Searches a game on Hitbox. The catalog is consulted first, only searching on Hitbox if it doesn't know the game.
      *
      * @param query
      *            The game to search for
      *
      * @return The category ID of the game according to Hitbox or a default ID if it wasn't found
+     *
+     * @throws IOException
+     *             When the search failed or timed out, as opposed to Hitbox not knowing the game
      */
-    public static String searchGame(final String query) {
-        final String result = sHttpHelper.get("http://api.hitbox.tv/game/" + HttpHelper.encode(cleanupQuery(query))
-                + "?seo=true");
-        if (result != null) {
-            final JSONObject game = new JSONObject(result).optJSONObject("category");
-            if (game != null) {
-                return game.getString("category_id");
+    public static String searchGame(final String query) throws IOException {
+        final RecordedResponses recorded = RecordedResponses.getActive();
+        if (recorded != null) {
+            final JournalRecord response = recorded.find(RecordType.HITBOX_SEARCH, query);
+            if (response != null && response.getField(2) != null) {
+                throw new IOException("Recorded failure: " + response.getField(2));
             }
+            return (response != null ? response.getField(1) : Params.HITBOX_DEFAULT_GAME);
+        }
+
+        final long startTime = System.nanoTime();
+        final String seoKey = cleanupQuery(query);
+        String result = sCatalog.get(seoKey);
+        if (result == null) {
+            try {
+                result = sSearchHttpHelper.fetch(API_URL + "/game/" + HttpHelper.encode(seoKey) + "?seo=true",
+                        input -> readCategoryId(sJsonReaders.get().reset(input)));
+            } catch (final IOException ex) {
+                // A search that was cancelled because it's no longer needed didn't fail
+                if (!Thread.currentThread().isInterrupted()) {
+                    Journal.searchFailed(RecordType.HITBOX_SEARCH, query, ex.getClass().getSimpleName(), startTime);
+                }
+                throw ex;
+            }
+        }
+        final String game = (result != null ? result : Params.HITBOX_DEFAULT_GAME);
+        Journal.search(RecordType.HITBOX_SEARCH, query, game, startTime);
+        return game;
+    }
+
+    /**
+     * Reads the category ID from a game, skipping all other info.
+     *
+     * @param reader
+     *            The reader positioned at the start of the game
+     *
+     * @return The category ID or null if the game wasn't found
+     *
+     * @throws IOException
+     *             When the game couldn't be read
+     */
+    private static String readCategoryId(final JsonReader reader) throws IOException {
+        reader.beginObject();
+        if (!reader.skipToName("category") || reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+            return null;
+        }
+
+        reader.beginObject();
+        if (!reader.skipToName("category_id")) {
+            return null;
         }
+        return reader.nextString();
+    }
 
-        return Params.HITBOX_DEFAULT_GAME;
+    /**
+     * Downloads the most popular games for the catalog.
+     *
+     * @return The category IDs by SEO key from most to least popular or null if the games couldn't be downloaded
+     */
+    private static Map<String, String> downloadCatalog() {
+        final Map<String, String> games = new LinkedHashMap<>();
+        for (int offset = 0; offset < CATALOG_MAX_GAMES; offset += CATALOG_PAGE_SIZE) {
+            final Integer count = sCatalogHttpHelper.get(API_URL + "/games?limit=" + CATALOG_PAGE_SIZE + "&offset="
+                    + offset, input -> readCategories(sJsonReaders.get().reset(input), games));
+            if (count == null) {
+                return null;
+            }
+            if (count < CATALOG_PAGE_SIZE) {
+                break;
+            }
+        }
+        return games;
+    }
+
+    /**
+     * Reads a page of games, adding their category IDs to the catalog.
+     *
+     * @param reader
+     *            The reader positioned at the start of the games
+     * @param games
+     *            The category IDs by SEO key to add the games to
+     *
+     * @return The amount of games on the page
+     *
+     * @throws IOException
+     *             When the games couldn't be read
+     */
+    private static int readCategories(final JsonReader reader, final Map<String, String> games) throws IOException {
+        reader.beginObject();
+        if (!reader.skipToName("categories") || reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+            return 0;
+        }
+
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String id = null;
+            String name = null;
+            String seoKey = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String field = reader.nextName();
+                if (reader.peek() != JsonReader.Token.STRING) {
+                    reader.skipValue();
+                } else if (field.equals("category_id")) {
+                    id = reader.nextString();
+                } else if (field.equals("category_name")) {
+                    name = reader.nextString();
+                } else if (field.equals("category_seo_key")) {
+                    seoKey = reader.nextString();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (seoKey == null && name != null) {
+                seoKey = cleanupQuery(name);
+            }
+            if (id != null && seoKey != null) {
+                games.putIfAbsent(seoKey, id);
+            }
+            ++count;
+        }
+        return count;
     }
 
     /**
@@ -49,40 +251,236 @@ public class Hitbox {
      *
      * @return The cleaned query
      */
-    private static String cleanupQuery(final String query) {
+    static String cleanupQuery(final String query) {
         return sSpaceFilter.matcher(sInvalidCharacterFilter.matcher(query.toLowerCase()).replaceAll(""))
                 .replaceAll("-");
     }
 
     /**
-     * Updates the status and game on Hitbox.
+     * Creates a new connection to a Hitbox channel.
      *
-     * @param status
-     *            The new status
-     * @param game
-     *            The new game in a full name format
+     * @param channel
+     *            The Hitbox channel to update
+     * @param token
+     *            The authentication token for the channel
      */
-    public static void updateInfo(final String status, final String game) {
-        final String url = "http://api.hitbox.tv/media/live/" + Params.HITBOX_CHANNEL + "/list?authToken="
-                + Params.HITBOX_TOKEN
+    public Hitbox(final String channel, final String token) {
+        mMediaUrl = API_URL + "/media/live/" + HttpHelper.encode(channel) + "/list?authToken=" + token
                 + "&filter=recent&hiddenOnly=false&limit=1&nocache=true&publicOnly=false&yt=false";
+    }
 
-        // Retrieve the media data
-        final String mediaData = sHttpHelper.get(url);
-        if (mediaData == null) {
-            System.out.println("Couldn't update Hitbox");
-            return;
+    /**
+     * Starts refreshing the cached media data in the background, so that updates can usually be sent without
+     * retrieving the media data first.
+     *
+     * @param prefetch
+     *            True to retrieve the media data right away, false to only keep it fresh once an update retrieved it
+     */
+    public void startMediaRefresh(final boolean prefetch) {
+        sRefreshScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (getCachedMedia(MEDIA_REFRESH_AGE) == null && (prefetch || hasMedia())) {
+                    fetchMedia();
+                }
+            } catch (final Throwable ex) {
+                // Catch EVERYTHING to try to keep running
+                Log.error("hitbox", "Hitbox media refresh exception/error", ex);
+            }
+        }, 0, MEDIA_REFRESH_INTERVAL, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return Whether or not media data has been cached, regardless of its age
+     */
+    private boolean hasMedia() {
+        synchronized (mMediaLock) {
+            return (mMedia != null);
         }
-        final JSONObject json = new JSONObject(mediaData);
+    }
 
-        // Update the status and game
-        final JSONObject livestreamInfo = json.getJSONArray("livestream").getJSONObject(0);
-        livestreamInfo.put("media_status", status);
-        livestreamInfo.put("media_category_id", game);
+    /**
+     * Reads the status and game that the channel currently shows.
+     *
+     * @return The state of the channel or null if it couldn't be read
+     */
+    public PlatformState readState() {
+        final JSONObject media = fetchMedia();
+        return (media != null ? getState(media) : null);
+    }
 
-        // Send the update media data
-        sHttpHelper.put(url, json.toString());
-        System.out.println("Hitbox updated");
+    /**
+     * Updates the status and game on Hitbox. The cached media data is patched and sent right away when it's recent
+     * enough, only retrieving the media data first when there is none or when Hitbox didn't accept the update.
+     *
+     * @param state
+     *            The state to show, with the game as category ID
+     *
+     * @return The state of the channel after the update or null if the update failed
+     */
+    public PlatformState writeState(final PlatformState state) {
+        final JSONObject cached = getCachedMedia(MEDIA_MAX_AGE);
+        if (cached != null) {
+            sMediaCacheHits.increment();
+            final JSONObject response = putMedia(cached, state);
+            if (response == null) {
+                // The request itself failed, which retrieving the media data wouldn't solve
+                return null;
+            }
+
+            final PlatformState confirmed = confirmUpdate(response);
+            if (state.equals(confirmed)) {
+                return confirmed;
+            }
+            sMediaCacheRejections.increment();
+            Log.warn("hitbox", "Hitbox didn't accept the cached media data, retrieving it again");
+            clearCachedMedia();
+        } else {
+            sMediaCacheMisses.increment();
+        }
+
+        // Retrieve the media data, which is sent back as a whole so needs to be parsed fully
+        final JSONObject media = fetchMedia();
+        if (media == null) {
+            return null;
+        }
+        final JSONObject response = putMedia(media, state);
+        return (response != null ? confirmUpdate(response) : null);
+    }
+
+    /**
+     * Patches the status and game into media data and sends it to Hitbox, caching the media data that Hitbox sends
+     * back.
+     *
+     * @param media
+     *            The media data to patch, which is modified
+     * @param state
+     *            The state to show, with the game as category ID
+     *
+     * @return The response of Hitbox or null if the update couldn't be sent
+     */
+    private JSONObject putMedia(final JSONObject media, final PlatformState state) {
+        final JSONArray livestream = media.optJSONArray("livestream");
+        final JSONObject livestreamInfo = (livestream != null ? livestream.optJSONObject(0) : null);
+        if (livestreamInfo == null) {
+            Log.warn("hitbox", "Hitbox media data without livestream");
+            return null;
+        }
+        livestreamInfo.put("media_status", state.getStatus());
+        livestreamInfo.put("media_category_id", state.getGame());
+
+        final long requestTime = System.nanoTime();
+        final JSONObject response = sUpdateHttpHelper.put(mMediaUrl, media.toString(), Hitbox::readJson);
+        if (response != null && getState(response) != null) {
+            cacheMedia(response, requestTime);
+        }
+        return response;
+    }
+
+    /**
+     * Determines the state of the channel after an update.
+     *
+     * @param response
+     *            The response of Hitbox to the update
+     *
+     * @return The state in the media data that was sent back or the state read again if there is none
+     */
+    private PlatformState confirmUpdate(final JSONObject response) {
+        final PlatformState confirmed = getState(response);
+        return (confirmed != null ? confirmed : readState());
+    }
+
+    /**
+     * Retrieves the media data and caches it.
+     *
+     * @return The media data or null if it couldn't be retrieved
+     */
+    private JSONObject fetchMedia() {
+        final long requestTime = System.nanoTime();
+        final JSONObject media = sMediaHttpHelper.get(mMediaUrl, Hitbox::readJson);
+        if (media != null && getState(media) != null) {
+            cacheMedia(media, requestTime);
+        }
+        return media;
+    }
+
+    /**
+     * Caches media data unless newer media data has been cached in the meantime.
+     *
+     * @param media
+     *            The media data to cache
+     * @param requestTime
+     *            The time at which the media data was requested as returned by {@link System#nanoTime()}
+     */
+    private void cacheMedia(final JSONObject media, final long requestTime) {
+        final String text = media.toString();
+        synchronized (mMediaLock) {
+            if (mMedia == null || requestTime - mMediaTime > 0) {
+                mMedia = text;
+                mMediaTime = requestTime;
+            }
+        }
+    }
+
+    /**
+     * Gets a copy of the cached media data that can be patched.
+     *
+     * @param maxAge
+     *            The time in nanoseconds after which the cached media data is too old to use
+     *
+     * @return The cached media data or null if there is none that is recent enough
+     */
+    private JSONObject getCachedMedia(final long maxAge) {
+        final String media;
+        synchronized (mMediaLock) {
+            if (mMedia == null || System.nanoTime() - mMediaTime > maxAge) {
+                return null;
+            }
+            media = mMedia;
+        }
+        return new JSONObject(media);
+    }
+
+    /**
+     * Removes the cached media data, so that the next update retrieves it first.
+     */
+    private void clearCachedMedia() {
+        synchronized (mMediaLock) {
+            mMedia = null;
+        }
+    }
+
+    /**
+     * Reads a JSON object from a response body.
+     *
+     * @param input
+     *            The response body
+     *
+     * @return The JSON object or an empty object if the body isn't a JSON object
+     */
+    private static JSONObject readJson(final InputStream input) {
+        try {
+            return new JSONObject(new JSONTokener(new InputStreamReader(input, StandardCharsets.UTF_8)));
+        } catch (final JSONException ex) {
+            return new JSONObject();
+        }
+    }
+
+    /**
+     * Gets the status and game from media data.
+     *
+     * @param media
+     *            The media data
+     *
+     * @return The state of the channel or null if the media data has no livestream
+     */
+    private static PlatformState getState(final JSONObject media) {
+        final JSONArray livestream = media.optJSONArray("livestream");
+        final JSONObject livestreamInfo = (livestream != null ? livestream.optJSONObject(0) : null);
+        if (livestreamInfo == null) {
+            return null;
+        }
+        return new PlatformState(livestreamInfo.optString("media_status"), livestreamInfo.optString(
+                "media_category_id"));
     }
 
     /**
@@ -96,7 +494,8 @@ public class Hitbox {
      * @return The authentication token
      */
     public static String requestToken(final String login, final String password) {
-        return sHttpHelper.post("http://api.hitbox.tv/auth/token", "login=" + login + "&pass=" + password);
+        return new HttpHelper(null, "hitbox.token").post(API_URL + "/auth/token", "login=" + login + "&pass="
+                + password);
     }
 
 }
@@ -0,0 +1,69 @@
+package com.tvkdevelopment.diu.services;
+
+/**
+ * The status and game shown on a platform. The game is in whatever form the platform uses, such as the full name for
+ * Twitch or the category ID for Hitbox.
+ */
+public class PlatformState {
+
+    /** The status */
+    private final String mStatus;
+    /** The game */
+    private final String mGame;
+
+    /**
+     * Creates a new platform state.
+     *
+     * @param status
+     *            The status
+     * @param game
+     *            The game, where a missing game is represented by an empty string
+     */
+    public PlatformState(final String status, final String game) {
+        mStatus = (status != null ? status : "");
+        mGame = (game != null ? game : "");
+    }
+
+    /**
+     * @return The status
+     */
+    public String getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * @return The game, which is an empty string if there is none
+     */
+    public String getGame() {
+        return mGame;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean equals(final Object other) {
+        if (!(other instanceof PlatformState)) {
+            return false;
+        }
+        final PlatformState state = (PlatformState) other;
+        return mStatus.equals(state.mStatus) && mGame.equals(state.mGame);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int hashCode() {
+        return 31 * mStatus.hashCode() + mGame.hashCode();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString() {
+        return mStatus + " / " + mGame;
+    }
+
+}
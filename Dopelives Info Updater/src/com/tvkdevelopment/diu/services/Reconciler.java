@@ -0,0 +1,352 @@
+package com.tvkdevelopment.diu.services;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import com.tvkdevelopment.diu.journal.Journal;
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Histogram;
+import com.tvkdevelopment.diu.metrics.Metrics;
+import com.tvkdevelopment.diu.util.AdaptiveInterval;
+
+/**
+ * Keeps a platform showing the desired state. The last state that the platform confirmed is remembered, so the
+ * platform is only written to when the desired state differs from it. Failed writes are retried with exponential
+ * backoff and jitter, and the platform is re-read periodically so that changes made elsewhere get corrected. All
+ * reconcilers of a platform share a small pool of threads, while the runs of a single reconciler never overlap. Each
+ * platform has its own pool, so a platform that hangs can't delay the updates of another.
+ */
+public class Reconciler {
+
+    /** The time in milliseconds after which a confirmed state is read back from the platform again */
+    private static final long VERIFY_INTERVAL = 5 * 60 * 1000;
+    /** The shortest time in milliseconds to wait before retrying a failed write */
+    private static final long MIN_RETRY_DELAY = 1000;
+    /** The time in milliseconds to start backing off from when retrying a failed write */
+    private static final long BASE_RETRY_DELAY = 2 * 1000;
+    /** The longest time in milliseconds to wait before retrying a failed write */
+    private static final long MAX_RETRY_DELAY = 5 * 60 * 1000;
+    /** The amount of threads per platform, which can be overridden with diu.reconcile.threads */
+    private static final int THREADS = Integer.getInteger("diu.reconcile.threads", 4);
+
+    /** The pools performing the reads and writes by platform name */
+    private static final ConcurrentMap<String, ScheduledExecutorService> sSchedulers = new ConcurrentHashMap<>();
+
+    /** The name of the platform as shown in the output */
+    private final String mName;
+    /** The name of the channel as shown in the output */
+    private final String mChannel;
+    /** The prefix of each line of output, naming the channel */
+    private final String mLogPrefix;
+    /** The pool of the platform performing the reads and writes */
+    private final ScheduledExecutorService mScheduler;
+    /** Reads the current state from the platform, returning null if it couldn't be read */
+    private final Supplier<PlatformState> mReader;
+    /** Writes a state to the platform, returning the state it confirmed or null if the write failed */
+    private final UnaryOperator<PlatformState> mWriter;
+    /** The listener to inform of changes to the desired state and whether it's applied or null if there is none */
+    private volatile Listener mListener;
+
+    /** The delay before retrying a failed write */
+    private final AdaptiveInterval mRetryDelay = new AdaptiveInterval(MIN_RETRY_DELAY, BASE_RETRY_DELAY,
+            MAX_RETRY_DELAY);
+
+    /** The amount of writes to the platform */
+    private final LongAdder mWrites;
+    /** The amount of desired states that the platform already showed */
+    private final LongAdder mSkips;
+    /** The amount of failed writes */
+    private final LongAdder mFailures;
+    /** The amount of times the platform was found to have been changed elsewhere */
+    private final LongAdder mCorrections;
+    /** The amount of writes needed per desired state */
+    private final Histogram mAttempts;
+    /** The time in microseconds from a change until the platform confirmed the desired state */
+    private final Histogram mLatency;
+
+    /** The state that the platform should show or null if there is none yet */
+    private PlatformState mDesired;
+    /** The time at which the desired state changed as returned by {@link System#nanoTime()} */
+    private long mDesiredTime;
+    /** The amount of times the desired state was set, used to tell if it changed during a run */
+    private long mGeneration = 0;
+    /** The next scheduled run or null if there is none */
+    private ScheduledFuture<?> mNextRun;
+    /** Whether or not a run is in progress */
+    private boolean mRunning = false;
+
+    /** The state that the platform last confirmed or null if it's unknown, only accessed during a run */
+    private PlatformState mConfirmed;
+    /** The generation that the writes are being counted for, only accessed during a run */
+    private long mAttemptGeneration = -1;
+    /** The amount of writes for the current generation, only accessed during a run */
+    private int mAttemptCount;
+    /** Whether the platform confirmed the current generation, only accessed during a run */
+    private boolean mApplied;
+
+    /**
+     * Creates a new reconciler.
+     *
+     * @param name
+     *            The name of the platform as shown in the output, also used for the metrics which are shared by the
+     *            reconcilers of all channels
+     * @param channel
+     *            The name of the channel as shown in the output
+     * @param reader
+     *            Reads the current state from the platform, returning null if it couldn't be read
+     * @param writer
+     *            Writes a state to the platform, returning the state it confirmed or null if the write failed
+     */
+    public Reconciler(final String name, final String channel, final Supplier<PlatformState> reader,
+            final UnaryOperator<PlatformState> writer) {
+        mName = name;
+        mChannel = channel;
+        mLogPrefix = "[" + channel + "] ";
+        mScheduler = sSchedulers.computeIfAbsent(name, key -> Executors.newScheduledThreadPool(THREADS, runnable -> {
+            final Thread thread = new Thread(runnable, name + " reconciler");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        mReader = reader;
+        mWriter = writer;
+
+        final String metricsName = name.toLowerCase(Locale.ROOT);
+        mWrites = Metrics.counter("reconcile." + metricsName + ".writes");
+        mSkips = Metrics.counter("reconcile." + metricsName + ".skips");
+        mFailures = Metrics.counter("reconcile." + metricsName + ".failures");
+        mCorrections = Metrics.counter("reconcile." + metricsName + ".corrections");
+        mAttempts = Metrics.histogram("reconcile." + metricsName + ".attempts");
+        mLatency = Metrics.histogram("update." + metricsName + ".latency.us");
+    }
+
+    /**
+     * Sets the listener to inform of changes to the desired state and whether it's applied.
+     *
+     * @param listener
+     *            The listener or null to stop informing one
+     */
+    public void setListener(final Listener listener) {
+        mListener = listener;
+    }
+
+    /**
+     * Restores the state from a previous run before any state has been set. A state that the platform confirmed is
+     * trusted until the next periodic verification, so a restart doesn't touch the platform. Any other state is
+     * reconciled right away.
+     *
+     * @param state
+     *            The state that the platform should show
+     * @param applied
+     *            Whether or not the platform confirmed that it shows the state
+     */
+    public synchronized void restore(final PlatformState state, final boolean applied) {
+        mDesired = state;
+        mDesiredTime = System.nanoTime();
+        ++mGeneration;
+        if (applied) {
+            // Runs only start from the scheduler, so the run fields can't be in use yet
+            mConfirmed = state;
+            mAttemptGeneration = mGeneration;
+            mAttemptCount = 0;
+            mApplied = true;
+            schedule(true, VERIFY_INTERVAL);
+        } else {
+            schedule(false, 0);
+        }
+    }
+
+    /**
+     * Sets the state that the platform should show and reconciles it right away, cancelling any pending retry.
+     *
+     * @param state
+     *            The state that the platform should show
+     * @param changeTime
+     *            The time at which the state changed as returned by {@link System#nanoTime()}
+     */
+    public synchronized void setDesired(final PlatformState state, final long changeTime) {
+        mDesired = state;
+        mDesiredTime = changeTime;
+        ++mGeneration;
+        Journal.desired(mChannel, mName, state);
+        notifyListener(state, false);
+        schedule(false, 0);
+    }
+
+    /**
+     * Schedules the next run, replacing the scheduled run if there is one.
+     *
+     * @param verify
+     *            True to read the platform before comparing, false to trust the last confirmed state
+     * @param delay
+     *            The time in milliseconds until the run
+     */
+    private synchronized void schedule(final boolean verify, final long delay) {
+        if (mNextRun != null) {
+            mNextRun.cancel(false);
+        }
+        mNextRun = mScheduler.schedule(() -> reconcile(verify), delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Compares the desired state to the platform and writes it if they differ, then schedules the next run.
+     *
+     * @param verify
+     *            True to read the platform before comparing, false to trust the last confirmed state
+     */
+    private void reconcile(final boolean verify) {
+        final PlatformState desired;
+        final long desiredTime;
+        final long generation;
+        synchronized (this) {
+            // A run that was scheduled while another was in progress is replaced once that one is done
+            if (mRunning) {
+                return;
+            }
+            mRunning = true;
+            desired = mDesired;
+            desiredTime = mDesiredTime;
+            generation = mGeneration;
+        }
+        if (desired == null) {
+            synchronized (this) {
+                mRunning = false;
+            }
+            return;
+        }
+        if (generation != mAttemptGeneration) {
+            mAttemptGeneration = generation;
+            mAttemptCount = 0;
+            mApplied = false;
+        }
+
+        boolean verifyNext;
+        long delay;
+        try {
+            // Find out what the platform shows if it isn't known
+            if (verify || mConfirmed == null) {
+                final PlatformState remote = mReader.get();
+                if (verify && remote != null && !remote.equals(desired)) {
+                    mCorrections.increment();
+                    Log.info("reconcile", mLogPrefix + mName + " was changed elsewhere to " + remote);
+                }
+
+                // Keep trusting an applied state when the platform can't be read rather than writing blindly
+                if (remote != null || !mApplied) {
+                    mConfirmed = remote;
+                }
+            }
+
+            if (desired.equals(mConfirmed)) {
+                if (!mApplied) {
+                    if (mAttemptCount == 0) {
+                        mSkips.increment();
+                        Log.info("reconcile", mLogPrefix + mName + " already up to date");
+                    }
+                    onApplied(desired, desiredTime);
+                }
+                verifyNext = true;
+                delay = VERIFY_INTERVAL;
+
+            } else {
+                ++mAttemptCount;
+                mWrites.increment();
+                final long writeStart = System.nanoTime();
+                mConfirmed = mWriter.apply(desired);
+                Journal.write(mChannel, mName, desired, desired.equals(mConfirmed), writeStart);
+
+                if (desired.equals(mConfirmed)) {
+                    Log.info("reconcile", mLogPrefix + mName + " update successful");
+                    if (!mApplied) {
+                        onApplied(desired, desiredTime);
+                    } else {
+                        mRetryDelay.onChanged();
+                    }
+                    verifyNext = true;
+                    delay = VERIFY_INTERVAL;
+                } else {
+                    // The platform state is unknown after a failed write, so read it before the next attempt
+                    mConfirmed = null;
+                    mFailures.increment();
+                    verifyNext = false;
+                    delay = mRetryDelay.onFailed();
+                    Log.warn("reconcile", mLogPrefix + "Couldn't update " + mName + ", retrying in " + delay / 1000
+                            + " s");
+                }
+            }
+
+        } catch (final Throwable ex) {
+            // Catch EVERYTHING to try to keep running
+            Log.error("reconcile", mLogPrefix + mName + " reconciler exception/error", ex);
+            mConfirmed = null;
+            verifyNext = false;
+            delay = mRetryDelay.onFailed();
+        }
+
+        // Apply a desired state that was set during the run right away
+        synchronized (this) {
+            mRunning = false;
+            if (generation == mGeneration) {
+                schedule(verifyNext, delay);
+            } else {
+                schedule(false, 0);
+            }
+        }
+    }
+
+    /**
+     * Records that the platform shows the current desired state for the first time.
+     *
+     * @param desired
+     *            The desired state
+     * @param desiredTime
+     *            The time at which the desired state changed as returned by {@link System#nanoTime()}
+     */
+    private void onApplied(final PlatformState desired, final long desiredTime) {
+        mApplied = true;
+        notifyListener(desired, true);
+        mRetryDelay.onChanged();
+        mAttempts.record(mAttemptCount);
+        mLatency.recordSince(desiredTime);
+    }
+
+    /**
+     * Informs the listener of a change to the desired state or whether it's applied.
+     *
+     * @param desired
+     *            The desired state
+     * @param applied
+     *            Whether or not the platform confirmed that it shows the desired state
+     */
+    private void notifyListener(final PlatformState desired, final boolean applied) {
+        final Listener listener = mListener;
+        if (listener != null) {
+            listener.onStateChanged(desired, applied);
+        }
+    }
+
+    /**
+     * The interface for following the desired state, for example to restore it after a restart.
+     */
+    public interface Listener {
+
+        /**
+         * Called when the desired state is set and when the platform confirms showing it.
+         *
+         * @param desired
+         *            The state that the platform should show
+         * @param applied
+         *            Whether or not the platform confirmed that it shows the state
+         */
+        void onStateChanged(PlatformState desired, boolean applied);
+
+    }
+
+}
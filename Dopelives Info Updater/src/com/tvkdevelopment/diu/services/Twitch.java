@@ -1,30 +1,74 @@
 package com.tvkdevelopment.diu.services;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
 import java.util.regex.Pattern;
 
-import org.json.JSONArray;
-import org.json.JSONObject;
-
 import com.tvkdevelopment.diu.Params;
+import com.tvkdevelopment.diu.catalog.GameCatalog;
+import com.tvkdevelopment.diu.journal.Journal;
+import com.tvkdevelopment.diu.journal.JournalRecord;
+import com.tvkdevelopment.diu.journal.RecordType;
+import com.tvkdevelopment.diu.journal.RecordedResponses;
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Histogram;
+import com.tvkdevelopment.diu.metrics.Metrics;
 import com.tvkdevelopment.diu.util.HttpHelper;
+import com.tvkdevelopment.diu.util.JsonReader;
+import com.tvkdevelopment.diu.util.RequestScheduler.Priority;
 
 /**
- * A class for communication with Twitch.
+ * A class for communication with Twitch. Game searches are shared by all channels, while an instance reads and updates
+ * a single channel.
  */
 public class Twitch {
 
-    /** The maximum amount of update attempts to be performed before giving up */
-    private static final int MAX_UPDATE_ATTEMPT = 5;
+    /** The maximum amount of game searches to perform at the same time in parallel search mode */
+    private static final int SEARCH_PARALLELISM = 4;
+    /** The amount of time in milliseconds between checks whether a parallel search has been superseded */
+    private static final long SUPERSEDED_CHECK_INTERVAL = 100;
+    /** The amount of games to download per request for the catalog */
+    private static final int CATALOG_PAGE_SIZE = 100;
+    /** The maximum amount of games to keep in the catalog */
+    private static final int CATALOG_MAX_GAMES = 10000;
+    /** The file that the catalog is snapshotted to */
+    private static final String CATALOG_FILE = "twitch-catalog.json";
 
-    /** The URL used for updating Twitch info */
-    private static final String UPDATE_URL = "https://api.twitch.tv/kraken/channels/" + Params.TWITCH_CHANNEL
-            + "?oauth_token=" + Params.TWITCH_TOKEN;
+    /** The base URL of the API, which can be overridden with the diu.twitch.url system property */
+    private static final String API_URL = System.getProperty("diu.twitch.url", "https://api.twitch.tv/kraken");
 
     /** The Accept header to target the right API with */
     private static final String ACCEPT_HEADER = "application/vnd.twitchtv.v3+json";
 
-    /** The HTTP helper to use for requests */
-    private static final HttpHelper sHttpHelper = new HttpHelper(ACCEPT_HEADER);
+    /** The HTTP helper to use for game searches */
+    private static final HttpHelper sSearchHttpHelper = new HttpHelper(ACCEPT_HEADER, "twitch.search",
+            Priority.SEARCH);
+    /** The HTTP helper to use for downloading the catalog */
+    private static final HttpHelper sCatalogHttpHelper = new HttpHelper(ACCEPT_HEADER, "twitch.catalog",
+            Priority.BACKGROUND);
+    /** The HTTP helper to use for reading the channel */
+    private static final HttpHelper sReadHttpHelper = new HttpHelper(ACCEPT_HEADER, "twitch.read");
+    /** The HTTP helper to use for channel updates */
+    private static final HttpHelper sUpdateHttpHelper = new HttpHelper(ACCEPT_HEADER, "twitch.update",
+            Priority.UPDATE);
+    /** The JSON readers to parse responses with, reused per thread */
+    private static final ThreadLocal<JsonReader> sJsonReaders = ThreadLocal.withInitial(JsonReader::new);
 
     /** The filters for things that should be removed step-by-step from the query */
     private static final Pattern[] sQueryFilters = { Pattern.compile("http[^ )]+"), Pattern.compile("\\([^)]*\\)"),
@@ -35,23 +79,186 @@ public class Twitch {
     /** A filter for removing the last word */
     private static final Pattern sWordCutFilter = Pattern.compile(" [^ ]+$");
 
+    /** The executor that performs game searches in parallel search mode */
+    private static final ExecutorService sSearchExecutor = Executors.newFixedThreadPool(SEARCH_PARALLELISM,
+            runnable -> {
+                final Thread thread = new Thread(runnable, "Twitch search");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /** The amount of search options needed per game search, up to and including the one that found the game */
+    private static final Histogram sSearchSteps = Metrics.histogram("twitch.search.steps");
+    /** The amount of game searches that didn't find the game */
+    private static final LongAdder sSearchMisses = Metrics.counter("twitch.search.misses");
+
+    /** The games that Twitch would ban us for */
+    private static final Set<String> sBlacklist = new HashSet<>(Arrays.asList(Params.TWITCH_BLACKLIST));
+
+    /** The local copy of the most popular games, which is consulted before searching */
+    private static final GameCatalog sCatalog = new GameCatalog("Twitch", new File(CATALOG_FILE),
+            Twitch::downloadCatalog);
+
+    /**
+     * Whether or not all search options should be attempted in parallel instead of one after another, which is off
+     * unless enabled with the diu.twitch.parallelSearch system property as it sends every option to Twitch at once
+     */
+    private static volatile boolean sParallelSearch = Boolean.parseBoolean(System.getProperty(
+            "diu.twitch.parallelSearch", "false"));
+
+    /**
+     * The authentication token for the requests that don't belong to a channel, such as searches and the catalog,
+     * which can be set with the diu.twitch.token system property and is otherwise taken from the first channel
+     */
+    private static volatile String sApiToken = Params.TWITCH_TOKEN;
+
+    /** The URL of the channel, used for reading and updating Twitch info */
+    private final String mChannelUrl;
+
+    /**
+     * Sets the authentication token for the requests that don't belong to a channel, such as searches and the
+     * catalog.
+     *
+     * @param apiToken
+     *            The authentication token
+     */
+    public static void setApiToken(final String apiToken) {
+        sApiToken = apiToken;
+    }
+
+    /**
+     * Sets whether all search options are attempted in parallel or one after another. Both modes result in the same
+     * game, but the parallel mode only has to wait for the slowest relevant search instead of the sum of all.
+     *
+     * @param parallelSearch
+     *            True to search in parallel, false to search sequentially
+     */
+    public static void setParallelSearch(final boolean parallelSearch) {
+        sParallelSearch = parallelSearch;
+    }
+
     /**
      * Searches a game on Twitch and tries to find the best match.
      *
      * @param query
      *            The game to search for
      *
-     * @return The name of the game according to Twitch or the original query if it wasn't found
+     * @return The name of the game according to Twitch or null if it wasn't found
+     *
+     * @throws IOException
+     *             When a search failed before the game was found
      */
-    public static String searchGame(final String query) {
-        // Clean the first URL
-        String lastOption = cleanupQuery(query);
+    public static String searchGame(final String query) throws IOException {
+        return searchGame(query, () -> false);
+    }
+
+    /**
+     * Starts downloading the catalog of popular games in the background.
+     */
+    public static void startCatalogRefresh() {
+        sCatalog.startRefresh();
+    }
+
+    /**
+     * Searches a game on Twitch and tries to find the best match, giving up when the search is no longer needed. The
+     * search options are tried in order, each in the catalog and then on Twitch, so that a shortened option can never
+     * win over a longer one that Twitch knows. The catalog only answers for games it knows by exactly the same name,
+     * as the most popular game starting with a shortened option is rarely the one that was meant. A search that fails
+     * makes the whole search fail instead of moving on to a worse option, as it can't tell whether the option would
+     * have found the game.
+     *
+     * @param query
+     *            The game to search for
+     * @param superseded
+     *            Tells whether the search is no longer needed
+     *
+     * @return The name of the game according to Twitch or null if it wasn't found or the search was given up
+     *
+     * @throws IOException
+     *             When a search failed before the game was found
+     */
+    public static String searchGame(final String query, final BooleanSupplier superseded) throws IOException {
+        final List<String> options = getSearchOptions(query);
+        final String local = searchCatalog(options.get(0));
+        if (local != null) {
+            return local;
+        }
+        return (sParallelSearch ? searchParallel(options, superseded) : searchSequential(options, superseded));
+    }
 
-        // Attempt the full query
-        String result = executeGameSearch(lastOption);
+    /**
+     * Looks up a search option in the catalog and records the hit.
+     *
+     * @param option
+     *            The query to look up
+     *
+     * @return The name of the game according to the catalog or null if it doesn't know the option
+     */
+    private static String searchCatalog(final String option) {
+        final String result = findInCatalog(option);
         if (result != null) {
-            return result;
+            onCatalogHit(option, result);
+        }
+        return result;
+    }
+
+    /**
+     * Looks up a search option in the catalog by its normalised name, without recording a hit.
+     *
+     * @param option
+     *            The query to look up
+     *
+     * @return The name of the game according to the catalog or null if it doesn't know the option
+     */
+    private static String findInCatalog(final String option) {
+        final RecordedResponses recorded = RecordedResponses.getActive();
+        if (recorded != null) {
+            final JournalRecord response = recorded.find(RecordType.TWITCH_CATALOG, option);
+            return (response != null ? response.getField(1) : null);
         }
+        return sCatalog.get(normalizeCatalogKey(option));
+    }
+
+    /**
+     * Records that the catalog found the game for a search option.
+     *
+     * @param option
+     *            The query that was looked up
+     * @param result
+     *            The name of the game according to the catalog
+     */
+    private static void onCatalogHit(final String option, final String result) {
+        Log.info("twitch", "Twitch catalog: " + option);
+        Journal.lookup(RecordType.TWITCH_CATALOG, option, result);
+    }
+
+    /**
+     * Normalises a game or search option into the key used by the catalog.
+     *
+     * @param game
+     *            The game or search option
+     *
+     * @return The key
+     */
+    static String normalizeCatalogKey(final String game) {
+        return cleanupQuery(game).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Determines the queries to try when searching for a game, ordered from most to least preferred. The first is the
+     * full query, followed by the query trimmed step by step through the filters and finally by cutting words.
+     *
+     * @param query
+     *            The game to search for
+     *
+     * @return The queries to search for in order of priority
+     */
+    static List<String> getSearchOptions(final String query) {
+        final List<String> options = new ArrayList<>();
+
+        // Clean the first URL
+        String lastOption = cleanupQuery(query);
+        options.add(lastOption);
 
         // Use filters to trim the option
         for (int i = 0;; ++i) {
@@ -72,15 +279,149 @@ public class Twitch {
                 }
             }
 
-            // Perform the actual search
-            result = executeGameSearch(option);
+            options.add(option);
+            lastOption = option;
+        }
+
+        return options;
+    }
+
+    /**
+     * Searches the options one after another until a game is found, looking up each option in the catalog before
+     * searching it on Twitch. The first option has already been looked up.
+     *
+     * @param options
+     *            The queries to search for in order of priority
+     * @param superseded
+     *            Tells whether the search is no longer needed
+     *
+     * @return The name of the game according to Twitch or null if it wasn't found or the search was given up
+     *
+     * @throws IOException
+     *             When a search failed before the game was found
+     */
+    private static String searchSequential(final List<String> options, final BooleanSupplier superseded)
+            throws IOException {
+        for (int i = 0; i < options.size(); ++i) {
+            if (superseded.getAsBoolean()) {
+                return null;
+            }
+            final String local = (i > 0 ? searchCatalog(options.get(i)) : null);
+            final String result = (local != null ? local : executeGameSearch(options.get(i)));
             if (result != null) {
+                sSearchSteps.record(i + 1);
                 return result;
             }
-            lastOption = option;
         }
 
-        return query;
+        sSearchSteps.record(options.size());
+        sSearchMisses.increment();
+        return null;
+    }
+
+    /**
+     * Searches all options at the same time and returns the result of the most preferred option that found a game. Only
+     * the options before the first one that the catalog knows are searched on Twitch, and the catalog's game is
+     * returned if none of them finds anything, just like a sequential search would. The first option has already been
+     * looked up. Searches for less preferred options are cancelled as soon as the result is known. Cancelling only
+     * drops the searches that are still queued or waiting for the rate limit: a blocking read can't be interrupted, so
+     * a search whose request was already sent keeps its thread until the response arrives or the HTTP timeout passes.
+     * At most {@link #SEARCH_PARALLELISM} searches are in flight, which bounds the threads and requests that are
+     * wasted.
+     *
+     * @param options
+     *            The queries to search for in order of priority
+     * @param superseded
+     *            Tells whether the search is no longer needed
+     *
+     * @return The name of the game according to Twitch or null if it wasn't found or the search was given up
+     *
+     * @throws IOException
+     *             When the search for an option failed before a more preferred option found the game
+     */
+    private static String searchParallel(final List<String> options, final BooleanSupplier superseded)
+            throws IOException {
+        String local = null;
+        int searchCount = options.size();
+        for (int i = 1; i < options.size(); ++i) {
+            local = findInCatalog(options.get(i));
+            if (local != null) {
+                searchCount = i;
+                break;
+            }
+        }
+
+        final List<Future<String>> searches = new ArrayList<>(searchCount);
+        for (final String option : options.subList(0, searchCount)) {
+            searches.add(sSearchExecutor.submit(() -> executeGameSearch(option)));
+        }
+
+        try {
+            for (int i = 0; i < searches.size(); ++i) {
+                final String result = awaitSearch(searches.get(i), superseded);
+                if (superseded.getAsBoolean()) {
+                    return null;
+                }
+                if (result != null) {
+                    sSearchSteps.record(i + 1);
+                    return result;
+                }
+            }
+            if (local != null) {
+                onCatalogHit(options.get(searchCount), local);
+                sSearchSteps.record(searchCount + 1);
+                return local;
+            }
+            sSearchSteps.record(searches.size());
+            sSearchMisses.increment();
+
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+
+        } catch (final ExecutionException ex) {
+            // Fail the same way as a sequential search would
+            if (ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            }
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+
+        } finally {
+            for (final Future<String> search : searches) {
+                search.cancel(true);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Waits for a search to complete, checking regularly whether it's still needed.
+     *
+     * @param search
+     *            The search to wait for
+     * @param superseded
+     *            Tells whether the search is no longer needed
+     *
+     * @return The result of the search or null if it was given up
+     *
+     * @throws InterruptedException
+     *             When the thread was interrupted while waiting
+     * @throws ExecutionException
+     *             When the search failed
+     */
+    private static String awaitSearch(final Future<String> search, final BooleanSupplier superseded)
+            throws InterruptedException, ExecutionException {
+        while (!superseded.getAsBoolean()) {
+            try {
+                return search.get(SUPERSEDED_CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+            } catch (final TimeoutException ex) {
+                // Check again
+            }
+        }
+        return null;
     }
 
     /**
@@ -102,71 +443,235 @@ public class Twitch {
      *            The game to search for
      *
      * @return The name of the game according to Twitch or null if it wasn't found
+     *
+     * @throws IOException
+     *             When the search failed or timed out
+     */
+    private static String executeGameSearch(final String query) throws IOException {
+        final RecordedResponses recorded = RecordedResponses.getActive();
+        if (recorded != null) {
+            final JournalRecord response = recorded.find(RecordType.TWITCH_SEARCH, query);
+            if (response != null && response.getField(2) != null) {
+                throw new IOException("Recorded failure: " + response.getField(2));
+            }
+            return (response != null ? response.getField(1) : null);
+        }
+
+        Log.info("twitch", "Twitch search: " + query);
+        final long startTime = System.nanoTime();
+        final String result;
+        try {
+            result = sSearchHttpHelper.fetch(API_URL + "/search/games?q=" + HttpHelper.encode(query)
+                    + "&type=suggest&oauth_token=" + HttpHelper.encode(sApiToken), input -> findGame(sJsonReaders.get()
+                    .reset(input), query));
+        } catch (final IOException ex) {
+            // A search that was cancelled because it's no longer needed didn't fail
+            if (!Thread.currentThread().isInterrupted()) {
+                Journal.searchFailed(RecordType.TWITCH_SEARCH, query, ex.getClass().getSimpleName(), startTime);
+            }
+            throw ex;
+        }
+        Journal.search(RecordType.TWITCH_SEARCH, query, result, startTime);
+        return result;
+    }
+
+    /**
+     * Reads game search results, stopping as soon as an exact match is found.
+     *
+     * @param reader
+     *            The reader positioned at the start of the search results
+     * @param query
+     *            The game that was searched for
+     *
+     * @return The exactly matching game, the first game if there is no exact match or null if there are no results
+     *
+     * @throws IOException
+     *             When the results couldn't be read
      */
-    private static String executeGameSearch(final String query) {
-        System.out.println("Twitch search: " + query);
-        final String result = sHttpHelper.get("https://api.twitch.tv/kraken/search/games?q=" + HttpHelper.encode(query)
-                + "&type=suggest&oauth_token=" + Params.TWITCH_TOKEN);
-        if (result == null) {
+    static String findGame(final JsonReader reader, final String query) throws IOException {
+        reader.beginObject();
+        if (!reader.skipToName("games")) {
+            throw new IOException("Search results without games");
+        }
+        if (reader.peek() == JsonReader.Token.NULL) {
             return null;
         }
-        final JSONArray games = new JSONObject(result).getJSONArray("games");
 
-        // Check if there's a match
-        if (games.length() > 0) {
-            // Scan all matches for an exact match to prevent newer games having priority
-            for (int i = 0; i < games.length(); ++i) {
-                final String name = games.getJSONObject(i).getString("name");
-                if (name.equals(query)) {
-                    return name;
-                }
+        // Scan all matches for an exact match to prevent newer games having priority
+        String firstName = null;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            reader.beginObject();
+            if (!reader.skipToName("name")) {
+                throw new IOException("Search result without name");
+            }
+            final String name = reader.nextString();
+            if (name.equals(query)) {
+                return name;
+            }
+            if (firstName == null) {
+                firstName = name;
             }
 
-            // With no exact match, just use the first
-            return games.getJSONObject(0).getString("name");
+            while (reader.hasNext()) {
+                reader.skipValue();
+            }
+            reader.endObject();
         }
 
-        return null;
+        // With no exact match, just use the first
+        return firstName;
+    }
+
+    /**
+     * Downloads the most popular games for the catalog.
+     *
+     * @return The names by catalog key from most to least popular or null if the games couldn't be downloaded
+     */
+    private static Map<String, String> downloadCatalog() {
+        final Map<String, String> games = new LinkedHashMap<>();
+        for (int offset = 0; offset < CATALOG_MAX_GAMES; offset += CATALOG_PAGE_SIZE) {
+            final Integer count = sCatalogHttpHelper.get(API_URL + "/games/top?limit=" + CATALOG_PAGE_SIZE
+                    + "&offset=" + offset + "&oauth_token=" + HttpHelper.encode(sApiToken), input -> readTopGames(
+                            sJsonReaders.get().reset(input), games));
+            if (count == null) {
+                return null;
+            }
+            if (count < CATALOG_PAGE_SIZE) {
+                break;
+            }
+        }
+        return games;
     }
 
     /**
-     * Updates the status and game on Twitch.
+     * Reads a page of top games, adding their names to the catalog.
+     *
+     * @param reader
+     *            The reader positioned at the start of the top games
+     * @param games
+     *            The names by catalog key to add the games to
+     *
+     * @return The amount of games on the page
+     *
+     * @throws IOException
+     *             When the top games couldn't be read
+     */
+    private static int readTopGames(final JsonReader reader, final Map<String, String> games) throws IOException {
+        reader.beginObject();
+        if (!reader.skipToName("top")) {
+            throw new IOException("Top games without top");
+        }
+
+        int count = 0;
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String gameName = null;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (reader.nextName().equals("game") && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                    reader.beginObject();
+                    while (reader.hasNext()) {
+                        if (reader.nextName().equals("name") && reader.peek() == JsonReader.Token.STRING) {
+                            gameName = reader.nextString();
+                        } else {
+                            reader.skipValue();
+                        }
+                    }
+                    reader.endObject();
+                } else {
+                    reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (gameName != null) {
+                games.putIfAbsent(normalizeCatalogKey(gameName), gameName);
+            }
+            ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Creates the state to show on Twitch, replacing games that Twitch would ban us for.
      *
      * @param status
      *            The new status
      * @param game
      *            The new game in a full name format
+     *
+     * @return The state to show on Twitch
      */
-    public static void updateInfo(final String status, String game) {
-        // Prevent Twitch from banning us for certain games
-        for (final String bannedGame : Params.TWITCH_BLACKLIST) {
-            if (game.equals(bannedGame)) {
-                game = Params.TWITCH_BLACKLIST_REPLACEMENT;
-                break;
-            }
-        }
+    public static PlatformState createState(final String status, final String game) {
+        return new PlatformState(status, (sBlacklist.contains(game) ? Params.TWITCH_BLACKLIST_REPLACEMENT : game));
+    }
 
-        // Construct the URL
-        final String data = "channel[status]=" + HttpHelper.encode(status) + "&channel[game]="
-                + HttpHelper.encode(game);
+    /**
+     * Creates a new connection to a Twitch channel.
+     *
+     * @param channel
+     *            The Twitch channel to update
+     * @param token
+     *            The authentication token for the channel
+     */
+    public Twitch(final String channel, final String token) {
+        mChannelUrl = API_URL + "/channels/" + HttpHelper.encode(channel) + "?oauth_token=" + HttpHelper.encode(token);
+    }
 
-        // Twitch updates sometimes randomly fail, so try until we succeed
-        int tryCount = 0;
-        while (tryCount++ < MAX_UPDATE_ATTEMPT) {
-            // Send data
-            final String result = sHttpHelper.put(UPDATE_URL, data);
+    /**
+     * Reads the status and game that the channel currently shows.
+     *
+     * @return The state of the channel or null if it couldn't be read
+     */
+    public PlatformState readState() {
+        return sReadHttpHelper.get(mChannelUrl, input -> readChannel(sJsonReaders.get().reset(input)));
+    }
 
-            // Check if the update was successful
-            if (result != null) {
-                final JSONObject json = new JSONObject(result);
-                if (status.equals(json.optString("status")) && game.equals(json.optString("game"))) {
-                    System.out.println("Twitch update successful");
-                    return;
-                }
+    /**
+     * Updates the status and game on Twitch in a single attempt.
+     *
+     * @param state
+     *            The state to show, as created by {@link #createState(String, String)}
+     *
+     * @return The state of the channel as returned by the update or null if the update failed
+     */
+    public PlatformState writeState(final PlatformState state) {
+        final String data = "channel[status]=" + HttpHelper.encode(state.getStatus()) + "&channel[game]="
+                + HttpHelper.encode(state.getGame());
+        return sUpdateHttpHelper.put(mChannelUrl, data, input -> readChannel(sJsonReaders.get().reset(input)));
+    }
+
+    /**
+     * Reads the status and game from a channel as returned by a request for the channel or an update.
+     *
+     * @param reader
+     *            The reader positioned at the start of the channel
+     *
+     * @return The state of the channel
+     *
+     * @throws IOException
+     *             When the channel couldn't be read
+     */
+    private static PlatformState readChannel(final JsonReader reader) throws IOException {
+        String status = null;
+        String game = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            if (reader.peek() != JsonReader.Token.STRING) {
+                reader.skipValue();
+            } else if (name.equals("status")) {
+                status = reader.nextString();
+            } else if (name.equals("game")) {
+                game = reader.nextString();
+            } else {
+                reader.skipValue();
             }
         }
 
-        System.out.println("Couldn't update Twitch");
+        return new PlatformState(status, game);
     }
 
     /**
@@ -187,9 +692,9 @@ public class Twitch {
      */
     public static String requestToken(final String clientID, final String clientSecret, final String redirectUri,
             final String code, final String state) {
-        return sHttpHelper.post("https://api.twitch.tv/kraken/oauth2/token", "client_id=" + clientID + "&client_secret="
-                + clientSecret + "&grant_type=authorization_code&redirect_uri=" + HttpHelper.encode(redirectUri)
-                + "&code=" + code + "&state=" + state);
+        return new HttpHelper(ACCEPT_HEADER, "twitch.token").post(API_URL + "/oauth2/token", "client_id=" + clientID
+                + "&client_secret=" + clientSecret + "&grant_type=authorization_code&redirect_uri="
+                + HttpHelper.encode(redirectUri) + "&code=" + code + "&state=" + state);
     }
 
 }
@@ -0,0 +1,75 @@
+package com.tvkdevelopment.diu.topic;
+
+/**
+ * A topic source that uses a primary source whenever it's available and runs a fallback source while it isn't. Topics
+ * from both sources are passed on, so a topic may be received twice around a switch.
+ */
+public class FallbackTopicSource implements TopicSource {
+
+    /** The preferred source */
+    private final TopicSource mPrimary;
+    /** The source to use while the primary source is unavailable */
+    private final TopicSource mFallback;
+
+    /** Whether or not the source is started */
+    private boolean mStarted = false;
+
+    /**
+     * Creates a new fallback topic source.
+     *
+     * @param primary
+     *            The preferred source
+     * @param fallback
+     *            The source to use while the primary source is unavailable
+     */
+    public FallbackTopicSource(final TopicSource primary, final TopicSource fallback) {
+        mPrimary = primary;
+        mFallback = fallback;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void start(final Listener listener) {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+
+        // Use the fallback until the primary source proves to be available
+        mFallback.start(listener);
+        mPrimary.start(new Listener() {
+            @Override
+            public void onTopic(final String topic) {
+                listener.onTopic(topic);
+            }
+
+            @Override
+            public void onAvailabilityChanged(final boolean available) {
+                synchronized (FallbackTopicSource.this) {
+                    if (!mStarted) {
+                        return;
+                    }
+
+                    if (available) {
+                        mFallback.stop();
+                    } else {
+                        mFallback.start(listener);
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void stop() {
+        mStarted = false;
+        mPrimary.stop();
+        mFallback.stop();
+    }
+
+}
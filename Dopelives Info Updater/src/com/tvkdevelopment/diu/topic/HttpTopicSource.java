@@ -0,0 +1,198 @@
+package com.tvkdevelopment.diu.topic;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Histogram;
+import com.tvkdevelopment.diu.metrics.Metrics;
+import com.tvkdevelopment.diu.util.AdaptiveInterval;
+import com.tvkdevelopment.diu.util.ConditionalRequest;
+import com.tvkdevelopment.diu.util.HttpHelper;
+
+/**
+ * A topic source that polls the topic host over HTTP. Requests are scheduled relative to the start of the previous one
+ * so that slow requests don't stretch the interval, and the interval adapts to how often the topic changes. All HTTP
+ * topic sources share a small pool of threads, so many channels can be polled from a single process.
+ */
+public class HttpTopicSource implements TopicSource {
+
+    /** The amount of threads shared by all sources, which can be overridden with diu.topic.threads */
+    private static final int THREADS = Integer.getInteger("diu.topic.threads", 4);
+
+    /** The pool performing the requests of all sources, which keeps the process running while any source is */
+    private static final ScheduledExecutorService sScheduler = Executors.newScheduledThreadPool(THREADS,
+            runnable -> new Thread(runnable, "Topic updater"));
+
+    /** The HTTP helper to use for requests */
+    private static final HttpHelper sHttpHelper = new HttpHelper(null, "topic");
+
+    /** The duration of each poll in microseconds, including passing on the topic */
+    private static final Histogram sPollDuration = Metrics.histogram("topic.poll.duration.us");
+    /** The amount of polls that found a changed topic */
+    private static final LongAdder sPollsChanged = Metrics.counter("topic.poll.changed");
+    /** The amount of polls that found the same topic as before */
+    private static final LongAdder sPollsUnchanged = Metrics.counter("topic.poll.unchanged");
+    /** The amount of polls that failed */
+    private static final LongAdder sPollsFailed = Metrics.counter("topic.poll.failed");
+
+    /** The URL at which to get the topic info */
+    private final String mUrl;
+    /** The shortest amount of time in milliseconds between requests, used right after a change */
+    private final long mMinInterval;
+    /** The amount of time in milliseconds between requests to start backing off from */
+    private final long mBaseInterval;
+    /** The longest amount of time in milliseconds between requests, used when nothing changes for a while */
+    private final long mMaxInterval;
+
+    /** The current run of the source or null if the source isn't started */
+    private Poller mPoller;
+
+    /**
+     * Creates a new HTTP topic source.
+     *
+     * @param url
+     *            The URL at which to get the topic info
+     * @param minInterval
+     *            The shortest amount of time in milliseconds between requests, used right after a change
+     * @param baseInterval
+     *            The amount of time in milliseconds between requests to start backing off from
+     * @param maxInterval
+     *            The longest amount of time in milliseconds between requests, used when nothing changes for a while
+     */
+    public HttpTopicSource(final String url, final long minInterval, final long baseInterval, final long maxInterval) {
+        mUrl = url;
+        mMinInterval = minInterval;
+        mBaseInterval = baseInterval;
+        mMaxInterval = maxInterval;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void start(final Listener listener) {
+        if (mPoller != null) {
+            return;
+        }
+
+        mPoller = new Poller(listener);
+        mPoller.schedule(0);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void stop() {
+        if (mPoller != null) {
+            mPoller.cancel();
+            mPoller = null;
+        }
+    }
+
+    /**
+     * The state of a single run of the source, from start until stop.
+     */
+    private class Poller {
+
+        /** The listener to receive the topic */
+        private final Listener mListener;
+        /** The request for the topic info, which remembers the last topic to detect changes */
+        private final ConditionalRequest mRequest = new ConditionalRequest(mUrl);
+        /** The interval between requests, adapting to how often the topic changes */
+        private final AdaptiveInterval mInterval = new AdaptiveInterval(mMinInterval, mBaseInterval, mMaxInterval);
+
+        /** Whether or not the last request succeeded */
+        private boolean mAvailable = false;
+        /** The next scheduled request or null if there is none */
+        private ScheduledFuture<?> mNextRequest;
+        /** Whether or not the run has been stopped */
+        private boolean mCancelled = false;
+
+        private Poller(final Listener listener) {
+            mListener = listener;
+        }
+
+        /**
+         * Schedules the next request unless the run has been stopped.
+         *
+         * @param delay
+         *            The time in milliseconds until the request
+         */
+        private synchronized void schedule(final long delay) {
+            if (!mCancelled) {
+                mNextRequest = sScheduler.schedule(this::performRequest, delay, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * Stops the run, cancelling the next request. A request in progress is allowed to finish.
+         */
+        private synchronized void cancel() {
+            mCancelled = true;
+            if (mNextRequest != null) {
+                mNextRequest.cancel(false);
+            }
+        }
+
+        /**
+         * Refreshes the latest topic and schedules the next refresh.
+         */
+        private void performRequest() {
+            final long startTime = System.currentTimeMillis();
+            final long startNanos = System.nanoTime();
+            long interval;
+
+            try {
+                // Check the newest topic, only passing it on when it has changed
+                final ConditionalRequest.Result requestResult = sHttpHelper.getIfChanged(mRequest);
+
+                if (requestResult == ConditionalRequest.Result.FAILED) {
+                    sPollsFailed.increment();
+                    interval = mInterval.onFailed();
+                    Log.warn("topic", "Couldn't retrieve topic");
+                    setAvailable(false);
+
+                } else {
+                    setAvailable(true);
+                    if (requestResult == ConditionalRequest.Result.CHANGED) {
+                        sPollsChanged.increment();
+                        interval = mInterval.onChanged();
+                        mListener.onTopic(mRequest.getBody());
+                    } else {
+                        sPollsUnchanged.increment();
+                        interval = mInterval.onUnchanged();
+                    }
+                }
+
+            } catch (final Throwable ex) {
+                // Catch EVERYTHING to try to keep running
+                interval = mInterval.onFailed();
+                Log.error("topic", "Topic updater exception/error", ex);
+            }
+            sPollDuration.recordSince(startNanos);
+
+            // Add interval between checks
+            schedule(Math.max(0, interval - (System.currentTimeMillis() - startTime)));
+        }
+
+        /**
+         * Informs the listener when the availability of the topic has changed.
+         *
+         * @param available
+         *            True if the last request succeeded, false otherwise
+         */
+        private void setAvailable(final boolean available) {
+            if (mAvailable != available) {
+                mAvailable = available;
+                mListener.onAvailabilityChanged(available);
+            }
+        }
+
+    }
+
+}
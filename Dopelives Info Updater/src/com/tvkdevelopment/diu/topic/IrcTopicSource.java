@@ -0,0 +1,390 @@
+package com.tvkdevelopment.diu.topic;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.util.AdaptiveInterval;
+
+/**
+ * A topic source that stays connected to the IRC channel and receives topic changes the moment they happen. The IRC
+ * topic is converted to the format served by the topic host using a pattern with the named groups streamer, type and
+ * game, which has to be configured as the format depends on the channel. Topics matching the optional offline pattern
+ * are passed on as empty, meaning that no stream is active. Topics matching neither are ignored, keeping the stream
+ * info as it was, so that an ordinary channel topic never ends a stream.
+ */
+public class IrcTopicSource implements TopicSource {
+
+    /** The system property holding the IRC server host, which enables the IRC source when set */
+    private static final String PROPERTY_HOST = "diu.irc.host";
+    /** The system property holding the IRC server port */
+    private static final String PROPERTY_PORT = "diu.irc.port";
+    /** The system property holding the IRC channel to read the topic of */
+    private static final String PROPERTY_CHANNEL = "diu.irc.channel";
+    /** The system property holding the nickname to connect with */
+    private static final String PROPERTY_NICK = "diu.irc.nick";
+    /** The system property holding the pattern to extract the stream info from the topic with */
+    private static final String PROPERTY_TOPIC_PATTERN = "diu.irc.topicPattern";
+    /** The system property holding the pattern of topics that mean no stream is active */
+    private static final String PROPERTY_OFFLINE_PATTERN = "diu.irc.offlinePattern";
+
+    /** The default IRC server port */
+    public static final int DEFAULT_PORT = 6667;
+    /** The default nickname to connect with */
+    public static final String DEFAULT_NICK = "DopelivesInfo";
+
+    /** The time in milliseconds to wait for a connection */
+    private static final int CONNECT_TIMEOUT = 10 * 1000;
+    /** The time in milliseconds without any message after which the server is pinged */
+    private static final int READ_TIMEOUT = 3 * 60 * 1000;
+    /** The shortest time in milliseconds to wait before reconnecting */
+    private static final long MIN_RECONNECT_DELAY = 1000;
+    /** The time in milliseconds to start backing off from when reconnecting */
+    private static final long BASE_RECONNECT_DELAY = 2 * 1000;
+    /** The longest time in milliseconds to wait before reconnecting */
+    private static final long MAX_RECONNECT_DELAY = 5 * 60 * 1000;
+
+    /** The pattern that splits an IRC message into its prefix, command and parameters */
+    private static final Pattern sMessageParser = Pattern.compile("^(?::(\\S+) +)?(\\S+)(.*)$");
+
+    /** The IRC server host */
+    private final String mHost;
+    /** The IRC server port */
+    private final int mPort;
+    /** The IRC channel to read the topic of */
+    private final String mChannel;
+    /** The nickname to connect with */
+    private final String mNick;
+    /** The pattern to extract the stream info from the topic with */
+    private final Pattern mTopicPattern;
+    /** The pattern of topics that mean no stream is active or null if the topic never says so */
+    private final Pattern mOfflinePattern;
+
+    /** The thread maintaining the connection or null if the source isn't started */
+    private Thread mThread;
+    /** The socket of the current connection or null if there is none */
+    private volatile Socket mSocket;
+    /** Whether or not a topic was received on the current connection */
+    private boolean mReceivedTopic;
+
+    /**
+     * Creates an IRC topic source from the diu.irc.* system properties.
+     *
+     * @return The IRC topic source or null if no IRC host has been configured
+     */
+    public static IrcTopicSource fromSystemProperties() {
+        final String host = System.getProperty(PROPERTY_HOST);
+        if (host == null) {
+            return null;
+        }
+
+        final String channel = System.getProperty(PROPERTY_CHANNEL);
+        if (channel == null) {
+            throw new IllegalArgumentException(PROPERTY_CHANNEL + " must be set when " + PROPERTY_HOST + " is set");
+        }
+        final String topicPattern = System.getProperty(PROPERTY_TOPIC_PATTERN);
+        if (topicPattern == null) {
+            throw new IllegalArgumentException(PROPERTY_TOPIC_PATTERN + " must be set when " + PROPERTY_HOST
+                    + " is set");
+        }
+        final String offlinePattern = System.getProperty(PROPERTY_OFFLINE_PATTERN);
+
+        return new IrcTopicSource(host, Integer.getInteger(PROPERTY_PORT, DEFAULT_PORT), channel, System.getProperty(
+                PROPERTY_NICK, DEFAULT_NICK), Pattern.compile(topicPattern), (offlinePattern != null ? Pattern
+                .compile(offlinePattern) : null));
+    }
+
+    /**
+     * Creates a new IRC topic source.
+     *
+     * @param host
+     *            The IRC server host
+     * @param port
+     *            The IRC server port
+     * @param channel
+     *            The IRC channel to read the topic of, including the leading #
+     * @param nick
+     *            The nickname to connect with
+     * @param topicPattern
+     *            The pattern to extract the stream info from the topic with, containing the named groups streamer,
+     *            type and game
+     * @param offlinePattern
+     *            The pattern of topics that mean no stream is active or null if the topic never says so
+     */
+    public IrcTopicSource(final String host, final int port, final String channel, final String nick,
+            final Pattern topicPattern, final Pattern offlinePattern) {
+        mHost = host;
+        mPort = port;
+        mChannel = channel;
+        mNick = nick;
+        mTopicPattern = topicPattern;
+        mOfflinePattern = offlinePattern;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void start(final Listener listener) {
+        if (mThread != null) {
+            return;
+        }
+
+        mThread = new Thread(() -> maintainConnection(listener), "IRC topic");
+        mThread.setDaemon(true);
+        mThread.start();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public synchronized void stop() {
+        if (mThread == null) {
+            return;
+        }
+
+        mThread.interrupt();
+        mThread = null;
+        closeSocket();
+    }
+
+    /**
+     * Keeps connecting to the IRC server until the source is stopped, backing off after each failed connection.
+     *
+     * @param listener
+     *            The listener to receive the topic
+     */
+    private void maintainConnection(final Listener listener) {
+        final AdaptiveInterval reconnectDelay = new AdaptiveInterval(MIN_RECONNECT_DELAY, BASE_RECONNECT_DELAY,
+                MAX_RECONNECT_DELAY);
+
+        while (!Thread.currentThread().isInterrupted()) {
+            mReceivedTopic = false;
+            try {
+                connect(listener);
+            } catch (final IOException ex) {
+                if (!Thread.currentThread().isInterrupted()) {
+                    Log.warn("irc", "IRC connection lost: " + ex.getMessage());
+                }
+            } finally {
+                closeSocket();
+                listener.onAvailabilityChanged(false);
+            }
+
+            // Reconnect quickly after a working connection dropped, back off while the server can't be reached
+            final long delay = (mReceivedTopic ? reconnectDelay.onChanged() : reconnectDelay.onFailed());
+            try {
+                Thread.sleep(delay);
+            } catch (final InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Connects to the IRC server and processes its messages until the connection is closed.
+     *
+     * @param listener
+     *            The listener to receive the topic
+     *
+     * @throws IOException
+     *             When the connection fails
+     */
+    private void connect(final Listener listener) throws IOException {
+        final Socket socket = new Socket();
+        mSocket = socket;
+        socket.connect(new InetSocketAddress(mHost, mPort), CONNECT_TIMEOUT);
+        socket.setSoTimeout(READ_TIMEOUT);
+
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                StandardCharsets.UTF_8));
+        final Writer writer = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+        String nick = mNick;
+        send(writer, "NICK " + nick);
+        send(writer, "USER " + mNick + " 0 * :" + mNick);
+
+        boolean awaitingPong = false;
+        while (true) {
+            final String line;
+            try {
+                line = reader.readLine();
+            } catch (final SocketTimeoutException ex) {
+                // Check if the connection is still alive, giving up if the previous check wasn't answered
+                if (awaitingPong) {
+                    throw ex;
+                }
+                awaitingPong = true;
+                send(writer, "PING :" + mNick);
+                continue;
+            }
+            if (line == null) {
+                return;
+            }
+            awaitingPong = false;
+
+            final Matcher message = sMessageParser.matcher(line);
+            if (!message.find()) {
+                continue;
+            }
+            final String command = message.group(2).toUpperCase(Locale.ROOT);
+            final String[] params = parseParams(message.group(3));
+
+            switch (command) {
+                case "PING":
+                    send(writer, "PONG :" + (params.length > 0 ? params[params.length - 1] : ""));
+                    break;
+
+                case "001":
+                    // Registered, so the channel can be joined
+                    send(writer, "JOIN " + mChannel);
+                    break;
+
+                case "433":
+                    // Nickname in use, so try another
+                    nick = mNick + ThreadLocalRandom.current().nextInt(1000);
+                    send(writer, "NICK " + nick);
+                    break;
+
+                case "332":
+                    // Topic sent on join: <nick> <channel> :<topic>
+                    if (params.length >= 3 && mChannel.equalsIgnoreCase(params[1])) {
+                        onTopic(listener, params[2]);
+                    }
+                    break;
+
+                case "331":
+                    // No topic set on join: <nick> <channel> :No topic is set
+                    if (params.length >= 2 && mChannel.equalsIgnoreCase(params[1])) {
+                        onTopic(listener, "");
+                    }
+                    break;
+
+                case "TOPIC":
+                    // Topic changed: <channel> :<topic>
+                    if (params.length >= 2 && mChannel.equalsIgnoreCase(params[0])) {
+                        onTopic(listener, params[1]);
+                    }
+                    break;
+
+                case "KICK":
+                    // Rejoin when kicked: <channel> <nick> :<reason>
+                    if (params.length >= 2 && mChannel.equalsIgnoreCase(params[0]) && nick.equalsIgnoreCase(params[1])) {
+                        send(writer, "JOIN " + mChannel);
+                    }
+                    break;
+
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Converts an IRC topic and passes it on to the listener.
+     *
+     * @param listener
+     *            The listener to receive the topic
+     * @param ircTopic
+     *            The topic as set in the IRC channel
+     */
+    private void onTopic(final Listener listener, final String ircTopic) {
+        if (!mReceivedTopic) {
+            mReceivedTopic = true;
+            listener.onAvailabilityChanged(true);
+        }
+
+        final String topic = convertTopic(ircTopic);
+        if (topic == null) {
+            Log.debug("irc", "Ignoring topic without stream info: " + ircTopic);
+            return;
+        }
+        listener.onTopic(topic);
+    }
+
+    /**
+     * Converts an IRC topic to the format served by the topic host.
+     *
+     * @param ircTopic
+     *            The topic as set in the IRC channel
+     *
+     * @return The topic in the format served by the topic host, an empty string if no stream is active or null if the
+     *         topic doesn't tell
+     */
+    private String convertTopic(final String ircTopic) {
+        final Matcher matcher = mTopicPattern.matcher(ircTopic);
+        if (matcher.find()) {
+            return matcher.group("streamer") + "\n" + matcher.group("type") + ": " + matcher.group("game") + "\n";
+        }
+        if (mOfflinePattern != null && mOfflinePattern.matcher(ircTopic).find()) {
+            return "";
+        }
+        return null;
+    }
+
+    /**
+     * Splits the parameters of an IRC message, where the last one may contain spaces when preceded by a colon.
+     *
+     * @param params
+     *            The parameters part of the message
+     *
+     * @return The separate parameters
+     */
+    private static String[] parseParams(final String params) {
+        final int trailingStart = params.indexOf(" :");
+        final String middle = (trailingStart >= 0 ? params.substring(0, trailingStart) : params).trim();
+        final String[] middleParams = (middle.isEmpty() ? new String[0] : middle.split(" +"));
+        if (trailingStart < 0) {
+            return middleParams;
+        }
+
+        final String[] result = new String[middleParams.length + 1];
+        System.arraycopy(middleParams, 0, result, 0, middleParams.length);
+        result[middleParams.length] = params.substring(trailingStart + 2);
+        return result;
+    }
+
+    /**
+     * Sends a line to the IRC server.
+     *
+     * @param writer
+     *            The writer of the connection
+     * @param line
+     *            The line to send, without line ending
+     *
+     * @throws IOException
+     *             When the line couldn't be sent
+     */
+    private static void send(final Writer writer, final String line) throws IOException {
+        writer.write(line);
+        writer.write("\r\n");
+        writer.flush();
+    }
+
+    /**
+     * Closes the socket of the current connection if there is one.
+     */
+    private void closeSocket() {
+        final Socket socket = mSocket;
+        mSocket = null;
+        if (socket != null) {
+            try {
+                socket.close();
+            } catch (final IOException ex) {
+                // Already closed
+            }
+        }
+    }
+
+}
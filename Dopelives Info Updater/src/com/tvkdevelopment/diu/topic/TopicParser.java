@@ -0,0 +1,212 @@
+package com.tvkdevelopment.diu.topic;
+
+/**
+ * A single-pass parser for topics in the format served by the topic host. It accepts and extracts exactly what
+ * <code>^(.+)\n([^:]+): ?(.+)$</code> finds in the trimmed topic, but without allocating anything. The parts are kept as
+ * positions in the parsed topic, so they can be compared without creating strings and are only copied when requested.
+ * A parser is not thread-safe.
+ */
+public class TopicParser {
+
+    /** The topic that was parsed last */
+    private CharSequence mTopic;
+
+    /** The start of the streamer in the topic */
+    private int mStreamerStart;
+    /** The end of the streamer in the topic */
+    private int mStreamerEnd;
+    /** The start of the type in the topic */
+    private int mTypeStart;
+    /** The end of the type in the topic */
+    private int mTypeEnd;
+    /** The start of the game in the topic */
+    private int mGameStart;
+    /** The end of the game in the topic */
+    private int mGameEnd;
+
+    /**
+     * Parses a topic. The parts can be retrieved afterwards if it matched.
+     *
+     * @param topic
+     *            The topic in the format served by the topic host
+     *
+     * @return True if the topic contains stream info, false otherwise
+     */
+    public boolean parse(final CharSequence topic) {
+        mTopic = topic;
+
+        // Trim the same way as String.trim()
+        int start = 0;
+        int end = topic.length();
+        while (start < end && topic.charAt(start) <= ' ') {
+            ++start;
+        }
+        while (end > start && topic.charAt(end - 1) <= ' ') {
+            --end;
+        }
+
+        // The streamer runs until the first line terminator, which has to be a newline
+        final int streamerEnd = findLineTerminator(topic, start, end);
+        if (streamerEnd == start || streamerEnd == end || topic.charAt(streamerEnd) != '\n') {
+            return false;
+        }
+
+        // The type runs across any characters until the first colon
+        final int typeStart = streamerEnd + 1;
+        int colon = typeStart;
+        while (colon < end && topic.charAt(colon) != ':') {
+            ++colon;
+        }
+        if (colon == typeStart || colon == end) {
+            return false;
+        }
+
+        // The game runs until the next line terminator and skips one space after the colon if it can
+        int gameStart = colon + 1;
+        final int gameEnd = findLineTerminator(topic, gameStart, end);
+        if (gameStart < end && topic.charAt(gameStart) == ' ' && gameEnd > gameStart + 1) {
+            ++gameStart;
+        }
+        if (gameEnd == gameStart || !isEndOfInput(topic, gameEnd, end)) {
+            return false;
+        }
+
+        mStreamerStart = start;
+        mStreamerEnd = streamerEnd;
+        mTypeStart = typeStart;
+        mTypeEnd = colon;
+        mGameStart = gameStart;
+        mGameEnd = gameEnd;
+        return true;
+    }
+
+    /**
+     * @return The streamer of the last parsed topic
+     */
+    public String getStreamer() {
+        return mTopic.subSequence(mStreamerStart, mStreamerEnd).toString();
+    }
+
+    /**
+     * @return The stream type of the last parsed topic
+     */
+    public String getType() {
+        return mTopic.subSequence(mTypeStart, mTypeEnd).toString();
+    }
+
+    /**
+     * @return The game of the last parsed topic
+     */
+    public String getGame() {
+        return mTopic.subSequence(mGameStart, mGameEnd).toString();
+    }
+
+    /**
+     * @param streamer
+     *            The streamer to compare to, may be null
+     *
+     * @return True if the streamer of the last parsed topic equals the given streamer, false otherwise
+     */
+    public boolean streamerEquals(final String streamer) {
+        return regionEquals(mStreamerStart, mStreamerEnd, streamer);
+    }
+
+    /**
+     * @param type
+     *            The stream type to compare to, may be null
+     *
+     * @return True if the stream type of the last parsed topic equals the given type, false otherwise
+     */
+    public boolean typeEquals(final String type) {
+        return regionEquals(mTypeStart, mTypeEnd, type);
+    }
+
+    /**
+     * @param game
+     *            The game to compare to, may be null
+     *
+     * @return True if the game of the last parsed topic equals the given game, false otherwise
+     */
+    public boolean gameEquals(final String game) {
+        return regionEquals(mGameStart, mGameEnd, game);
+    }
+
+    /**
+     * Compares a part of the last parsed topic to a string.
+     *
+     * @param start
+     *            The start of the part
+     * @param end
+     *            The end of the part
+     * @param value
+     *            The string to compare to, may be null
+     *
+     * @return True if the part equals the string, false otherwise
+     */
+    private boolean regionEquals(final int start, final int end, final String value) {
+        if (value == null || value.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; ++i) {
+            if (mTopic.charAt(i) != value.charAt(i - start)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Finds the first character that a regular expression dot doesn't match.
+     *
+     * @param topic
+     *            The topic to search
+     * @param from
+     *            The position to start searching at
+     * @param end
+     *            The position to stop searching at
+     *
+     * @return The position of the first line terminator or the end if there is none
+     */
+    private static int findLineTerminator(final CharSequence topic, final int from, final int end) {
+        for (int i = from; i < end; ++i) {
+            if (isLineTerminator(topic.charAt(i))) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * @param c
+     *            The character to check
+     *
+     * @return True if the character is a line terminator to regular expressions, false otherwise
+     */
+    private static boolean isLineTerminator(final char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+
+    /**
+     * Checks if a position matches a regular expression dollar, which also matches before a final line terminator.
+     *
+     * @param topic
+     *            The topic to check in
+     * @param position
+     *            The position to check
+     * @param end
+     *            The end of the input
+     *
+     * @return True if the position is at the end of the input, false otherwise
+     */
+    private static boolean isEndOfInput(final CharSequence topic, final int position, final int end) {
+        if (position == end) {
+            return true;
+        }
+        if (position == end - 1) {
+            final char c = topic.charAt(position);
+            return isLineTerminator(c) && (c != '\n' || topic.charAt(position - 1) != '\r');
+        }
+        return position == end - 2 && topic.charAt(position) == '\r' && topic.charAt(position + 1) == '\n';
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.tvkdevelopment.diu.topic;
+
+/**
+ * A source of topic info, delivering the topic in the format served by the topic host: the streamer on the first line
+ * and the type and game separated by a colon on the second.
+ */
+public interface TopicSource {
+
+    /**
+     * Starts retrieving the topic in the background. Calling this while the source is already started has no effect.
+     *
+     * @param listener
+     *            The listener to receive the topic
+     */
+    void start(Listener listener);
+
+    /**
+     * Stops retrieving the topic. Calling this while the source isn't started has no effect.
+     */
+    void stop();
+
+    /**
+     * The interface for receiving topic info from a source.
+     */
+    interface Listener {
+
+        /**
+         * Called when the source has retrieved a topic that may differ from the previous one.
+         *
+         * @param topic
+         *            The topic in the format served by the topic host
+         */
+        void onTopic(String topic);
+
+        /**
+         * Called when the source loses or regains its ability to retrieve the topic.
+         *
+         * @param available
+         *            True if the topic can be retrieved, false otherwise
+         */
+        void onAvailabilityChanged(boolean available);
+
+    }
+
+}
@@ -0,0 +1,95 @@
+package com.tvkdevelopment.diu.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Determines the interval between polls based on what the previous polls returned. Right after a change, polls happen
+ * at the minimum interval as corrections tend to follow quickly. While nothing changes, the interval grows
+ * exponentially from the base interval up to the maximum. Failures back off exponentially with jitter.
+ */
+public class AdaptiveInterval {
+
+    /** The amount of polls at the minimum interval after a change */
+    private static final int FAST_POLLS = 10;
+    /** The factor by which the interval grows for each poll without changes */
+    private static final double STABLE_BACKOFF = 1.5;
+
+    /** The shortest interval in milliseconds */
+    private final long mMinInterval;
+    /** The interval in milliseconds to start backing off from */
+    private final long mBaseInterval;
+    /** The longest interval in milliseconds */
+    private final long mMaxInterval;
+
+    /** The current interval in milliseconds while nothing changes */
+    private long mStableInterval;
+    /** The amount of polls left at the minimum interval */
+    private int mFastPollsLeft = 0;
+    /** The amount of consecutive failed polls */
+    private int mFailures = 0;
+
+    /**
+     * Creates a new adaptive interval.
+     *
+     * @param minInterval
+     *            The shortest interval in milliseconds
+     * @param baseInterval
+     *            The interval in milliseconds to start backing off from
+     * @param maxInterval
+     *            The longest interval in milliseconds
+     */
+    public AdaptiveInterval(final long minInterval, final long baseInterval, final long maxInterval) {
+        if (minInterval <= 0 || baseInterval < minInterval || maxInterval < baseInterval) {
+            throw new IllegalArgumentException("Intervals must be positive and ordered: " + minInterval + " <= "
+                    + baseInterval + " <= " + maxInterval);
+        }
+
+        mMinInterval = minInterval;
+        mBaseInterval = baseInterval;
+        mMaxInterval = maxInterval;
+        mStableInterval = baseInterval;
+    }
+
+    /**
+     * Called when a poll found changed content.
+     *
+     * @return The amount of milliseconds until the next poll
+     */
+    public synchronized long onChanged() {
+        mFailures = 0;
+        mFastPollsLeft = FAST_POLLS;
+        mStableInterval = mBaseInterval;
+        return mMinInterval;
+    }
+
+    /**
+     * Called when a poll found the same content as before.
+     *
+     * @return The amount of milliseconds until the next poll
+     */
+    public synchronized long onUnchanged() {
+        mFailures = 0;
+        if (mFastPollsLeft > 0) {
+            --mFastPollsLeft;
+            return mMinInterval;
+        }
+
+        final long interval = mStableInterval;
+        mStableInterval = Math.min(mMaxInterval, (long) (mStableInterval * STABLE_BACKOFF));
+        return interval;
+    }
+
+    /**
+     * Called when a poll failed.
+     *
+     * @return The amount of milliseconds until the next poll
+     */
+    public synchronized long onFailed() {
+        mFastPollsLeft = 0;
+        final long backoff = Math.min(mMaxInterval, mBaseInterval << Math.min(mFailures++, 16));
+
+        // Spread retries between half and the full backoff
+        return Math.max(mMinInterval, backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1));
+    }
+
+}
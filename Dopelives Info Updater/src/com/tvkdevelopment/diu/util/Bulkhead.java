@@ -0,0 +1,132 @@
+package com.tvkdevelopment.diu.util;
+
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import com.tvkdevelopment.diu.metrics.Metrics;
+
+/**
+ * A bounded pool of threads reserved for the calls to a single platform, so that a platform that hangs can only use up
+ * its own threads. Tasks that don't fit in the queue are rejected instead of piling up, and callers wait for a result
+ * until a deadline.
+ */
+public class Bulkhead {
+
+    /** The amount of time in milliseconds between checks whether a task is still needed while waiting for it */
+    private static final long SUPERSEDED_CHECK_INTERVAL = 100;
+
+    /** The threads performing the tasks */
+    private final ThreadPoolExecutor mExecutor;
+
+    /** The amount of tasks rejected because the queue was full */
+    private final LongAdder mRejected;
+    /** The amount of tasks that weren't done before their deadline */
+    private final LongAdder mTimeouts;
+
+    /**
+     * Creates a new bulkhead. Its metrics are recorded under bulkhead.[name].rejected and bulkhead.[name].timeouts.
+     *
+     * @param name
+     *            The name of the platform, used for the threads and metrics
+     * @param threads
+     *            The maximum amount of tasks to perform at the same time
+     * @param queueCapacity
+     *            The maximum amount of tasks waiting for a thread
+     */
+    public Bulkhead(final String name, final int threads, final int queueCapacity) {
+        mExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<>(
+                queueCapacity), runnable -> {
+                    final Thread thread = new Thread(runnable, name + " bulkhead");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        mExecutor.allowCoreThreadTimeOut(true);
+
+        final String metricsName = name.toLowerCase(Locale.ROOT);
+        mRejected = Metrics.counter("bulkhead." + metricsName + ".rejected");
+        mTimeouts = Metrics.counter("bulkhead." + metricsName + ".timeouts");
+    }
+
+    /**
+     * Submits a task.
+     *
+     * @param task
+     *            The task to perform
+     *
+     * @return The future result, which fails with a {@link RejectedExecutionException} if the bulkhead is full
+     */
+    public <T> Future<T> submit(final Callable<T> task) {
+        try {
+            return mExecutor.submit(task);
+        } catch (final RejectedExecutionException ex) {
+            mRejected.increment();
+            final CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(ex);
+            return rejected;
+        }
+    }
+
+    /**
+     * Waits for the result of a task until a deadline, checking regularly whether it's still needed. The task keeps
+     * running when the deadline passes, so it can still be waited for with a later deadline.
+     *
+     * @param future
+     *            The future result of a task submitted to this bulkhead
+     * @param deadline
+     *            The time until which to wait as returned by {@link System#nanoTime()}
+     * @param superseded
+     *            Tells whether the result is no longer needed
+     *
+     * @return The result of the task or null if it was no longer needed
+     *
+     * @throws TimeoutException
+     *             When the task wasn't done before the deadline
+     * @throws CancellationException
+     *             When the thread was interrupted while waiting, so that it isn't mistaken for an empty result
+     * @throws RuntimeException
+     *             When the task failed or was rejected
+     */
+    public <T> T await(final Future<T> future, final long deadline, final BooleanSupplier superseded)
+            throws TimeoutException {
+        try {
+            while (!superseded.getAsBoolean()) {
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 && !future.isDone()) {
+                    mTimeouts.increment();
+                    throw new TimeoutException();
+                }
+
+                try {
+                    return future.get(Math.max(0, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(
+                            SUPERSEDED_CHECK_INTERVAL))), TimeUnit.NANOSECONDS);
+                } catch (final TimeoutException ex) {
+                    // Check again
+                }
+            }
+
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting");
+
+        } catch (final ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
+        }
+
+        return null;
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.tvkdevelopment.diu.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Metrics;
+
+/**
+ * Runs tasks one at a time on a background thread where only the latest submitted task matters. A task that is
+ * submitted while another one is waiting replaces it, and a running task is told that it has been superseded so it can
+ * stop at the next convenient point instead of finishing work that is already outdated. All executors share a small
+ * pool of threads, while the tasks of a single executor still run one at a time.
+ */
+public class CoalescingExecutor {
+
+    /** The amount of threads shared by all executors, which can be overridden with diu.update.threads */
+    private static final int THREADS = Integer.getInteger("diu.update.threads", 8);
+
+    /** The pool running the tasks of all executors */
+    private static final ExecutorService sExecutor = Executors.newFixedThreadPool(THREADS, runnable -> {
+        final Thread thread = new Thread(runnable, "Info updater");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The amount of tasks that were replaced or superseded before they finished */
+    private static final LongAdder sCoalesced = Metrics.counter("updates.coalesced");
+
+    /** The name of the executor as shown in the output */
+    private final String mName;
+    /** The executor running the tasks */
+    private final Executor mExecutor;
+
+    /** The task waiting to run or null if there is none */
+    private Task mPending;
+    /** Whether or not the tasks of this executor are being run on the pool */
+    private boolean mRunning = false;
+    /** The amount of submitted tasks, which tells a running task whether a newer one has arrived */
+    private volatile long mGeneration = 0;
+
+    /**
+     * Creates a new coalescing executor.
+     *
+     * @param name
+     *            The name of the executor as shown in the output
+     */
+    public CoalescingExecutor(final String name) {
+        this(name, sExecutor);
+    }
+
+    /**
+     * Creates a new coalescing executor that runs its tasks on an executor of choice instead of the shared pool.
+     *
+     * @param name
+     *            The name of the executor as shown in the output
+     * @param executor
+     *            The executor to run the tasks on, for example {@code Runnable::run} to run them on the thread that
+     *            submits them
+     */
+    public CoalescingExecutor(final String name, final Executor executor) {
+        mName = name;
+        mExecutor = executor;
+    }
+
+    /**
+     * Submits a task to run as soon as the current task is done, replacing any task still waiting and marking the
+     * current task as superseded.
+     *
+     * @param task
+     *            The task to run
+     */
+    public synchronized void submit(final Task task) {
+        if (mPending != null || mRunning) {
+            sCoalesced.increment();
+        }
+        mPending = task;
+        ++mGeneration;
+
+        if (!mRunning) {
+            mRunning = true;
+            mExecutor.execute(this::runTasks);
+        }
+    }
+
+    /**
+     * Runs the submitted tasks until there are none left, freeing the pool thread afterwards.
+     */
+    private void runTasks() {
+        while (true) {
+            final Task task;
+            final long generation;
+            synchronized (this) {
+                if (mPending == null) {
+                    mRunning = false;
+                    return;
+                }
+                task = mPending;
+                generation = mGeneration;
+                mPending = null;
+            }
+
+            try {
+                task.run(() -> mGeneration != generation);
+            } catch (final Throwable ex) {
+                // Catch EVERYTHING to try to keep running
+                Log.error("dispatch", mName + " exception/error", ex);
+            }
+        }
+    }
+
+    /**
+     * The interface for tasks that can stop early once they've been superseded.
+     */
+    public interface Task {
+
+        /**
+         * Performs the task.
+         *
+         * @param superseded
+         *            Tells whether a newer task has been submitted, in which case the task should stop as soon as
+         *            possible
+         */
+        void run(BooleanSupplier superseded);
+
+    }
+
+}
@@ -0,0 +1,180 @@
+package com.tvkdevelopment.diu.util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A GET request that is repeated periodically and only reports content when it has changed since the last time. The
+ * server is asked to skip the body through If-None-Match and If-Modified-Since when it supports them. Otherwise the
+ * raw body is compared to the previous one so that unchanged content is never decoded.
+ */
+public class ConditionalRequest {
+
+    /** The FNV-1a 64-bit offset basis */
+    private static final long HASH_OFFSET = 0xcbf29ce484222325L;
+    /** The FNV-1a 64-bit prime */
+    private static final long HASH_PRIME = 0x100000001b3L;
+
+    /**
+     * The possible results of performing the request.
+     */
+    public enum Result {
+        /** The content differs from the last time and can be retrieved through {@link #getBody()} */
+        CHANGED,
+        /** The content is the same as the last time */
+        UNCHANGED,
+        /** The content couldn't be retrieved */
+        FAILED
+    }
+
+    /** The URL to request */
+    private final URL mUrl;
+
+    /** The ETag of the last content or null if the server didn't send one */
+    private String mETag;
+    /** The modification date of the last content or null if the server didn't send one */
+    private String mLastModified;
+
+    /** The raw bytes of the last content */
+    private byte[] mContent = new byte[1024];
+    /** The amount of bytes in the last content */
+    private int mContentLength = -1;
+    /** The hash of the last content */
+    private long mContentHash;
+    /** The buffer that new content is read into, swapped with the content when it has changed */
+    private byte[] mBuffer = new byte[1024];
+
+    /**
+     * Creates a new conditional request.
+     *
+     * @param url
+     *            The URL to request
+     */
+    public ConditionalRequest(final String url) {
+        try {
+            mUrl = new URL(url);
+        } catch (final MalformedURLException ex) {
+            throw new IllegalArgumentException(ex);
+        }
+    }
+
+    /**
+     * @return The URL to request
+     */
+    URL getUrl() {
+        return mUrl;
+    }
+
+    /**
+     * Adds the validators of the last content to a new request, asking the server to omit the body if it hasn't
+     * changed.
+     *
+     * @param connection
+     *            The connection to add the request headers to
+     */
+    void addValidators(final URLConnection connection) {
+        if (mETag != null) {
+            connection.setRequestProperty("If-None-Match", mETag);
+        }
+        if (mLastModified != null) {
+            connection.setRequestProperty("If-Modified-Since", mLastModified);
+        }
+    }
+
+    /**
+     * Reads a full response body and compares it to the last content.
+     *
+     * @param connection
+     *            The connection that the body belongs to
+     * @param input
+     *            The body to read
+     *
+     * @return True if the content has changed, false otherwise
+     *
+     * @throws IOException
+     *             When the body couldn't be read
+     */
+    boolean readResponse(final URLConnection connection, final InputStream input) throws IOException {
+        // Read the body while hashing it
+        int length = 0;
+        long hash = HASH_OFFSET;
+        int read;
+        while ((read = input.read(mBuffer, length, mBuffer.length - length)) != -1) {
+            for (int i = length; i < length + read; ++i) {
+                hash = (hash ^ (mBuffer[i] & 0xff)) * HASH_PRIME;
+            }
+            length += read;
+            if (length == mBuffer.length) {
+                final byte[] buffer = new byte[mBuffer.length * 2];
+                System.arraycopy(mBuffer, 0, buffer, 0, length);
+                mBuffer = buffer;
+            }
+        }
+
+        // Compare it to the last content
+        if (length == mContentLength && hash == mContentHash && contentEquals(mBuffer, length)) {
+            return false;
+        }
+
+        // Keep the new content and its validators
+        final byte[] content = mContent;
+        mContent = mBuffer;
+        mBuffer = (content.length >= mContent.length ? content : new byte[mContent.length]);
+        mContentLength = length;
+        mContentHash = hash;
+        mETag = connection.getHeaderField("ETag");
+        mLastModified = connection.getHeaderField("Last-Modified");
+        return true;
+    }
+
+    /**
+     * Checks if bytes are equal to the last content.
+     *
+     * @param bytes
+     *            The bytes to compare
+     * @param length
+     *            The amount of bytes to compare
+     *
+     * @return True if the bytes equal the last content, false otherwise
+     */
+    private boolean contentEquals(final byte[] bytes, final int length) {
+        for (int i = 0; i < length; ++i) {
+            if (bytes[i] != mContent[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the last content the same way as {@link HttpHelper#get(String)} does.
+     *
+     * @return The last content or null if no content has been retrieved yet
+     */
+    public String getBody() {
+        if (mContentLength < 0) {
+            return null;
+        }
+
+        final StringBuilder result = new StringBuilder();
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(mContent,
+                0, mContentLength), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                result.append(line).append("\n");
+            }
+        } catch (final IOException ex) {
+            // Won't ever happen
+            throw new RuntimeException(ex);
+        }
+        return result.toString();
+    }
+
+}
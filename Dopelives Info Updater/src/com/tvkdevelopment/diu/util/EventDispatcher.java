@@ -0,0 +1,244 @@
+package com.tvkdevelopment.diu.util;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Histogram;
+import com.tvkdevelopment.diu.metrics.Metrics;
+
+/**
+ * Delivers events to listeners without blocking the thread that dispatches them. Each listener has its own bounded
+ * queue that is drained one event at a time on the executor of its choice, so a slow listener only delays itself. When
+ * a queue is full, its overflow policy decides which events are dropped. Listeners can be added and removed at any
+ * time, also while events are being delivered.
+ *
+ * @param <L>
+ *            The type of listener
+ */
+public class EventDispatcher<L> {
+
+    /** The amount of threads shared by all dispatchers, which can be overridden with diu.dispatch.threads */
+    private static final int THREADS = Integer.getInteger("diu.dispatch.threads", 4);
+
+    /** The pool delivering events to listeners that weren't given their own executor */
+    private static final ExecutorService sDefaultExecutor = Executors.newFixedThreadPool(THREADS, runnable -> {
+        final Thread thread = new Thread(runnable, "Event dispatcher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** The registered listeners */
+    private final List<Subscription> mSubscriptions = new CopyOnWriteArrayList<>();
+
+    /** The time in microseconds from dispatching an event until a listener starts handling it */
+    private final Histogram mLag;
+    /** The amount of events dropped because a queue was full */
+    private final LongAdder mDropped;
+    /** The amount of events replaced by a newer event */
+    private final LongAdder mCoalesced;
+
+    /**
+     * Creates a new event dispatcher. Its metrics are recorded under [name].dispatch.lag.us,
+     * [name].dispatch.dropped and [name].dispatch.coalesced.
+     *
+     * @param name
+     *            The name of the dispatcher as used for the metrics, such as "streaminfo"
+     */
+    public EventDispatcher(final String name) {
+        mLag = Metrics.histogram(name + ".dispatch.lag.us");
+        mDropped = Metrics.counter(name + ".dispatch.dropped");
+        mCoalesced = Metrics.counter(name + ".dispatch.coalesced");
+    }
+
+    /**
+     * Adds a listener that receives its events on the shared pool.
+     *
+     * @param listener
+     *            The listener to add
+     * @param capacity
+     *            The maximum amount of events waiting for the listener
+     * @param policy
+     *            What to do with events that don't fit in the queue
+     */
+    public void addListener(final L listener, final int capacity, final OverflowPolicy policy) {
+        addListener(listener, sDefaultExecutor, capacity, policy);
+    }
+
+    /**
+     * Adds a listener.
+     *
+     * @param listener
+     *            The listener to add
+     * @param executor
+     *            The executor to deliver the events to the listener on, one at a time
+     * @param capacity
+     *            The maximum amount of events waiting for the listener
+     * @param policy
+     *            What to do with events that don't fit in the queue
+     */
+    public void addListener(final L listener, final Executor executor, final int capacity,
+            final OverflowPolicy policy) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        mSubscriptions.add(new Subscription(listener, executor, capacity, policy));
+    }
+
+    /**
+     * Removes a listener. Events that are still waiting for it are discarded.
+     *
+     * @param listener
+     *            The listener to remove
+     */
+    public void removeListener(final L listener) {
+        for (final Subscription subscription : mSubscriptions) {
+            if (subscription.mListener == listener) {
+                mSubscriptions.remove(subscription);
+                subscription.cancel();
+            }
+        }
+    }
+
+    /**
+     * Queues an event for all listeners and returns right away.
+     *
+     * @param event
+     *            Calls the right method of a listener
+     */
+    public void dispatch(final Consumer<L> event) {
+        final long dispatchTime = System.nanoTime();
+        for (final Subscription subscription : mSubscriptions) {
+            subscription.enqueue(event, dispatchTime);
+        }
+    }
+
+    /**
+     * What to do with an event for a listener whose queue is full.
+     */
+    public enum OverflowPolicy {
+
+        /** Drop the oldest waiting event to make room for the new one */
+        DROP_OLDEST,
+
+        /** Drop all waiting events, for listeners that only care about the latest event */
+        COALESCE
+
+    }
+
+    /**
+     * A registered listener with its queue.
+     */
+    private class Subscription {
+
+        /** The listener */
+        private final L mListener;
+        /** The executor to deliver the events on */
+        private final Executor mExecutor;
+        /** The maximum amount of waiting events */
+        private final int mCapacity;
+        /** What to do with events that don't fit in the queue */
+        private final OverflowPolicy mPolicy;
+
+        /** The waiting events */
+        private final Deque<QueuedEvent> mQueue = new ArrayDeque<>();
+        /** Whether or not the queue is being drained */
+        private boolean mDraining = false;
+        /** Whether or not the listener has been removed */
+        private boolean mCancelled = false;
+
+        private Subscription(final L listener, final Executor executor, final int capacity,
+                final OverflowPolicy policy) {
+            mListener = listener;
+            mExecutor = executor;
+            mCapacity = capacity;
+            mPolicy = policy;
+        }
+
+        /**
+         * Queues an event, starting to drain the queue if it isn't being drained yet.
+         *
+         * @param event
+         *            Calls the right method of the listener
+         * @param dispatchTime
+         *            The time at which the event was dispatched as returned by {@link System#nanoTime()}
+         */
+        private synchronized void enqueue(final Consumer<L> event, final long dispatchTime) {
+            if (mCancelled) {
+                return;
+            }
+
+            if (mPolicy == OverflowPolicy.COALESCE) {
+                mCoalesced.add(mQueue.size());
+                mQueue.clear();
+            } else if (mQueue.size() >= mCapacity) {
+                mDropped.increment();
+                mQueue.removeFirst();
+            }
+            mQueue.addLast(new QueuedEvent(event, dispatchTime));
+
+            if (!mDraining) {
+                mDraining = true;
+                mExecutor.execute(this::drain);
+            }
+        }
+
+        /**
+         * Discards the waiting events and stops accepting new ones.
+         */
+        private synchronized void cancel() {
+            mCancelled = true;
+            mQueue.clear();
+        }
+
+        /**
+         * Delivers the waiting events until there are none left.
+         */
+        private void drain() {
+            while (true) {
+                final QueuedEvent event;
+                synchronized (this) {
+                    event = mQueue.pollFirst();
+                    if (event == null) {
+                        mDraining = false;
+                        return;
+                    }
+                }
+
+                mLag.recordSince(event.mDispatchTime);
+                try {
+                    event.mEvent.accept(mListener);
+                } catch (final Throwable ex) {
+                    // Catch EVERYTHING to try to keep running
+                    Log.error("dispatch", "Listener exception/error", ex);
+                }
+            }
+        }
+
+    }
+
+    /**
+     * An event waiting to be delivered.
+     */
+    private class QueuedEvent {
+
+        /** Calls the right method of the listener */
+        private final Consumer<L> mEvent;
+        /** The time at which the event was dispatched as returned by {@link System#nanoTime()} */
+        private final long mDispatchTime;
+
+        private QueuedEvent(final Consumer<L> event, final long dispatchTime) {
+            mEvent = event;
+            mDispatchTime = dispatchTime;
+        }
+
+    }
+
+}
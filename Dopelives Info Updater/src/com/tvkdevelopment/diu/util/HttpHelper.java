@@ -4,25 +4,108 @@ import com.sun.istack.internal.NotNull;
 import com.sun.istack.internal.Nullable;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
 import java.io.UnsupportedEncodingException;
 import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
 import java.net.SocketTimeoutException;
 import java.net.URL;
 import java.net.URLConnection;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+import com.tvkdevelopment.diu.log.Level;
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Histogram;
+import com.tvkdevelopment.diu.metrics.Metrics;
+import com.tvkdevelopment.diu.util.RequestScheduler.Priority;
 
 /**
- * A helper class for HTTP requests.
+ * A helper class for HTTP requests. GET requests to the endpoints listed in the diu.http.hedge system property, such as
+ * "twitch.search,topic", are hedged: when a request hasn't been answered within the latency percentile set with
+ * diu.http.hedge.percentile (95 by default), a duplicate is sent and the first response is used, after which the other
+ * request is cancelled. The duplicates are limited to the share of requests set with diu.http.hedge.budget (0.05 by
+ * default), so a slow host never receives much more load than usual. Only endpoints whose requests are idempotent and
+ * whose response handlers have no side effects should be hedged.
  */
 public class HttpHelper {
 
-    /** The HTTP timeout in milliseconds */
-    private static int HTTP_TIMEOUT = 5000;
+    /** The HTTP timeout in milliseconds, which can be overridden with the diu.http.timeout system property */
+    private static final int HTTP_TIMEOUT = Integer.getInteger("diu.http.timeout", 5000);
+    /** The default maximum amount of idle connections to keep alive per host */
+    private static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 8;
+    /** The amount of threads performing asynchronous requests */
+    private static final int ASYNC_THREADS = 4;
+    /** The endpoint name for the metrics of helpers that weren't given one */
+    private static final String DEFAULT_ENDPOINT = "other";
+    /** The names of the endpoints whose GET requests are hedged */
+    private static final Set<String> HEDGED_ENDPOINTS = Arrays.stream(System.getProperty("diu.http.hedge", "").split(
+            ",")).map(String::trim).filter(endpoint -> !endpoint.isEmpty()).collect(Collectors.toSet());
+    /** The latency percentile after which a request is hedged */
+    private static final double HEDGE_PERCENTILE = Double.parseDouble(System.getProperty("diu.http.hedge.percentile",
+            "95"));
+    /** The maximum share of hedged requests that may be duplicated */
+    private static final double HEDGE_BUDGET = Double.parseDouble(System.getProperty("diu.http.hedge.budget", "0.05"));
+    /** The amount of requests to record the latency of before the percentile is trusted enough to hedge */
+    private static final int HEDGE_MIN_SAMPLES = 20;
+
+    /** The response handler that reads the body as text, ending each line with a newline */
+    private static final ResponseHandler<String> sLineReader = input -> readLines(input, "\n");
+    /** The response handler that reads the body as text, joining all lines */
+    private static final ResponseHandler<String> sJoinedLineReader = input -> readLines(input, "");
+
+    /** The executor that performs asynchronous requests */
+    private static final ExecutorService sAsyncExecutor = Executors.newFixedThreadPool(ASYNC_THREADS, runnable -> {
+        final Thread thread = new Thread(runnable, "HTTP request");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /** The executor that performs the competing attempts of hedged requests */
+    private static final ExecutorService sHedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+        final Thread thread = new Thread(runnable, "HTTP hedge");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Configures the connection pool with default values. See {@link #configureConnectionPool(int)}.
+     */
+    public static void configureConnectionPool() {
+        configureConnectionPool(DEFAULT_MAX_CONNECTIONS_PER_HOST);
+    }
+
+    /**
+     * Configures the pool of persistent connections that is shared by all requests, so that consecutive requests to
+     * the same host don't need a new TCP and TLS handshake. Must be called before the first request is made. The idle
+     * timeout can't be configured on Java 8: idle connections are closed after the time the server asks for in its
+     * Keep-Alive header, or after 5 seconds if it doesn't.
+     *
+     * @param maxConnectionsPerHost
+     *            The maximum amount of idle connections to keep alive per host
+     */
+    public static void configureConnectionPool(final int maxConnectionsPerHost) {
+        System.setProperty("http.keepAlive", "true");
+        System.setProperty("http.maxConnections", Integer.toString(maxConnectionsPerHost));
+    }
 
     /**
      * Encodes a parameter value.
@@ -42,12 +125,32 @@ public class HttpHelper {
     }
 
     @Nullable
-    private String mAcceptHeader;
+    private final String mAcceptHeader;
+    /** The name of the endpoint that failures are logged for */
+    private final String mEndpoint;
+    /** The priority of the requests when waiting for the rate limit of their host */
+    private final Priority mPriority;
+    /** Whether or not GET requests are hedged */
+    private final boolean mHedged;
+
+    /** The latency of requests in microseconds */
+    private final Histogram mLatency;
+    /** The amount of requests that failed */
+    private final LongAdder mErrors;
+    /** The amount of requests that timed out */
+    private final LongAdder mTimeouts;
+    /** The amount of GET requests that could have been hedged */
+    private final LongAdder mHedgeable;
+    /** The amount of GET requests that were hedged */
+    private final LongAdder mHedges;
+    /** The amount of hedged requests that were answered by the duplicate first */
+    private final LongAdder mHedgeWins;
 
     /**
      * Creates a new HTTP helper for connections that don't need an accept header.
      */
     public HttpHelper() {
+        this(null, DEFAULT_ENDPOINT);
     }
 
     /**
@@ -56,7 +159,61 @@ public class HttpHelper {
      * @param acceptHeader The accept header to use in each request
      */
     public HttpHelper(@NotNull final String acceptHeader) {
+        this(acceptHeader, DEFAULT_ENDPOINT);
+    }
+
+    /**
+     * Creates a new HTTP helper that records its metrics separately, under http.[endpoint].latency.us,
+     * http.[endpoint].errors and http.[endpoint].timeouts, and whose requests are read requests.
+     *
+     * @param acceptHeader The accept header to use in each request or null if none is needed
+     * @param endpoint The name of the endpoint to record metrics for, such as "twitch.search"
+     */
+    public HttpHelper(@Nullable final String acceptHeader, @NotNull final String endpoint) {
+        this(acceptHeader, endpoint, Priority.READ);
+    }
+
+    /**
+     * Creates a new HTTP helper that records its metrics separately, under http.[endpoint].latency.us,
+     * http.[endpoint].errors and http.[endpoint].timeouts, and for hedged endpoints http.[endpoint].hedges and
+     * http.[endpoint].hedge.wins. The latency is recorded per attempt and doesn't include the time spent waiting for
+     * the rate limit, which the {@link RequestScheduler} records.
+     *
+     * @param acceptHeader The accept header to use in each request or null if none is needed
+     * @param endpoint The name of the endpoint to record metrics for, such as "twitch.search"
+     * @param priority The priority of the requests when waiting for the rate limit of their host
+     */
+    public HttpHelper(@Nullable final String acceptHeader, @NotNull final String endpoint,
+            @NotNull final Priority priority) {
         mAcceptHeader = acceptHeader;
+        mEndpoint = endpoint;
+        mPriority = priority;
+        mHedged = HEDGED_ENDPOINTS.contains(endpoint);
+        mLatency = Metrics.histogram("http." + endpoint + ".latency.us");
+        mErrors = Metrics.counter("http." + endpoint + ".errors");
+        mTimeouts = Metrics.counter("http." + endpoint + ".timeouts");
+        mHedgeable = new LongAdder();
+        mHedges = (mHedged ? Metrics.counter("http." + endpoint + ".hedges") : new LongAdder());
+        mHedgeWins = (mHedged ? Metrics.counter("http." + endpoint + ".hedge.wins") : new LongAdder());
+    }
+
+    /**
+     * Logs a failed request with its duration, leaving out the query of the URL as it may hold credentials.
+     *
+     * @param message
+     *            What went wrong, such as "Couldn't load URL"
+     * @param url
+     *            The URL that was requested
+     * @param reason
+     *            The exception class or response code explaining the failure
+     * @param startTime
+     *            The time at which the request started as returned by {@link System#nanoTime()}
+     */
+    private void logFailure(final String message, final Object url, final Object reason, final long startTime) {
+        final String location = url.toString();
+        final int queryStart = location.indexOf('?');
+        Log.event(Level.WARN, "http", mEndpoint, (System.nanoTime() - startTime) / 1000, message + " " + (queryStart
+                >= 0 ? location.substring(0, queryStart) : location) + ": " + reason, null);
     }
 
     /**
@@ -65,7 +222,6 @@ public class HttpHelper {
      * @param connection The connection to update initialise
      */
     private void injectStandardProperties(final URLConnection connection) {
-        connection.setRequestProperty("Connection", "close");
         if (mAcceptHeader != null) {
             connection.setRequestProperty("Accept", mAcceptHeader);
         }
@@ -82,25 +238,57 @@ public class HttpHelper {
      * @return The contents or null if the URL couldn't be read
      */
     public String get(final String url) {
-        final StringBuilder result = new StringBuilder();
+        return get(url, sLineReader);
+    }
+
+    /**
+     * Retrieves the content from a URL, letting a handler read the body straight from the connection.
+     *
+     * @param url
+     *            The URL to request
+     * @param handler
+     *            The handler to read the body with
+     *
+     * @return The result of the handler or null if the URL couldn't be read
+     */
+    public <T> T get(final String url, final ResponseHandler<T> handler) {
         try {
-            final URLConnection connection = new URL(url).openConnection();
-            injectStandardProperties(connection);
-            final BufferedReader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), Charset.forName("UTF-8")));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                result.append(line).append("\n");
-            }
-            reader.close();
-        } catch (final SocketTimeoutException ex) {
-            System.out.println("\nTimeout while loading URL " + url + ": " + ex.getClass());
-            return null;
+            return fetch(url, handler);
         } catch (final IOException ex) {
-            System.out.println("\nCouldn't load URL " + url + ": " + ex.getClass());
+            // Already logged
             return null;
         }
+    }
 
-        return result.toString();
+    /**
+     * Retrieves the content from a URL, letting a handler read the body straight from the connection. Unlike
+     * {@link #get(String, ResponseHandler)}, a failure can be told apart from a handler that found nothing.
+     *
+     * @param url
+     *            The URL to request
+     * @param handler
+     *            The handler to read the body with
+     *
+     * @return The result of the handler
+     *
+     * @throws IOException
+     *             When the URL couldn't be read, a {@link SocketTimeoutException} if it took too long
+     */
+    public <T> T fetch(final String url, final ResponseHandler<T> handler) throws IOException {
+        final URL parsedUrl;
+        try {
+            parsedUrl = new URL(url);
+        } catch (final MalformedURLException ex) {
+            mErrors.increment();
+            logFailure("Couldn't load URL", url, ex.getClass(), System.nanoTime());
+            throw ex;
+        }
+
+        return execute(parsedUrl, null, connection -> {
+            try (final InputStream input = connection.getInputStream()) {
+                return handler.handle(input);
+            }
+        });
     }
 
     /**
@@ -114,7 +302,23 @@ public class HttpHelper {
      * @return The result or null if the URL couldn't be read
      */
     public String put(final String url, final String parameters) {
-        return update(url, parameters, "PUT");
+        return update(url, parameters, "PUT", sJoinedLineReader);
+    }
+
+    /**
+     * Performs a PUT request, letting a handler read the response body straight from the connection.
+     *
+     * @param url
+     *            The URL to PUT to
+     * @param parameters
+     *            The parameters to PUT
+     * @param handler
+     *            The handler to read the response body with
+     *
+     * @return The result of the handler or null if the URL couldn't be read
+     */
+    public <T> T put(final String url, final String parameters, final ResponseHandler<T> handler) {
+        return update(url, parameters, "PUT", handler);
     }
 
     /**
@@ -128,7 +332,294 @@ public class HttpHelper {
      * @return The result or null if the URL couldn't be read
      */
     public String post(final String url, final String parameters) {
-        return update(url, parameters, "POST");
+        return update(url, parameters, "POST", sJoinedLineReader);
+    }
+
+    /**
+     * Performs a conditional request, only retrieving and decoding the content if it has changed since the last time.
+     *
+     * @param request
+     *            The request to perform
+     *
+     * @return Whether the content has changed or couldn't be retrieved
+     */
+    public ConditionalRequest.Result getIfChanged(final ConditionalRequest request) {
+        try {
+            if (!mHedged) {
+                return execute(request.getUrl(), request::addValidators, connection -> {
+                    final InputStream input = openConditional((HttpURLConnection) connection);
+                    if (input == null) {
+                        return ConditionalRequest.Result.UNCHANGED;
+                    }
+                    try {
+                        return (request.readResponse(connection, input) ? ConditionalRequest.Result.CHANGED
+                                : ConditionalRequest.Result.UNCHANGED);
+                    } finally {
+                        input.close();
+                    }
+                });
+            }
+
+            // Competing attempts can't share the buffers of the request, so each reads the body on its own and only the
+            // first one is compared to the last content
+            final BufferedResponse response = execute(request.getUrl(), request::addValidators, connection -> {
+                final InputStream input = openConditional((HttpURLConnection) connection);
+                if (input == null) {
+                    return null;
+                }
+                try {
+                    return new BufferedResponse(connection, readBytes(input));
+                } finally {
+                    input.close();
+                }
+            });
+            return (response != null && request.readResponse(response.mConnection, new ByteArrayInputStream(
+                    response.mBody)) ? ConditionalRequest.Result.CHANGED : ConditionalRequest.Result.UNCHANGED);
+
+        } catch (final IOException ex) {
+            // Already logged
+            return ConditionalRequest.Result.FAILED;
+        }
+    }
+
+    /**
+     * Checks the response code of a conditional request.
+     *
+     * @param connection
+     *            The connection that the request was sent over
+     *
+     * @return The body of the response or null if the content hasn't changed
+     *
+     * @throws IOException
+     *             When the request failed, an {@link HttpStatusException} if the server didn't return the content
+     */
+    private static InputStream openConditional(final HttpURLConnection connection) throws IOException {
+        final int responseCode = connection.getResponseCode();
+        if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            connection.getInputStream().close();
+            return null;
+        }
+        if (responseCode != HttpURLConnection.HTTP_OK) {
+            throw new HttpStatusException(responseCode);
+        }
+        return connection.getInputStream();
+    }
+
+    /**
+     * Performs a GET request, hedging it if that's enabled for the endpoint and the latency is known well enough.
+     *
+     * @param url
+     *            The URL to request
+     * @param headers
+     *            Adds request headers to an opened connection or null if only the standard ones are needed
+     * @param exchange
+     *            The exchange that reads the response from the connection
+     *
+     * @return The result of the exchange
+     *
+     * @throws IOException
+     *             When the request failed, or both attempts failed if it was hedged
+     */
+    private <T> T execute(final URL url, final Consumer<URLConnection> headers, final Exchange<T> exchange)
+            throws IOException {
+        final RequestScheduler scheduler = RequestScheduler.forHost(url.getHost());
+        scheduler.acquire(mPriority);
+        final Attempt<T> primary = new Attempt<>(url, scheduler, headers, exchange, false);
+        if (!mHedged || mLatency.getCount() < HEDGE_MIN_SAMPLES) {
+            return primary.call();
+        }
+
+        // Give the request until the latency percentile before considering a duplicate
+        mHedgeable.increment();
+        final CompletableFuture<T> primaryResult = start(primary);
+        try {
+            return primaryResult.get(mLatency.getPercentile(HEDGE_PERCENTILE), TimeUnit.MICROSECONDS);
+        } catch (final TimeoutException ex) {
+            // Slow, hedge it if the budget allows
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            primary.cancel();
+            throw new InterruptedIOException("Interrupted while waiting for " + url.getHost());
+        } catch (final ExecutionException ex) {
+            throw unwrap(ex);
+        }
+        if (mHedges.sum() >= HEDGE_BUDGET * mHedgeable.sum()) {
+            return await(primaryResult, primary, null);
+        }
+
+        // Race a duplicate against the request, only failing if both fail
+        mHedges.increment();
+        final Attempt<T> hedge = new Attempt<>(url, scheduler, headers, exchange, true);
+        final CompletableFuture<T> hedgeResult = start(hedge);
+        final CompletableFuture<T> first = new CompletableFuture<>();
+        final AtomicInteger failures = new AtomicInteger();
+        final BiConsumer<T, Throwable> race = (result, failure) -> {
+            if (failure == null) {
+                first.complete(result);
+            } else if (failures.incrementAndGet() == 2) {
+                first.completeExceptionally(failure);
+            }
+        };
+        primaryResult.whenComplete(race);
+        hedgeResult.whenComplete((result, failure) -> {
+            if (failure == null && !primaryResult.isDone()) {
+                mHedgeWins.increment();
+            }
+            race.accept(result, failure);
+        });
+
+        try {
+            return await(first, primary, hedge);
+        } finally {
+            if (!primaryResult.isDone()) {
+                primary.cancel();
+            }
+            if (!hedgeResult.isDone()) {
+                hedge.cancel();
+            }
+        }
+    }
+
+    /**
+     * Waits for the result of a hedged request.
+     *
+     * @param result
+     *            The future result
+     * @param primary
+     *            The original attempt
+     * @param hedge
+     *            The duplicate attempt or null if there is none
+     *
+     * @return The result
+     *
+     * @throws IOException
+     *             When the request failed or the thread was interrupted while waiting, which cancels the attempts
+     */
+    private static <T> T await(final CompletableFuture<T> result, final Attempt<T> primary, final Attempt<T> hedge)
+            throws IOException {
+        try {
+            return result.get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            primary.cancel();
+            if (hedge != null) {
+                hedge.cancel();
+            }
+            throw new InterruptedIOException("Interrupted while waiting for " + primary.mUrl.getHost());
+        } catch (final ExecutionException ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    /**
+     * Performs an attempt of a hedged request in the background.
+     *
+     * @param attempt
+     *            The attempt to perform
+     *
+     * @return The future result of the attempt
+     */
+    private static <T> CompletableFuture<T> start(final Attempt<T> attempt) {
+        final CompletableFuture<T> result = new CompletableFuture<>();
+        sHedgeExecutor.execute(() -> {
+            attempt.setThread(Thread.currentThread());
+            try {
+                result.complete(attempt.call());
+            } catch (final Throwable ex) {
+                // Catch EVERYTHING to pass it on to the waiting thread
+                result.completeExceptionally(ex);
+            } finally {
+                // Don't let a late cancellation interrupt the next attempt on this thread
+                attempt.setThread(null);
+                Thread.interrupted();
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Unwraps the failure of an attempt.
+     *
+     * @param ex
+     *            The exception thrown when getting the result of the attempt
+     *
+     * @return The I/O exception that the attempt failed with
+     *
+     * @throws RuntimeException
+     *             When the attempt failed with an unchecked exception
+     */
+    private static IOException unwrap(final ExecutionException ex) {
+        final Throwable cause = ex.getCause();
+        if (cause instanceof IOException) {
+            return (IOException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        throw new RuntimeException(cause);
+    }
+
+    /**
+     * Retrieves the content from a URL without blocking the calling thread.
+     *
+     * @param url
+     *            The URL to request
+     *
+     * @return The future contents, completing with null if the URL couldn't be read
+     */
+    public CompletableFuture<String> getAsync(final String url) {
+        return CompletableFuture.supplyAsync(() -> get(url), sAsyncExecutor);
+    }
+
+    /**
+     * Performs a PUT request without blocking the calling thread.
+     *
+     * @param url
+     *            The URL to PUT to
+     * @param parameters
+     *            The parameters to PUT
+     *
+     * @return The future result, completing with null if the URL couldn't be read
+     */
+    public CompletableFuture<String> putAsync(final String url, final String parameters) {
+        return CompletableFuture.supplyAsync(() -> put(url, parameters), sAsyncExecutor);
+    }
+
+    /**
+     * Performs a POST request without blocking the calling thread.
+     *
+     * @param url
+     *            The URL to POST to
+     * @param parameters
+     *            The parameters to POST
+     *
+     * @return The future result, completing with null if the URL couldn't be read
+     */
+    public CompletableFuture<String> postAsync(final String url, final String parameters) {
+        return CompletableFuture.supplyAsync(() -> post(url, parameters), sAsyncExecutor);
+    }
+
+    /**
+     * Reads and closes the error body of a failed request, which allows the connection to be reused.
+     *
+     * @param connection
+     *            The connection of the failed request or null if it wasn't opened
+     */
+    private static void discardErrorStream(final URLConnection connection) {
+        if (!(connection instanceof HttpURLConnection)) {
+            return;
+        }
+
+        try (final InputStream errorStream = ((HttpURLConnection) connection).getErrorStream()) {
+            if (errorStream != null) {
+                final byte[] buffer = new byte[1024];
+                while (errorStream.read(buffer) != -1) {
+                    // Discard
+                }
+            }
+        } catch (final IOException ex) {
+            // The connection will simply not be reused
+        }
     }
 
     /**
@@ -141,15 +632,23 @@ public class HttpHelper {
      *            The parameters to PUT or POST
      * @param requestMethod
      *            The HTTP request method, such as PUT or POST
+     * @param handler
+     *            The handler to read the response body with
      *
-     * @return The result or null if the URL couldn't be read
+     * @return The result of the handler or null if the URL couldn't be read
      */
-    private String update(final String url, final String parameters, final String requestMethod) {
-        final StringBuilder result = new StringBuilder();
-
+    private <T> T update(final String url, final String parameters, final String requestMethod,
+            final ResponseHandler<T> handler) {
+        long startTime = System.nanoTime();
         try {
+            // Wait for the rate limit of the host
+            final URL parsedUrl = new URL(url);
+            final RequestScheduler scheduler = RequestScheduler.forHost(parsedUrl.getHost());
+            scheduler.acquire(mPriority);
+            startTime = System.nanoTime();
+
             // Create the connection
-            final HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+            final HttpURLConnection connection = (HttpURLConnection) parsedUrl.openConnection();
             injectStandardProperties(connection);
             connection.setDoOutput(true);
             connection.setInstanceFollowRedirects(true);
@@ -162,30 +661,299 @@ public class HttpHelper {
             connection.getOutputStream().write(postData);
 
             // Get the response
+            scheduler.onResponse(connection);
             InputStream input;
             if (connection.getResponseCode() == 200) {
                 input = connection.getInputStream();
             } else {
+                mErrors.increment();
                 input = connection.getErrorStream();
+                if (input == null) {
+                    input = new ByteArrayInputStream(new byte[0]);
+                }
             }
 
-            // Print the response
-            final BufferedReader reader = new BufferedReader(new InputStreamReader(input, Charset.forName("UTF-8")));
-            String line;
-            while ((line = reader.readLine()) != null) {
-                result.append(line);
+            // Read the response
+            try {
+                return handler.handle(input);
+            } finally {
+                input.close();
             }
-            reader.close();
 
         } catch (final SocketTimeoutException ex) {
-            System.out.println("Timeout while " + requestMethod + " to URL " + url + ": " + ex.getClass());
+            mTimeouts.increment();
+            logFailure("Timeout while " + requestMethod + " to URL", url, ex.getClass(), startTime);
             return null;
         } catch (final IOException ex) {
-            System.out.println("Couldn't " + requestMethod + " to URL " + url + ": " + ex.getClass());
+            mErrors.increment();
+            logFailure("Couldn't " + requestMethod + " to URL", url, ex.getClass(), startTime);
             return null;
+        } finally {
+            mLatency.recordSince(startTime);
+        }
+    }
+
+    /**
+     * Reads a response body fully.
+     *
+     * @param input
+     *            The body to read
+     *
+     * @return The raw bytes of the body
+     *
+     * @throws IOException
+     *             When the body couldn't be read
+     */
+    private static byte[] readBytes(final InputStream input) throws IOException {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int read;
+        while ((read = input.read(buffer)) != -1) {
+            result.write(buffer, 0, read);
         }
+        return result.toByteArray();
+    }
 
+    /**
+     * Reads a response body as text.
+     *
+     * @param input
+     *            The body to read
+     * @param lineEnding
+     *            The string to put after each line
+     *
+     * @return The body as text
+     *
+     * @throws IOException
+     *             When the body couldn't be read
+     */
+    private static String readLines(final InputStream input, final String lineEnding) throws IOException {
+        final StringBuilder result = new StringBuilder();
+        final BufferedReader reader = new BufferedReader(new InputStreamReader(input, Charset.forName("UTF-8")));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            result.append(line).append(lineEnding);
+        }
         return result.toString();
     }
 
+    /**
+     * The interface for reading a response body straight from the connection.
+     *
+     * @param <T>
+     *            The type of result read from the body
+     */
+    public interface ResponseHandler<T> {
+
+        /**
+         * Reads a response body. The body doesn't need to be read fully and will be closed afterwards.
+         *
+         * @param input
+         *            The body to read
+         *
+         * @return The result read from the body
+         *
+         * @throws IOException
+         *             When the body couldn't be read
+         */
+        T handle(InputStream input) throws IOException;
+
+    }
+
+    /**
+     * The interface for reading the response to a GET request from its connection.
+     *
+     * @param <T>
+     *            The type of result read from the response
+     */
+    private interface Exchange<T> {
+
+        /**
+         * Reads the response.
+         *
+         * @param connection
+         *            The connection that the request was sent over, which is always an {@link HttpURLConnection} for
+         *            HTTP URLs
+         *
+         * @return The result read from the response
+         *
+         * @throws IOException
+         *             When the request failed
+         */
+        T exchange(URLConnection connection) throws IOException;
+
+    }
+
+    /**
+     * A single attempt at a GET request, which records its own latency and failures unless it's cancelled.
+     *
+     * @param <T>
+     *            The type of result read from the response
+     */
+    private class Attempt<T> {
+
+        /** The URL to request */
+        private final URL mUrl;
+        /** The scheduler of the host */
+        private final RequestScheduler mScheduler;
+        /** Adds request headers to the connection or null if only the standard ones are needed */
+        private final Consumer<URLConnection> mHeaders;
+        /** The exchange to perform */
+        private final Exchange<T> mExchange;
+        /** Whether or not the attempt still has to wait for the rate limit of the host */
+        private final boolean mAcquire;
+
+        /** The connection of the attempt or null if it hasn't been opened yet */
+        private volatile URLConnection mConnection;
+        /** Whether or not the attempt has been cancelled */
+        private volatile boolean mCancelled;
+        /** The background thread performing the attempt or null if it isn't being performed in the background */
+        private Thread mThread;
+
+        /**
+         * Creates a new attempt.
+         *
+         * @param url
+         *            The URL to request
+         * @param scheduler
+         *            The scheduler of the host
+         * @param headers
+         *            Adds request headers to the connection or null if only the standard ones are needed
+         * @param exchange
+         *            The exchange to perform
+         * @param acquire
+         *            Whether or not the attempt still has to wait for the rate limit of the host
+         */
+        private Attempt(final URL url, final RequestScheduler scheduler, final Consumer<URLConnection> headers,
+                final Exchange<T> exchange, final boolean acquire) {
+            mUrl = url;
+            mScheduler = scheduler;
+            mHeaders = headers;
+            mExchange = exchange;
+            mAcquire = acquire;
+        }
+
+        /**
+         * Performs the attempt.
+         *
+         * @return The result of the exchange
+         *
+         * @throws IOException
+         *             When the attempt failed or was cancelled
+         */
+        private T call() throws IOException {
+            if (mAcquire) {
+                mScheduler.acquire(mPriority);
+            }
+
+            final long startTime = System.nanoTime();
+            URLConnection connection = null;
+            try {
+                connection = mUrl.openConnection();
+                mConnection = connection;
+                if (mCancelled) {
+                    throw new InterruptedIOException("Cancelled");
+                }
+                injectStandardProperties(connection);
+                if (mHeaders != null) {
+                    mHeaders.accept(connection);
+                }
+                if (connection instanceof HttpURLConnection) {
+                    mScheduler.onResponse((HttpURLConnection) connection);
+                }
+                final T result = mExchange.exchange(connection);
+                mLatency.recordSince(startTime);
+                return result;
+
+            } catch (final IOException ex) {
+                if (mCancelled) {
+                    throw ex;
+                }
+                mLatency.recordSince(startTime);
+                if (ex instanceof SocketTimeoutException) {
+                    mTimeouts.increment();
+                    logFailure("Timeout while loading URL", mUrl, ex.getClass(), startTime);
+                } else {
+                    mErrors.increment();
+                    final Object reason = (ex instanceof HttpStatusException ? ex.getMessage() : ex.getClass());
+                    logFailure("Couldn't load URL", mUrl, reason, startTime);
+                    discardErrorStream(connection);
+                }
+                throw ex;
+            }
+        }
+
+        /**
+         * Sets the background thread performing the attempt, which is interrupted when the attempt is cancelled.
+         *
+         * @param thread
+         *            The thread or null once the attempt is done
+         */
+        private synchronized void setThread(final Thread thread) {
+            mThread = thread;
+        }
+
+        /**
+         * Cancels the attempt, interrupting its wait for the rate limit and closing its connection so that it stops
+         * waiting for the response.
+         */
+        private void cancel() {
+            mCancelled = true;
+            synchronized (this) {
+                if (mThread != null) {
+                    mThread.interrupt();
+                }
+            }
+            final URLConnection connection = mConnection;
+            if (connection instanceof HttpURLConnection) {
+                ((HttpURLConnection) connection).disconnect();
+            }
+        }
+
+    }
+
+    /**
+     * The response to a conditional request, read fully so that it can be compared once the attempt has won.
+     */
+    private static class BufferedResponse {
+
+        /** The connection of the response, holding its validators */
+        private final URLConnection mConnection;
+        /** The raw bytes of the body */
+        private final byte[] mBody;
+
+        /**
+         * Creates a new buffered response.
+         *
+         * @param connection
+         *            The connection of the response
+         * @param body
+         *            The raw bytes of the body
+         */
+        private BufferedResponse(final URLConnection connection, final byte[] body) {
+            mConnection = connection;
+            mBody = body;
+        }
+
+    }
+
+    /**
+     * The failure of a request for which the server returned an unexpected response code.
+     */
+    private static class HttpStatusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Creates a new exception.
+         *
+         * @param responseCode
+         *            The response code returned by the server
+         */
+        private HttpStatusException(final int responseCode) {
+            super("HTTP " + responseCode);
+        }
+
+    }
+
 }
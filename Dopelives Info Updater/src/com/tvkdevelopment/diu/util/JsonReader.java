@@ -0,0 +1,634 @@
+package com.tvkdevelopment.diu.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A streaming JSON reader that decodes UTF-8 JSON straight from an input stream. Values are pulled one at a time, so
+ * callers can extract only the fields they need and stop reading as soon as they have found what they're looking for.
+ * The byte and char buffers are kept between documents, so a reader can be reused through {@link #reset(InputStream)}.
+ * A reader is not thread-safe.
+ */
+public class JsonReader {
+
+    /**
+     * The kinds of tokens in a JSON document.
+     */
+    public enum Token {
+        BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT
+    }
+
+    /** The scope at the start of a document */
+    private static final int SCOPE_EMPTY_DOCUMENT = 0;
+    /** The scope after the top-level value of a document */
+    private static final int SCOPE_NONEMPTY_DOCUMENT = 1;
+    /** The scope inside an array before its first element */
+    private static final int SCOPE_EMPTY_ARRAY = 2;
+    /** The scope inside an array after an element */
+    private static final int SCOPE_NONEMPTY_ARRAY = 3;
+    /** The scope inside an object before its first name */
+    private static final int SCOPE_EMPTY_OBJECT = 4;
+    /** The scope inside an object after a name but before its value */
+    private static final int SCOPE_DANGLING_NAME = 5;
+    /** The scope inside an object after a value */
+    private static final int SCOPE_NONEMPTY_OBJECT = 6;
+
+    /** The buffer holding raw bytes from the input */
+    private final byte[] mBuffer = new byte[8192];
+    /** The position of the next byte to read from the buffer */
+    private int mPos;
+    /** The amount of valid bytes in the buffer */
+    private int mLimit;
+
+    /** The buffer holding the characters of the last decoded string or number */
+    private char[] mChars = new char[256];
+    /** The amount of valid characters in the char buffer */
+    private int mCharCount;
+
+    /** The stack of scopes for the nested arrays and objects */
+    private int[] mStack = new int[32];
+    /** The amount of scopes on the stack */
+    private int mStackSize;
+
+    /** The stream to read from */
+    private InputStream mInput;
+    /** The token that has been peeked but not consumed or null if there is none */
+    private Token mPeeked;
+    /** The value of the peeked boolean token */
+    private boolean mPeekedBoolean;
+
+    /**
+     * Prepares the reader to read a new document, reusing its buffers.
+     *
+     * @param input
+     *            The stream to read the document from
+     *
+     * @return This reader
+     */
+    public JsonReader reset(final InputStream input) {
+        mInput = input;
+        mPos = 0;
+        mLimit = 0;
+        mCharCount = 0;
+        mStackSize = 0;
+        mPeeked = null;
+        push(SCOPE_EMPTY_DOCUMENT);
+        return this;
+    }
+
+    /**
+     * Determines the next token without consuming it.
+     *
+     * @return The next token
+     *
+     * @throws IOException
+     *             When the input couldn't be read or isn't valid JSON
+     */
+    public Token peek() throws IOException {
+        if (mPeeked != null) {
+            return mPeeked;
+        }
+
+        final int scope = mStack[mStackSize - 1];
+        int c;
+        switch (scope) {
+            case SCOPE_EMPTY_ARRAY:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_ARRAY;
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                --mPos;
+                return mPeeked = peekValue();
+
+            case SCOPE_NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    return mPeeked = Token.END_ARRAY;
+                }
+                if (c != ',') {
+                    throw syntaxError("Expected ',' or ']'");
+                }
+                return mPeeked = peekValue();
+
+            case SCOPE_EMPTY_OBJECT:
+            case SCOPE_NONEMPTY_OBJECT:
+                mStack[mStackSize - 1] = SCOPE_DANGLING_NAME;
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    return mPeeked = Token.END_OBJECT;
+                }
+                if (scope == SCOPE_NONEMPTY_OBJECT) {
+                    if (c != ',') {
+                        throw syntaxError("Expected ',' or '}'");
+                    }
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') {
+                    throw syntaxError("Expected name");
+                }
+                return mPeeked = Token.NAME;
+
+            case SCOPE_DANGLING_NAME:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_OBJECT;
+                if (nextNonWhitespace() != ':') {
+                    throw syntaxError("Expected ':'");
+                }
+                return mPeeked = peekValue();
+
+            case SCOPE_EMPTY_DOCUMENT:
+                mStack[mStackSize - 1] = SCOPE_NONEMPTY_DOCUMENT;
+                return mPeeked = peekValue();
+
+            default:
+                if (nextNonWhitespace() != -1) {
+                    throw syntaxError("Expected end of document");
+                }
+                return mPeeked = Token.END_DOCUMENT;
+        }
+    }
+
+    /**
+     * Consumes the start of an object.
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the next token isn't the start of an object
+     */
+    public void beginObject() throws IOException {
+        expect(Token.BEGIN_OBJECT);
+        push(SCOPE_EMPTY_OBJECT);
+    }
+
+    /**
+     * Consumes the end of an object.
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the next token isn't the end of an object
+     */
+    public void endObject() throws IOException {
+        expect(Token.END_OBJECT);
+        --mStackSize;
+    }
+
+    /**
+     * Consumes the start of an array.
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the next token isn't the start of an array
+     */
+    public void beginArray() throws IOException {
+        expect(Token.BEGIN_ARRAY);
+        push(SCOPE_EMPTY_ARRAY);
+    }
+
+    /**
+     * Consumes the end of an array.
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the next token isn't the end of an array
+     */
+    public void endArray() throws IOException {
+        expect(Token.END_ARRAY);
+        --mStackSize;
+    }
+
+    /**
+     * Checks if the current array or object has another element.
+     *
+     * @return True if there is another element, false otherwise
+     *
+     * @throws IOException
+     *             When the input couldn't be read or isn't valid JSON
+     */
+    public boolean hasNext() throws IOException {
+        final Token token = peek();
+        return token != Token.END_OBJECT && token != Token.END_ARRAY && token != Token.END_DOCUMENT;
+    }
+
+    /**
+     * Consumes the next name in the current object.
+     *
+     * @return The name
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the next token isn't a name
+     */
+    public String nextName() throws IOException {
+        expect(Token.NAME);
+        readString();
+        return new String(mChars, 0, mCharCount);
+    }
+
+    /**
+     * Consumes the next string or number value.
+     *
+     * @return The value as a string
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the next token isn't a string or number
+     */
+    public String nextString() throws IOException {
+        final Token token = peek();
+        if (token == Token.STRING) {
+            mPeeked = null;
+            readString();
+        } else if (token == Token.NUMBER) {
+            mPeeked = null;
+        } else {
+            throw syntaxError("Expected string but was " + token);
+        }
+        return new String(mChars, 0, mCharCount);
+    }
+
+    /**
+     * Consumes the next boolean value.
+     *
+     * @return The value
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the next token isn't a boolean
+     */
+    public boolean nextBoolean() throws IOException {
+        expect(Token.BOOLEAN);
+        return mPeekedBoolean;
+    }
+
+    /**
+     * Skips the next value, including all nested values if it's an array or object.
+     *
+     * @throws IOException
+     *             When the input couldn't be read or isn't valid JSON
+     */
+    public void skipValue() throws IOException {
+        int depth = 0;
+        do {
+            final Token token = peek();
+            mPeeked = null;
+            switch (token) {
+                case BEGIN_ARRAY:
+                    push(SCOPE_EMPTY_ARRAY);
+                    ++depth;
+                    break;
+                case BEGIN_OBJECT:
+                    push(SCOPE_EMPTY_OBJECT);
+                    ++depth;
+                    break;
+                case END_ARRAY:
+                case END_OBJECT:
+                    --mStackSize;
+                    --depth;
+                    break;
+                case NAME:
+                case STRING:
+                    skipString();
+                    break;
+                case END_DOCUMENT:
+                    throw syntaxError("Unexpected end of document");
+                default:
+                    break;
+            }
+        } while (depth > 0);
+    }
+
+    /**
+     * Skips names and values in the current object until the given name has been consumed.
+     *
+     * @param name
+     *            The name to look for
+     *
+     * @return True if the name was found and its value is next, false if the end of the object was reached
+     *
+     * @throws IOException
+     *             When the input couldn't be read or isn't valid JSON
+     */
+    public boolean skipToName(final String name) throws IOException {
+        while (hasNext()) {
+            expect(Token.NAME);
+            readString();
+            if (charsEqual(name)) {
+                return true;
+            }
+            skipValue();
+        }
+        return false;
+    }
+
+    /**
+     * Consumes the next token, checking that it's of the expected kind.
+     *
+     * @param expected
+     *            The expected kind of token
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the next token is of another kind
+     */
+    private void expect(final Token expected) throws IOException {
+        final Token token = peek();
+        if (token != expected) {
+            throw syntaxError("Expected " + expected + " but was " + token);
+        }
+        mPeeked = null;
+    }
+
+    /**
+     * Determines the kind of the next value, consuming the characters of numbers and literals.
+     *
+     * @return The kind of value
+     *
+     * @throws IOException
+     *             When the input couldn't be read or isn't valid JSON
+     */
+    private Token peekValue() throws IOException {
+        final int c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                return Token.BEGIN_OBJECT;
+            case '[':
+                return Token.BEGIN_ARRAY;
+            case '"':
+                return Token.STRING;
+            case 't':
+                readLiteral("rue");
+                mPeekedBoolean = true;
+                return Token.BOOLEAN;
+            case 'f':
+                readLiteral("alse");
+                mPeekedBoolean = false;
+                return Token.BOOLEAN;
+            case 'n':
+                readLiteral("ull");
+                return Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    readNumber(c);
+                    return Token.NUMBER;
+                }
+                throw syntaxError("Unexpected character");
+        }
+    }
+
+    /**
+     * Consumes the rest of a literal.
+     *
+     * @param rest
+     *            The expected characters after the first
+     *
+     * @throws IOException
+     *             When the input couldn't be read or doesn't match the literal
+     */
+    private void readLiteral(final String rest) throws IOException {
+        for (int i = 0; i < rest.length(); ++i) {
+            if (nextByte() != rest.charAt(i)) {
+                throw syntaxError("Invalid literal");
+            }
+        }
+    }
+
+    /**
+     * Consumes a number into the char buffer.
+     *
+     * @param first
+     *            The first character of the number, already consumed
+     *
+     * @throws IOException
+     *             When the input couldn't be read
+     */
+    private void readNumber(final int first) throws IOException {
+        mCharCount = 0;
+        appendChar((char) first);
+        while (true) {
+            if (mPos == mLimit && !fill()) {
+                return;
+            }
+            final byte b = mBuffer[mPos];
+            if ((b >= '0' && b <= '9') || b == '.' || b == 'e' || b == 'E' || b == '+' || b == '-') {
+                appendChar((char) b);
+                ++mPos;
+            } else {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Consumes a string after its opening quote, decoding it into the char buffer.
+     *
+     * @throws IOException
+     *             When the input couldn't be read or isn't valid JSON
+     */
+    private void readString() throws IOException {
+        mCharCount = 0;
+        while (true) {
+            final int b = nextByte();
+            if (b == '"') {
+                return;
+            }
+
+            if (b == '\\') {
+                readEscape();
+            } else if (b < 0x80) {
+                appendChar((char) b);
+            } else if (b < 0xe0) {
+                appendChar((char) (((b & 0x1f) << 6) | continuation()));
+            } else if (b < 0xf0) {
+                appendChar((char) (((b & 0x0f) << 12) | (continuation() << 6) | continuation()));
+            } else {
+                final int codePoint = ((b & 0x07) << 18) | (continuation() << 12) | (continuation() << 6)
+                        | continuation();
+                appendChar(Character.highSurrogate(codePoint));
+                appendChar(Character.lowSurrogate(codePoint));
+            }
+        }
+    }
+
+    /**
+     * Consumes an escape sequence after its backslash, appending the escaped character to the char buffer.
+     *
+     * @throws IOException
+     *             When the input couldn't be read or the escape sequence is invalid
+     */
+    private void readEscape() throws IOException {
+        final int escaped = nextByte();
+        switch (escaped) {
+            case 'b':
+                appendChar('\b');
+                break;
+            case 'f':
+                appendChar('\f');
+                break;
+            case 'n':
+                appendChar('\n');
+                break;
+            case 'r':
+                appendChar('\r');
+                break;
+            case 't':
+                appendChar('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; ++i) {
+                    final int digit = Character.digit(nextByte(), 16);
+                    if (digit < 0) {
+                        throw syntaxError("Invalid unicode escape");
+                    }
+                    value = (value << 4) | digit;
+                }
+                appendChar((char) value);
+                break;
+            default:
+                appendChar((char) escaped);
+                break;
+        }
+    }
+
+    /**
+     * Consumes a string after its opening quote without decoding it.
+     *
+     * @throws IOException
+     *             When the input couldn't be read
+     */
+    private void skipString() throws IOException {
+        while (true) {
+            final int b = nextByte();
+            if (b == '"') {
+                return;
+            }
+            if (b == '\\') {
+                nextByte();
+            }
+        }
+    }
+
+    /**
+     * Consumes a UTF-8 continuation byte.
+     *
+     * @return The 6 bits of data in the byte
+     *
+     * @throws IOException
+     *             When the input couldn't be read
+     */
+    private int continuation() throws IOException {
+        return nextByte() & 0x3f;
+    }
+
+    /**
+     * Checks if the char buffer holds the given string.
+     *
+     * @param value
+     *            The string to compare to
+     *
+     * @return True if the char buffer equals the string, false otherwise
+     */
+    private boolean charsEqual(final String value) {
+        if (value.length() != mCharCount) {
+            return false;
+        }
+        for (int i = 0; i < mCharCount; ++i) {
+            if (mChars[i] != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Appends a character to the char buffer, growing it when needed.
+     *
+     * @param c
+     *            The character to append
+     */
+    private void appendChar(final char c) {
+        if (mCharCount == mChars.length) {
+            final char[] chars = new char[mChars.length * 2];
+            System.arraycopy(mChars, 0, chars, 0, mCharCount);
+            mChars = chars;
+        }
+        mChars[mCharCount++] = c;
+    }
+
+    /**
+     * Pushes a scope on the stack, growing it when needed.
+     *
+     * @param scope
+     *            The scope to push
+     */
+    private void push(final int scope) {
+        if (mStackSize == mStack.length) {
+            final int[] stack = new int[mStack.length * 2];
+            System.arraycopy(mStack, 0, stack, 0, mStackSize);
+            mStack = stack;
+        }
+        mStack[mStackSize++] = scope;
+    }
+
+    /**
+     * Consumes the next byte that isn't whitespace.
+     *
+     * @return The byte or -1 if the end of the input has been reached
+     *
+     * @throws IOException
+     *             When the input couldn't be read
+     */
+    private int nextNonWhitespace() throws IOException {
+        while (mPos < mLimit || fill()) {
+            final int b = mBuffer[mPos++] & 0xff;
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return b;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Consumes the next byte.
+     *
+     * @return The byte
+     *
+     * @throws IOException
+     *             When the input couldn't be read or has ended
+     */
+    private int nextByte() throws IOException {
+        if (mPos == mLimit && !fill()) {
+            throw syntaxError("Unexpected end of input");
+        }
+        return mBuffer[mPos++] & 0xff;
+    }
+
+    /**
+     * Refills the byte buffer from the input.
+     *
+     * @return True if bytes were read, false if the end of the input has been reached
+     *
+     * @throws IOException
+     *             When the input couldn't be read
+     */
+    private boolean fill() throws IOException {
+        // Keep the last consumed byte so that it can always be pushed back
+        if (mLimit > 0) {
+            mBuffer[0] = mBuffer[mLimit - 1];
+            mPos = 1;
+            mLimit = 1;
+        }
+
+        final int read = mInput.read(mBuffer, mLimit, mBuffer.length - mLimit);
+        if (read <= 0) {
+            return false;
+        }
+        mLimit += read;
+        return true;
+    }
+
+    /**
+     * Creates an exception for invalid JSON.
+     *
+     * @param message
+     *            The description of the problem
+     *
+     * @return The exception to throw
+     */
+    private IOException syntaxError(final String message) {
+        return new IOException("Invalid JSON: " + message);
+    }
+
+}
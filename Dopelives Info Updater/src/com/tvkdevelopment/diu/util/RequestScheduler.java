@@ -0,0 +1,368 @@
+package com.tvkdevelopment.diu.util;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.tvkdevelopment.diu.log.Log;
+import com.tvkdevelopment.diu.metrics.Histogram;
+import com.tvkdevelopment.diu.metrics.Metrics;
+
+/**
+ * Spaces out the requests to a single host with a token bucket, so that bursts of searches and retries don't get the
+ * updater throttled. Requests waiting for a token are served by priority, so writes always go before reads and
+ * searches. The bucket follows the rate limit headers that the host sends back, and a 429 response pauses all requests
+ * to the host for as long as its Retry-After header asks.
+ * <p>
+ * The rate and burst size default to 10 requests per second and 20 requests, and can be set with the diu.http.rate and
+ * diu.http.burst system properties, or per host with for example diu.http.rate.api.twitch.tv. A rate of 0 turns the
+ * limit off while still honouring the host's own limits.
+ */
+public class RequestScheduler {
+
+    /** The amount of requests per second allowed by default */
+    private static final double DEFAULT_RATE = Double.parseDouble(System.getProperty("diu.http.rate", "10"));
+    /** The amount of requests that can be made at once by default after being idle */
+    private static final int DEFAULT_BURST = Integer.getInteger("diu.http.burst", 20);
+    /** The time in nanoseconds to pause after a 429 response without a usable Retry-After header */
+    private static final long DEFAULT_RETRY_AFTER = TimeUnit.SECONDS.toNanos(1);
+    /** The longest time in nanoseconds that a host can pause requests for, to recover from nonsensical headers */
+    private static final long MAX_PAUSE = TimeUnit.SECONDS.toNanos(60);
+    /** The response code of a throttled request, which HttpURLConnection has no constant for */
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+    /** Rate limit reset values above this are times in seconds since epoch, below it they're delays in seconds */
+    private static final long EPOCH_RESET_THRESHOLD = 1000000000L;
+
+    /** The schedulers by host */
+    private static final ConcurrentMap<String, RequestScheduler> sSchedulers = new ConcurrentHashMap<>();
+
+    /**
+     * Gets the scheduler for a host, creating it if it doesn't exist yet. Its metrics are recorded under
+     * scheduler.[host].[priority].delay.us and scheduler.[host].throttled.
+     *
+     * @param host
+     *            The host name
+     *
+     * @return The scheduler
+     */
+    public static RequestScheduler forHost(final String host) {
+        return sSchedulers.computeIfAbsent(host.toLowerCase(Locale.ROOT), RequestScheduler::new);
+    }
+
+    /** The host that the requests are made to */
+    private final String mHost;
+    /** The amount of tokens added per nanosecond or 0 if requests aren't limited */
+    private final double mRate;
+    /** The maximum amount of tokens */
+    private final double mBurst;
+
+    /** The lock guarding the bucket and the queue */
+    private final ReentrantLock mLock = new ReentrantLock();
+    /** The condition signalled when the first waiting request leaves the queue */
+    private final Condition mHeadChanged = mLock.newCondition();
+    /** The requests waiting for a token, in the order they'll get one */
+    private final PriorityQueue<Ticket> mWaiting = new PriorityQueue<>();
+    /** The sequence number of the next request, keeping requests of the same priority in order */
+    private long mNextSequence = 0;
+
+    /** The amount of tokens currently available, which may be fractional */
+    private double mTokens;
+    /** The time as returned by {@link System#nanoTime()} at which tokens were last added */
+    private long mRefillTime;
+    /** The time as returned by {@link System#nanoTime()} until which the host asked not to make requests */
+    private long mPausedUntil;
+
+    /** The time in microseconds that requests waited for a token per priority */
+    private final Histogram[] mDelays = new Histogram[Priority.values().length];
+    /** The amount of requests that the host throttled */
+    private final LongAdder mThrottled;
+
+    /**
+     * Creates a new scheduler.
+     *
+     * @param host
+     *            The host that the requests are made to
+     */
+    private RequestScheduler(final String host) {
+        mHost = host;
+        final double rate = Double.parseDouble(System.getProperty("diu.http.rate." + host, Double.toString(
+                DEFAULT_RATE)));
+        mRate = Math.max(0, rate) / TimeUnit.SECONDS.toNanos(1);
+        mBurst = Math.max(1, Integer.getInteger("diu.http.burst." + host, DEFAULT_BURST));
+        mTokens = mBurst;
+        mRefillTime = System.nanoTime();
+        mPausedUntil = mRefillTime;
+
+        for (final Priority priority : Priority.values()) {
+            mDelays[priority.ordinal()] = Metrics.histogram("scheduler." + host + "." + priority.name().toLowerCase(
+                    Locale.ROOT) + ".delay.us");
+        }
+        mThrottled = Metrics.counter("scheduler." + host + ".throttled");
+    }
+
+    /**
+     * Waits until a request may be made, after all waiting requests with a higher priority.
+     *
+     * @param priority
+     *            The priority of the request
+     *
+     * @throws InterruptedIOException
+     *             When the thread was interrupted while waiting, leaving the interrupted flag set
+     */
+    public void acquire(final Priority priority) throws InterruptedIOException {
+        final long startTime = System.nanoTime();
+        mLock.lock();
+        try {
+            final Ticket ticket = new Ticket(priority, mNextSequence++);
+            mWaiting.add(ticket);
+            try {
+                while (true) {
+                    // Only the first request in line takes tokens, the others wait until it's their turn
+                    if (mWaiting.peek() != ticket) {
+                        mHeadChanged.await();
+                    } else {
+                        final long wait = takeToken();
+                        if (wait <= 0) {
+                            break;
+                        }
+                        mHeadChanged.awaitNanos(wait);
+                    }
+                }
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting to request " + mHost);
+            } finally {
+                mWaiting.remove(ticket);
+                mHeadChanged.signalAll();
+            }
+        } finally {
+            mLock.unlock();
+        }
+        mDelays[priority.ordinal()].recordSince(startTime);
+    }
+
+    /**
+     * Adapts to the response of a request, following the rate limit headers and pausing after a 429 response.
+     *
+     * @param connection
+     *            The connection of the request, which is sent if it hasn't been yet
+     *
+     * @throws IOException
+     *             When the request couldn't be sent
+     */
+    public void onResponse(final HttpURLConnection connection) throws IOException {
+        final int responseCode = connection.getResponseCode();
+        final long remaining = parseLong(getHeader(connection, "Ratelimit-Remaining", "X-RateLimit-Remaining"));
+        final long reset = parseReset(getHeader(connection, "Ratelimit-Reset", "X-RateLimit-Reset"));
+
+        long pause = -1;
+        mLock.lock();
+        try {
+            final long now = System.nanoTime();
+            refill(now);
+            if (responseCode == HTTP_TOO_MANY_REQUESTS) {
+                mThrottled.increment();
+                final long retryAfter = parseRetryAfter(connection.getHeaderField("Retry-After"));
+                pause = (retryAfter >= 0 ? retryAfter : (reset >= 0 ? reset : DEFAULT_RETRY_AFTER));
+                mTokens = 0;
+                pause(now, pause);
+            } else if (remaining >= 0) {
+                mTokens = Math.min(mTokens, remaining);
+                if (remaining == 0 && reset > 0) {
+                    pause(now, reset);
+                }
+            }
+        } finally {
+            mLock.unlock();
+        }
+
+        if (pause >= 0) {
+            Log.warn("http", mHost + " is throttling requests, pausing for " + TimeUnit.NANOSECONDS.toMillis(Math
+                    .min(pause, MAX_PAUSE)) + " ms");
+        }
+    }
+
+    /**
+     * Takes a token if one is available. Must be called while holding the lock.
+     *
+     * @return 0 if a token was taken, otherwise the time in nanoseconds until one will be available
+     */
+    private long takeToken() {
+        final long now = System.nanoTime();
+        if (mPausedUntil - now > 0) {
+            return mPausedUntil - now;
+        }
+        if (mRate == 0) {
+            return 0;
+        }
+
+        refill(now);
+        if (mTokens >= 1) {
+            mTokens -= 1;
+            return 0;
+        }
+        return (long) ((1 - mTokens) / mRate) + 1;
+    }
+
+    /**
+     * Adds the tokens earned since the last refill. Must be called while holding the lock.
+     *
+     * @param now
+     *            The current time as returned by {@link System#nanoTime()}
+     */
+    private void refill(final long now) {
+        mTokens = Math.min(mBurst, mTokens + (now - mRefillTime) * mRate);
+        mRefillTime = now;
+    }
+
+    /**
+     * Pauses all requests for a while, unless they're already paused for longer. Must be called while holding the
+     * lock.
+     *
+     * @param now
+     *            The current time as returned by {@link System#nanoTime()}
+     * @param pause
+     *            The time in nanoseconds to pause for
+     */
+    private void pause(final long now, final long pause) {
+        final long until = now + Math.min(pause, MAX_PAUSE);
+        if (until - mPausedUntil > 0) {
+            mPausedUntil = until;
+        }
+    }
+
+    /**
+     * Gets the first header that is set.
+     *
+     * @param connection
+     *            The connection of the request
+     * @param names
+     *            The names of the headers in order of preference
+     *
+     * @return The value of the header or null if none is set
+     */
+    private static String getHeader(final HttpURLConnection connection, final String... names) {
+        for (final String name : names) {
+            final String value = connection.getHeaderField(name);
+            if (value != null) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parses a whole number from a header.
+     *
+     * @param value
+     *            The value of the header or null if it isn't set
+     *
+     * @return The number or -1 if the header isn't set or isn't a number
+     */
+    private static long parseLong(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * Parses a rate limit reset header, which holds either the time in seconds since epoch at which the limit resets
+     * or the delay in seconds until it does.
+     *
+     * @param value
+     *            The value of the header or null if it isn't set
+     *
+     * @return The time in nanoseconds until the limit resets or -1 if the header isn't set or can't be parsed
+     */
+    private static long parseReset(final String value) {
+        final long reset = parseLong(value);
+        if (reset < 0) {
+            return -1;
+        }
+        if (reset > EPOCH_RESET_THRESHOLD) {
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(reset * 1000 - System.currentTimeMillis()));
+        }
+        return TimeUnit.SECONDS.toNanos(reset);
+    }
+
+    /**
+     * Parses a Retry-After header, which holds either a delay in seconds or an HTTP date.
+     *
+     * @param value
+     *            The value of the header or null if it isn't set
+     *
+     * @return The time in nanoseconds to wait or -1 if the header isn't set or can't be parsed
+     */
+    private static long parseRetryAfter(final String value) {
+        final long seconds = parseLong(value);
+        if (seconds >= 0) {
+            return TimeUnit.SECONDS.toNanos(seconds);
+        }
+        if (value == null) {
+            return -1;
+        }
+        try {
+            final ZonedDateTime date = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+            return Math.max(0, Duration.between(ZonedDateTime.now(date.getZone()), date).toNanos());
+        } catch (final DateTimeParseException ex) {
+            return -1;
+        }
+    }
+
+    /**
+     * The priority of a request, where requests that change what viewers see go first.
+     */
+    public enum Priority {
+
+        /** Writes of the status and game */
+        UPDATE,
+        /** Reads of the current state, such as verifications and the topic */
+        READ,
+        /** Game searches, which are often speculative */
+        SEARCH,
+        /** Requests that nothing is waiting for, such as catalog downloads */
+        BACKGROUND
+
+    }
+
+    /**
+     * A request waiting for a token.
+     */
+    private static class Ticket implements Comparable<Ticket> {
+
+        /** The priority of the request */
+        private final Priority mPriority;
+        /** The order in which the request started waiting */
+        private final long mSequence;
+
+        private Ticket(final Priority priority, final long sequence) {
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public int compareTo(final Ticket other) {
+            final int result = mPriority.compareTo(other.mPriority);
+            return (result != 0 ? result : Long.compare(mSequence, other.mSequence));
+        }
+
+    }
+
+}